@@ -17,4 +17,6 @@ dependencies {
     implementation("io.quarkus:quarkus-config-yaml")
     implementation("io.quarkus:quarkus-arc")
     implementation("io.quarkus:quarkus-vertx")
+    implementation("io.netty:netty-transport-native-epoll::linux-x86_64")
+    implementation("io.netty:netty-transport-native-epoll::linux-aarch_64")
 }
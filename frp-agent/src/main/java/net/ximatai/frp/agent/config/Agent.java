@@ -1,8 +1,12 @@
 package net.ximatai.frp.agent.config;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithDefaults;
 import net.ximatai.frp.common.ProxyType;
 
+import java.util.Map;
+
 @ConfigMapping(prefix = "frp-agent")
 public interface Agent {
     ProxyType type();
@@ -14,4 +18,94 @@ public interface Agent {
     Auth auth();
 
     ProxyServer proxy();
+
+    DataPlane dataPlane();
+
+    /**
+     * 与 server 之间并行建立的 WebSocket 链路数，server 将它们视为同一个会话，新请求分配给负载最小的链路
+     *
+     * @return 链路数
+     */
+    @WithDefault("1")
+    int links();
+
+    /**
+     * 是否向 server 申请批量帧，开启后同一事件循环内多个流的小帧会合并成一个 WebSocket 消息发送
+     *
+     * @return 是否启用批量帧
+     */
+    @WithDefault("true")
+    boolean batchFrames();
+
+    /**
+     * 单个 WebSocket 消息的最大长度，实际使用值与 tunnel 的 maxFrameSize 取较小者。大块传输可调大以减少帧数
+     *
+     * @return 最大帧长度（字节）
+     */
+    @WithDefault("65536")
+    int maxFrameSize();
+
+    /**
+     * 是否向 server 声明支持 DATA 压缩，仅当 tunnel 也开启压缩时生效。适合上行带宽受限、流量以文本为主的场景
+     *
+     * @return 是否支持压缩
+     */
+    @WithDefault("true")
+    boolean compression();
+
+    /**
+     * 多 agent 模式下的权重，tunnel 使用 weighted 策略时按权重比例分配新连接
+     *
+     * @return 权重，1 到 1000
+     */
+    @WithDefault("1")
+    int weight();
+
+    /**
+     * 以备用身份接入：tunnel 已有活跃 agent 时只保持连接不接收流量，活跃 agent 全部断开后立即接管
+     *
+     * @return 是否为备用 agent
+     */
+    @WithDefault("false")
+    boolean standby();
+
+    /**
+     * 向 server 发送心跳 PING 的间隔
+     *
+     * @return 间隔（秒）
+     */
+    @WithDefault("30")
+    int heartbeatInterval();
+
+    /**
+     * 连续多少个心跳间隔收不到 server 的 PING/PONG 即判定连接失效并立即重连，用于发现 NAT 超时等静默断开
+     *
+     * @return 允许丢失的心跳数
+     */
+    @WithDefault("3")
+    int heartbeatMisses();
+
+    /**
+     * 与 server 断开后第一次立即重连，之后每次重连前随机等待，等待上限从该值起逐次翻倍
+     *
+     * @return 退避基数（毫秒）
+     */
+    @WithDefault("500")
+    long reconnectBaseDelay();
+
+    /**
+     * 重连等待时间的上限，server 长时间不可用时所有 agent 在该范围内随机分散重试
+     *
+     * @return 退避上限（毫秒）
+     */
+    @WithDefault("30000")
+    long reconnectMaxDelay();
+
+    /**
+     * 经同一组链路额外接入的 tunnel，键为 tunnel 名称。需要 server 开启共用 agent 端口，并在 frp-tunnel.name 中指定主 tunnel
+     *
+     * @return 额外接入的 tunnel
+     */
+    @WithDefaults
+    Map<String, MultiplexedTunnel> tunnels();
 }
@@ -0,0 +1,52 @@
+package net.ximatai.frp.agent.config;
+
+import io.smallrye.config.WithDefault;
+import net.ximatai.frp.common.SocketTuning;
+
+/**
+ * 数据面调优，作用于与 server 之间的 WebSocket 链路和到上游服务的连接
+ */
+public interface DataPlane {
+
+    /**
+     * 优先使用 native transport（Linux 上为 epoll），本机不可用时自动回退到 NIO
+     *
+     * @return 是否优先使用 native transport
+     */
+    @WithDefault("false")
+    boolean nativeTransport();
+
+    @WithDefault("true")
+    boolean tcpNoDelay();
+
+    /**
+     * 仅在 native epoll transport 下生效
+     *
+     * @return 是否开启 TCP_QUICKACK
+     */
+    @WithDefault("false")
+    boolean tcpQuickAck();
+
+    @WithDefault("true")
+    boolean tcpKeepAlive();
+
+    /**
+     * SO_SNDBUF，-1 表示使用系统默认值
+     *
+     * @return 发送缓冲区大小（字节）
+     */
+    @WithDefault("-1")
+    int sendBufferSize();
+
+    /**
+     * SO_RCVBUF，-1 表示使用系统默认值
+     *
+     * @return 接收缓冲区大小（字节）
+     */
+    @WithDefault("-1")
+    int receiveBufferSize();
+
+    default SocketTuning socketTuning() {
+        return new SocketTuning(tcpNoDelay(), tcpQuickAck(), tcpKeepAlive(), sendBufferSize(), receiveBufferSize());
+    }
+}
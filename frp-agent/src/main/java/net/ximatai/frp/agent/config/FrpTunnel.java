@@ -1,5 +1,23 @@
 package net.ximatai.frp.agent.config;
 
+import io.smallrye.config.WithDefault;
+
+import java.util.Optional;
+
 public interface FrpTunnel extends IServer {
 
+    /**
+     * 要接入的 tunnel 名称。连接 server 的共用 agent 端口时必填，连接 tunnel 自己的 agentPort 时可省略
+     *
+     * @return tunnel 名称
+     */
+    Optional<String> name();
+
+    /**
+     * 与 tunnel 的 options.agentTransport 一致，共用 agent 端口只支持 websocket
+     *
+     * @return 链路传输方式，websocket 或 tcp
+     */
+    @WithDefault("websocket")
+    String transport();
 }
@@ -0,0 +1,16 @@
+package net.ximatai.frp.agent.config;
+
+/**
+ * 与主 tunnel 共用链路额外接入的 tunnel
+ */
+public interface MultiplexedTunnel {
+    /**
+     * @return 该 tunnel 的 agent token
+     */
+    String token();
+
+    /**
+     * @return 该 tunnel 转发到的上游服务
+     */
+    ProxyServer proxy();
+}
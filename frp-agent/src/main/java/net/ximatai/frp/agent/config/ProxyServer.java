@@ -1,4 +1,25 @@
 package net.ximatai.frp.agent.config;
 
-public interface ProxyServer extends IServer{
+import io.smallrye.config.WithDefault;
+
+public interface ProxyServer extends IServer {
+
+    /**
+     * 连接上游服务的超时时间（毫秒）
+     *
+     * @return 连接超时
+     */
+    @WithDefault("5000")
+    int connectTimeout();
+
+    @WithDefault("true")
+    boolean tcpKeepAlive();
+
+    /**
+     * 预先建立并保持的上游空闲连接数，0 表示不预热，每个 CONNECT 都新建连接
+     *
+     * @return 预热连接数
+     */
+    @WithDefault("0")
+    int warmPoolSize();
 }
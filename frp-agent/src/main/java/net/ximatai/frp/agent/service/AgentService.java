@@ -1,6 +1,7 @@
 package net.ximatai.frp.agent.service;
 
 import io.quarkus.runtime.Startup;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -8,6 +9,10 @@ import jakarta.inject.Inject;
 import net.ximatai.frp.agent.config.Agent;
 import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
 
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 @Startup
 @ApplicationScoped
 public class AgentService {
@@ -18,10 +23,27 @@ public class AgentService {
     @Inject
     Agent agent;
 
+    private final List<AgentLinkerVerticle> linkers = new CopyOnWriteArrayList<>();
+
     @PostConstruct
     void init() {
-        AgentLinkerVerticle linker = new AgentLinkerVerticle(agent);
-        vertx.deployVerticle(linker);
+        // 每条链路一个 verticle 实例，各自运行在独立的 event loop 上，共享同一个 linkGroup
+        String linkGroup = UUID.randomUUID().toString();
+        vertx.deployVerticle(() -> {
+                    AgentLinkerVerticle linker = new AgentLinkerVerticle(agent, linkGroup);
+                    linkers.add(linker);
+                    return linker;
+                },
+                new DeploymentOptions().setInstances(Math.max(1, agent.links())));
+    }
+
+    /**
+     * @return 各条链路当前的连接状态
+     */
+    public List<AgentLinkerVerticle.LinkState> linkStates() {
+        return linkers.stream()
+                .map(AgentLinkerVerticle::state)
+                .toList();
     }
 
 }
@@ -1,63 +1,154 @@
 package net.ximatai.frp.agent.verticle;
 
+import io.netty.util.collection.LongObjectHashMap;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketClient;
 import io.vertx.core.http.WebSocketClientOptions;
-import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
 import io.vertx.core.net.NetSocket;
 import net.ximatai.frp.agent.config.Agent;
 import net.ximatai.frp.agent.config.FrpTunnel;
 import net.ximatai.frp.agent.config.ProxyServer;
+import net.ximatai.frp.common.ConnectFailReason;
+import net.ximatai.frp.common.FrameBatcher;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.FrameScheduler;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.MessageUtil;
 import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.ReplayBuffer;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.common.StreamCompressor;
+import net.ximatai.frp.common.StreamWindow;
+import net.ximatai.frp.common.TcpLink;
+import net.ximatai.frp.common.WebSocketLink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static net.ximatai.frp.common.MessageUtil.OPERATION_WIDTH;
 
 public class AgentLinkerVerticle extends AbstractVerticle {
     private static final Logger LOGGER = LoggerFactory.getLogger(AgentLinkerVerticle.class);
 
-    private static final long HEARTBEAT_INTERVAL = 30000;      // 30秒心跳
-    private static final long LIVE_CHECK_INTERVAL = 10000;      // 10秒保活检查
 
-    private static final int MAX_WEBSOCKET_FRAME_SIZE = 65536; //  WebSocket帧最大长度，默认即为该值，主要不要超过服务端的设置
     private static final int PROTOCOL_VERSION = 1;
+    private static final String COMPRESSION_DEFLATE = "deflate";
+    private static final int MAX_PENDING_BYTES = StreamWindow.DEFAULT_WINDOW; // 目标服务连接建立前单请求默认缓存上限
+    private static final int MAX_ROUTES = 256; // requestId 最高 8 位为 tunnel 的 scope
 
     private final Agent agent;
-    private WebSocket controlSocket;
+    private final String linkGroup;
+    // 本端允许的最大帧长度，AUTH 中据此与 server 协商
+    private final int frameSizeLimit;
+    private final SocketTuning socketTuning;
+    // 本链路接入的 tunnel，下标即 scope；只配置一个 tunnel 时只有 scope 0
+    private final Route[] routes;
+    private LinkSocket controlSocket;
+    private FrameBatcher batcher;
+    // 至少一个 tunnel 已鉴权
     private boolean authenticated;
-
-    // 存储请求映射 (requestId -> NetSocket连接到目标服务)
-    private final Map<String, NetSocket> pendingRequests = new HashMap<>();
+    private WebSocketClient webSocketClient;
+    private NetClient netClient;
+    private final ReconnectBackoff reconnectBackoff;
+    private long reconnectTimerId = -1;
+    private boolean stopped;
+    private volatile LinkState state = LinkState.DISCONNECTED;
+    // 最近一次收到 server PING/PONG 的 nanoTime
+    private long lastSeenAt;
+    // 最近一次未收到回复的心跳 PING 的 nanoTime，0 表示没有
+    private long pingSentAt;
+    // server 签发的恢复票据及其对应的链路，server 未启用恢复时为 null
+    private String resumeTicket;
+    private String linkId;
+    private long resumeTimeout;
+    private long resumeTimerId = -1;
+
+    // 存储请求映射 (requestId -> 连接到目标服务的上下文)
+    private final LongObjectHashMap<RequestContext> pendingRequests = new LongObjectHashMap<>();
 
     public AgentLinkerVerticle(Agent agent) {
+        this(agent, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @param linkGroup 同一 agent 进程内各链路共享的标识，server 据此将多条链路合并为一个会话
+     */
+    public AgentLinkerVerticle(Agent agent, String linkGroup) {
         this.agent = agent;
+        this.linkGroup = linkGroup;
+        this.frameSizeLimit = FrameChunker.negotiate(agent.maxFrameSize(), FrameChunker.MAX_FRAME_SIZE);
+        this.socketTuning = agent.dataPlane().socketTuning();
+        this.reconnectBackoff = new ReconnectBackoff(agent.reconnectBaseDelay(), agent.reconnectMaxDelay());
+        List<Route> routes = new ArrayList<>();
+        routes.add(new Route(0, agent.frpTunnel().name().orElse(null), agent.auth().token(), agent.proxy()));
+        // 额外 tunnel 按名称排序，各链路的 scope 一致
+        new TreeMap<>(agent.tunnels()).forEach((name, tunnel) ->
+                routes.add(new Route(routes.size(), name, tunnel.token(), tunnel.proxy())));
+        this.routes = routes.toArray(new Route[0]);
     }
 
     @Override
     public void start(Promise<Void> startPromise) {
-        connectToFrpTunnel()
-                .onComplete(startPromise);
+        if (routes.length > 1 && routes[0].tunnel == null) {
+            startPromise.fail("frp-tunnel.name is required when frp-agent.tunnels is configured");
+            return;
+        }
+        if (routes.length > MAX_ROUTES) {
+            startPromise.fail("At most " + MAX_ROUTES + " tunnels can share one agent link");
+            return;
+        }
+        // 预热连接数在各链路间平分
+        int links = Math.max(1, agent.links());
+        for (Route route : routes) {
+            route.upstreamPool = new UpstreamPool(vertx, route.proxy, (route.proxy.warmPoolSize() + links - 1) / links,
+                    socketTuning.withMinReceiveBufferSize(FrameChunker.readBufferSize(frameSizeLimit)));
+            route.upstreamPool.refill();
+        }
+        if (socketTuning.effective(vertx).tcpQuickAck() != socketTuning.tcpQuickAck()) {
+            LOGGER.warn("TCP_QUICKACK requires native transport, ignored on {}", SocketTuning.transportName(vertx));
+        }
+        LOGGER.info("Agent data plane transport={}, socket={}", SocketTuning.transportName(vertx),
+                socketTuning.effective(vertx));
 
-        vertx.setPeriodic(LIVE_CHECK_INTERVAL, timerId -> {
-            if (this.controlSocket == null) {
-                connectToFrpTunnel();
-            }
-        });
+        if (tcpTransport()) {
+            netClient = vertx.createNetClient(socketTuning.apply(new NetClientOptions()));
+        } else {
+            webSocketClient = vertx.createWebSocketClient(options(agent.frpTunnel()));
+        }
+        // 首次连接失败不影响部署，之后在后台按退避重试
+        connectToFrpTunnel()
+                .onFailure(t -> LOGGER.warn("Initial connection to FRP server failed, retrying in background: {}",
+                        t.getMessage()))
+                .onComplete(ar -> startPromise.complete());
 
-        vertx.setPeriodic(HEARTBEAT_INTERVAL, id -> {
+        long heartbeatInterval = TimeUnit.SECONDS.toMillis(Math.max(1, agent.heartbeatInterval()));
+        long heartbeatTimeout = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval * Math.max(1, agent.heartbeatMisses()));
+        vertx.setPeriodic(heartbeatInterval, id -> {
             try {
                 if (controlSocket == null) return;
 
-                controlSocket.writePing(Buffer.buffer("ping-" + System.currentTimeMillis()));
+                if (authenticated && System.nanoTime() - lastSeenAt > heartbeatTimeout) {
+                    // 静默断开的连接上关闭握手不会完成，直接丢弃并重连
+                    LOGGER.warn("No heartbeat from FRP server for {} ms, reconnecting",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSeenAt));
+                    handleConnectionLoss();
+                    return;
+                }
+                pingSentAt = System.nanoTime();
+                controlSocket.writePing(Buffer.buffer().appendLong(pingSentAt));
                 LOGGER.trace("Sent heartbeat PING to server");
             } catch (Exception ex) {
                 LOGGER.error("Failed to send heartbeat", ex);
@@ -66,12 +157,29 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         });
     }
 
-    private void setControlSocket(WebSocket controlSocket) {
+    private void setControlSocket(LinkSocket controlSocket) {
         if (this.controlSocket != null && !this.controlSocket.isClosed()) {
             this.controlSocket.close();
         }
         this.controlSocket = controlSocket;
+        this.batcher = null;
+        for (Route route : routes) {
+            route.reset();
+        }
         this.authenticated = false;
+        this.lastSeenAt = System.nanoTime();
+        this.pingSentAt = 0;
+    }
+
+    private void handleHeartbeat(LinkSocket ws, boolean pong, Buffer payload) {
+        if (ws != controlSocket) {
+            return;
+        }
+        lastSeenAt = System.nanoTime();
+        if (pong && pingSentAt != 0 && payload.length() == Long.BYTES && payload.getLong(0) == pingSentAt) {
+            LOGGER.debug("Heartbeat RTT to FRP server: {} us", TimeUnit.NANOSECONDS.toMicros(lastSeenAt - pingSentAt));
+            pingSentAt = 0;
+        }
     }
 
     private Future<Void> connectToFrpTunnel() {
@@ -79,81 +187,131 @@ public class AgentLinkerVerticle extends AbstractVerticle {
 
         FrpTunnel frpTunnel = agent.frpTunnel();
 
-        LOGGER.info("Connecting to FRP tunnel at {}:{}", frpTunnel.host(), frpTunnel.port());
-
-        vertx.sharedData().getLock("frp-agent-lock")
-                .onSuccess(lock -> {
-                    vertx.createWebSocketClient(options(frpTunnel))
-                            .connect("/")
-                            .onSuccess(ws -> {
-                                LOGGER.info("Successfully connected to FRP server");
-                                final boolean[] completed = {false};
-                                final long[] authTimerId = new long[1];
-
-                                // 保存控制通道socket
-                                setControlSocket(ws);
-
-                                // 设置关闭处理器
-                                ws.closeHandler(v -> {
-                                    LOGGER.warn("Connection to FRP server closed");
-                                    if (!authenticated && !completed[0]) {
-                                        completed[0] = true;
-                                        vertx.cancelTimer(authTimerId[0]);
-                                        promise.fail("FRP connection closed before auth");
-                                    }
-                                    handleConnectionLoss();
-                                });
-
-                                // 设置异常处理器
-                                ws.exceptionHandler(ex -> {
-                                    LOGGER.error("WebSocket connection error", ex);
-                                    if (!authenticated && !completed[0]) {
-                                        completed[0] = true;
-                                        vertx.cancelTimer(authTimerId[0]);
-                                        promise.fail(ex);
-                                    }
-                                    ws.close();
-                                    handleConnectionLoss();
-                                });
-
-                                sendAuth(ws);
-                                authTimerId[0] = vertx.setTimer(5000, timerId -> {
-                                    if (!authenticated && !completed[0]) {
-                                        completed[0] = true;
-                                        promise.fail("FRP auth timeout");
-                                        ws.close();
-                                    }
-                                });
-                                ws.frameHandler(frame -> {
-                                    OperationType operationType = frameOperationType(frame);
-                                    handleServerFrame(frame);
-                                    if (authenticated && !completed[0]) {
-                                        completed[0] = true;
-                                        vertx.cancelTimer(authTimerId[0]);
-                                        promise.complete();
-                                    } else if (operationType == OperationType.AUTH_FAIL && !completed[0]) {
-                                        completed[0] = true;
-                                        vertx.cancelTimer(authTimerId[0]);
-                                        promise.fail("FRP auth failed");
-                                    }
-                                });
-                                lock.release();
-                            })
-                            .onFailure(t -> {
-                                LOGGER.error("Failed to connect to FRP server", t);
-                                promise.fail(t);
-                                lock.release();
-                            });
+        LOGGER.info("Connecting to FRP tunnel at {}:{}, transport {}", frpTunnel.host(), frpTunnel.port(),
+                frpTunnel.transport());
+        setState(LinkState.CONNECTING);
+
+        connectLink()
+                .onSuccess(ws -> {
+                    if (stopped) {
+                        ws.close();
+                        promise.fail("Agent linker stopped");
+                        return;
+                    }
+                    LOGGER.info("Successfully connected to FRP server");
+                    final boolean[] completed = {false};
+                    final long[] authTimerId = new long[1];
+
+                    // 保存控制通道socket
+                    setControlSocket(ws);
+                    setState(LinkState.AUTHENTICATING);
+
+                    // 设置关闭处理器
+                    ws.closeHandler(v -> {
+                        LOGGER.warn("Connection to FRP server closed");
+                        if (!authenticated && !completed[0]) {
+                            completed[0] = true;
+                            vertx.cancelTimer(authTimerId[0]);
+                            promise.fail("FRP connection closed before auth");
+                        }
+                        // 心跳判定失效后可能已经换上新连接，旧连接的关闭不再影响新连接
+                        if (controlSocket == ws) {
+                            handleConnectionLoss();
+                        }
+                    });
+
+                    // 设置异常处理器
+                    ws.exceptionHandler(ex -> {
+                        LOGGER.error("FRP link error", ex);
+                        if (!authenticated && !completed[0]) {
+                            completed[0] = true;
+                            vertx.cancelTimer(authTimerId[0]);
+                            promise.fail(ex);
+                        }
+                        ws.close();
+                        if (controlSocket == ws) {
+                            handleConnectionLoss();
+                        }
+                    });
+
+                    sendAuth(ws);
+                    authTimerId[0] = vertx.setTimer(5000, timerId -> {
+                        if (!authenticated && !completed[0]) {
+                            completed[0] = true;
+                            promise.fail("FRP auth timeout");
+                            ws.close();
+                        }
+                    });
+                    ws.heartbeatHandler((pong, payload) -> handleHeartbeat(ws, pong, payload));
+                    ws.messageHandler(data -> {
+                        OperationType operationType = frameOperationType(data);
+                        handleServerFrame(data);
+                        if (authenticated && !completed[0]) {
+                            completed[0] = true;
+                            vertx.cancelTimer(authTimerId[0]);
+                            promise.complete();
+                        } else if (operationType == OperationType.AUTH_FAIL && !completed[0] && controlSocket != ws) {
+                            completed[0] = true;
+                            vertx.cancelTimer(authTimerId[0]);
+                            promise.fail("FRP auth failed");
+                        }
+                    });
+                })
+                .onFailure(t -> {
+                    LOGGER.error("Failed to connect to FRP server", t);
+                    promise.fail(t);
+                    scheduleReconnect();
                 });
 
         return promise.future();
     }
 
-    private OperationType frameOperationType(WebSocketFrame frame) {
-        if (!frame.isBinary()) {
-            return null;
+    private boolean tcpTransport() {
+        return LinkSocket.TRANSPORT_TCP.equals(agent.frpTunnel().transport());
+    }
+
+    private Future<LinkSocket> connectLink() {
+        FrpTunnel frpTunnel = agent.frpTunnel();
+        if (tcpTransport()) {
+            return netClient.connect(frpTunnel.port(), frpTunnel.host())
+                    .map(socket -> new TcpLink(socket, frameSizeLimit));
+        }
+        return webSocketClient.connect("/").map(ws -> new WebSocketLink(ws, frameSizeLimit));
+    }
+
+    // 第一次立即重连，之后按指数退避加全量抖动重试，避免 server 重启后所有 agent 同时重连
+    private void scheduleReconnect() {
+        if (stopped || reconnectTimerId != -1) {
+            return;
         }
-        Buffer data = frame.binaryData();
+        long delay = reconnectBackoff.nextDelay();
+        if (delay > 0) {
+            LOGGER.info("Reconnecting to FRP server in {} ms (attempt {})", delay, reconnectBackoff.attempts());
+            setState(LinkState.BACKING_OFF);
+        }
+        reconnectTimerId = vertx.setTimer(Math.max(1, delay), id -> {
+            reconnectTimerId = -1;
+            if (!stopped && controlSocket == null) {
+                connectToFrpTunnel();
+            }
+        });
+    }
+
+    private void setState(LinkState state) {
+        if (this.state != state) {
+            LOGGER.debug("Agent link state {} -> {}", this.state, state);
+            this.state = state;
+        }
+    }
+
+    /**
+     * @return 本条链路当前的连接状态，可在任意线程读取
+     */
+    public LinkState state() {
+        return state;
+    }
+
+    private OperationType frameOperationType(Buffer data) {
         if (data.length() < MessageUtil.CONTROL_WIDTH) {
             return null;
         }
@@ -164,13 +322,8 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         }
     }
 
-    private void handleServerFrame(WebSocketFrame frame) {
+    private void handleServerFrame(Buffer data) {
         try {
-            // 只处理二进制帧
-            if (!frame.isBinary()) return;
-
-            Buffer data = frame.binaryData();
-
             if (data.length() < MessageUtil.CONTROL_WIDTH) {
                 LOGGER.error("Invalid frame length from server: {}", data.length());
                 return;
@@ -187,18 +340,28 @@ public class AgentLinkerVerticle extends AbstractVerticle {
                 return;
             }
 
+            if (operationType == OperationType.BATCH) {
+                MessageUtil.forEachBatchRecord(data, this::handleTransferFrame);
+                return;
+            }
+
             if (data.length() < OPERATION_WIDTH) {
                 LOGGER.error("Invalid transfer frame length from server: {}", data.length());
                 return;
             }
 
-            String requestId = MessageUtil.getRequestId(data);
-            Buffer payload = MessageUtil.getPayload(data);
+            handleTransferFrame(operationType, MessageUtil.getRequestId(data), MessageUtil.getPayload(data));
+        } catch (Exception ex) {
+            LOGGER.error("Error processing server frame", ex);
+        }
+    }
 
+    private void handleTransferFrame(OperationType operationType, long requestId, Buffer payload) {
+        try {
             switch (operationType) {
                 case CONNECT:
                     LOGGER.debug("Received CONNECT command for request: {}", requestId);
-                    handleConnectRequest(requestId);
+                    handleConnectRequest(requestId, payload);
                     break;
 
                 case DATA:
@@ -206,11 +369,41 @@ public class AgentLinkerVerticle extends AbstractVerticle {
                     handleDataRequest(requestId, payload);
                     break;
 
+                case DATA_DEFLATE:
+                    Route route = route(requestId);
+                    Buffer inflated;
+                    try {
+                        inflated = MessageUtil.inflate(payload, route != null ? route.maxFrameSize : frameSizeLimit);
+                    } catch (IllegalArgumentException ex) {
+                        LOGGER.error("Invalid compressed data from server for request: {}", requestId, ex);
+                        closeRequestConnection(requestId);
+                        notifyServerOfConnectionFailure(requestId);
+                        break;
+                    }
+                    handleDataRequest(requestId, inflated);
+                    break;
+
+                case WINDOW_UPDATE:
+                    if (payload.length() < 4) {
+                        LOGGER.error("Invalid window update payload length from server: {}", payload.length());
+                        break;
+                    }
+                    handleWindowUpdate(requestId, payload.getInt(0));
+                    break;
+
                 case CLOSE:
                     LOGGER.debug("Received CLOSE command for request: {}", requestId);
                     handleCloseRequest(requestId);
                     break;
 
+                case RESUME:
+                    if (payload.length() < Long.BYTES) {
+                        LOGGER.error("Invalid resume payload length from server: {}", payload.length());
+                        break;
+                    }
+                    handleResume(requestId, payload.getLong(0));
+                    break;
+
                 default:
                     LOGGER.warn("Unknown op code {} from server", operationType);
             }
@@ -219,141 +412,336 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         }
     }
 
-    private void sendAuth(WebSocket ws) {
+    private void sendAuth(LinkSocket ws) {
         JsonObject payload = new JsonObject()
                 .put("version", PROTOCOL_VERSION)
                 .put("token", agent.auth().token())
-                .put("agentName", agent.agentName());
-        ws.writeBinaryMessage(MessageUtil.buildControlMessage(OperationType.AUTH, payload));
+                .put("agentName", agent.agentName())
+                .put("window", window())
+                .put("linkGroup", linkGroup)
+                .put("batch", agent.batchFrames())
+                .put("maxFrameSize", frameSizeLimit)
+                .put("compression", agent.compression() ? new JsonArray().add(COMPRESSION_DEFLATE) : new JsonArray())
+                .put("connectAck", true)
+                .put("weight", agent.weight())
+                .put("standby", agent.standby());
+        agent.frpTunnel().name().ifPresent(name -> payload.put("tunnel", name));
+        if (routes.length > 1) {
+            // 多 tunnel 链路不支持会话恢复
+            JsonArray tunnels = new JsonArray();
+            for (int i = 1; i < routes.length; i++) {
+                tunnels.add(new JsonObject().put("tunnel", routes[i].tunnel).put("token", routes[i].token));
+            }
+            payload.put("tunnels", tunnels);
+            ws.writeMessage(MessageUtil.buildControlMessage(OperationType.AUTH, payload));
+            return;
+        }
+        payload.put("resume", true);
+        if (resumeTicket != null) {
+            JsonArray streams = new JsonArray();
+            for (RequestContext context : pendingRequests.values()) {
+                streams.add(new JsonArray().add(context.requestId).add(context.receivedBytes));
+                // 接收偏移一次性归还了挂起的信用
+                context.window.discardPendingAck();
+            }
+            payload.put("resumeTicket", resumeTicket)
+                    .put("resumeLink", linkId)
+                    .put("resumeStreams", streams);
+        }
+        ws.writeMessage(MessageUtil.buildControlMessage(OperationType.AUTH, payload));
+    }
+
+    // 初始窗口至少容纳几个最大帧，避免大帧下每个 stream 只能有一帧在途
+    private int window() {
+        return Math.max(StreamWindow.DEFAULT_WINDOW, 4 * frameSizeLimit);
     }
 
     private void handleAuthFrame(OperationType operationType, Buffer data) {
         if (operationType == OperationType.AUTH_OK) {
-            authenticated = true;
             JsonObject payload = MessageUtil.getControlPayload(data);
-            LOGGER.info("FRP auth success, sessionId={}", payload.getString("sessionId"));
+            Route route = route(payload.getString("tunnel"));
+            if (route == null) {
+                LOGGER.warn("Ignoring AUTH_OK for unknown tunnel {}", payload.getString("tunnel"));
+                return;
+            }
+            route.authenticated = true;
+            route.streamWindow = StreamWindow.negotiate(payload.getInteger("window", 0));
+            route.maxFrameSize = FrameChunker.negotiate(payload.getInteger("maxFrameSize", 0), frameSizeLimit);
+            route.compression = agent.compression() && COMPRESSION_DEFLATE.equals(payload.getString("compression"));
+            route.connectAck = payload.getBoolean("connectAck", false);
+            route.priorityClass = FrameScheduler.priorityClass(payload.getString("priority"));
+            if (authenticated) {
+                LOGGER.info("FRP auth success for tunnel {}, sessionId={}, window={}, maxFrameSize={}, compression={}",
+                        route.tunnel, payload.getString("sessionId"), route.streamWindow, route.maxFrameSize,
+                        route.compression);
+                return;
+            }
+            authenticated = true;
+            LinkSocket ws = controlSocket;
+            // 链路写队列满时各 stream 按所属 tunnel 的优先级在出口内公平排队
+            FrameBatcher linkBatcher = new FrameBatcher(context, frame -> {
+                if (!ws.isClosed()) {
+                    ws.writeMessage(frame);
+                }
+            }, agent.batchFrames() && payload.getBoolean("batch", false), FrameBatcher.writable(ws), requestId -> {
+                Route owner = route(requestId);
+                return owner != null ? owner.priorityClass : FrameScheduler.priorityClass(null);
+            });
+            ws.drainHandler(v -> linkBatcher.onWritable());
+            batcher = linkBatcher;
+            boolean resumed = resumeTicket != null && payload.getBoolean("resumed", false);
+            if (resumeTicket != null && !resumed) {
+                LOGGER.warn("FRP server did not resume the previous session, closing {} target connections",
+                        pendingRequests.size());
+                closeAllStreams();
+            }
+            resumeTicket = payload.getString("resumeTicket");
+            linkId = payload.getString("linkId");
+            resumeTimeout = TimeUnit.SECONDS.toMillis(payload.getLong("resumeTimeout", 0L));
+            if (resumed) {
+                // server 对仍持有的连接逐个回复 RESUME 或 CLOSE，期限内未回复的关闭
+                scheduleResumeTimeout();
+            }
+            reconnectBackoff.reset();
+            setState(LinkState.CONNECTED);
+            LOGGER.info("FRP auth success for tunnel {}, sessionId={}, linkId={}, window={}, maxFrameSize={}, compression={}, standby={}, resumed={}",
+                    route.tunnel, payload.getString("sessionId"), linkId, route.streamWindow, route.maxFrameSize,
+                    route.compression, payload.getBoolean("standby", false), resumed);
             return;
         }
         if (operationType == OperationType.AUTH_FAIL) {
-            LOGGER.error("FRP auth failed");
+            String tunnelName = MessageUtil.getControlPayload(data).getString("tunnel");
+            Route route = routes.length > 1 && tunnelName != null ? route(tunnelName) : null;
+            if (route != null) {
+                // 多 tunnel 链路上单个 tunnel 鉴权失败不影响其他 tunnel，全部失败时按断开重连
+                LOGGER.error("FRP auth failed for tunnel {}", tunnelName);
+                route.failed = true;
+                for (Route other : routes) {
+                    if (!other.failed) {
+                        return;
+                    }
+                }
+            } else {
+                LOGGER.error("FRP auth failed");
+            }
             handleConnectionLoss();
             return;
         }
         LOGGER.warn("Ignoring {} before FRP auth success", operationType);
     }
 
-    private void handleConnectRequest(String requestId) {
+    private void handleConnectRequest(long requestId, Buffer earlyData) {
 
         // 确保请求ID唯一（不应该已存在）
         if (pendingRequests.containsKey(requestId)) {
             LOGGER.warn("Request ID {} already exists", requestId);
+            closeRequestConnection(requestId);
         }
 
-        ProxyServer proxyServer = agent.proxy();
+        Route route = route(requestId);
+        if (route == null || !route.authenticated) {
+            LOGGER.warn("CONNECT for request {} names no authenticated tunnel", requestId);
+            notifyServerOfConnectionFailure(requestId);
+            return;
+        }
 
         LOGGER.debug("Try connect to target service for request: {}", requestId);
 
-        vertx.sharedData().getLock(requestId)
-                .onSuccess(lock -> {
-                    // 连接到目标服务
-                    vertx.createNetClient()
-                            .connect(proxyServer.port(), proxyServer.host())
-                            .onSuccess(socket -> {
-                                LOGGER.debug("Connected to target service for request: {}", requestId);
-
-                                // 保存到目标服务的连接
-                                pendingRequests.put(requestId, socket);
-
-                                // 处理目标服务的数据
-                                socket.handler(data -> {
-                                    try {
-                                        while ((data.length() + OPERATION_WIDTH) > MAX_WEBSOCKET_FRAME_SIZE) {
-                                            sendDataToServer(requestId, data.slice(0, MAX_WEBSOCKET_FRAME_SIZE - OPERATION_WIDTH));
-                                            data = data.slice(MAX_WEBSOCKET_FRAME_SIZE - OPERATION_WIDTH, data.length());
-                                        }
-
-                                        sendDataToServer(requestId, data);
-                                    } catch (Exception ex) {
-                                        LOGGER.error("Error sending data to server", ex);
-                                        closeRequestConnection(requestId);
-                                    }
-                                });
-
-                                // 处理目标服务关闭
-                                socket.closeHandler(v -> {
-                                    LOGGER.debug("Target service connection closed for request: {}", requestId);
-                                    closeRequestConnection(requestId);
-                                    notifyServerOfConnectionFailure(requestId);
-                                });
-
-                                // 处理目标服务异常
-                                socket.exceptionHandler(ex -> {
-                                    LOGGER.error("Target service connection error for request: {}", requestId, ex);
-                                    closeRequestConnection(requestId);
-                                    notifyServerOfConnectionFailure(requestId);
-                                });
-
-                                lock.release();
-                            })
-                            .onFailure(t -> {
-                                LOGGER.error("Failed to connect to target service for request: {}", requestId, t);
-                                notifyServerOfConnectionFailure(requestId);
-                                lock.release();
-                            });
-                })
-                .onFailure(t -> {
-                    LOGGER.error("Failed to acquire lock for request: {}", requestId, t);
-                });
-
-    }
-
-    private void handleDataRequest(String requestId, Buffer data) {
-        vertx.sharedData().getLock(requestId)
-                .onSuccess(lock -> {
-                    NetSocket targetSocket = pendingRequests.get(requestId);
-
-                    lock.release();
+        // 连接建立前就登记上下文，先于连接完成到达的 DATA 进入待写队列
+        RequestContext context = new RequestContext(requestId, route, new StreamWindow(route.streamWindow),
+                new StreamCompressor(route.compression), resumeTicket != null ? new ReplayBuffer() : null);
+        pendingRequests.put(requestId, context);
+        if (earlyData != null && earlyData.length() > 0) {
+            handleDataRequest(requestId, earlyData);
+        }
 
-                    if (targetSocket == null) {
-                        LOGGER.warn("Received data for unknown request: {}", requestId);
+        // 连接到目标服务，回调与帧处理都在本 verticle 的 event loop 上执行，无需加锁
+        route.upstreamPool.acquire()
+                .onSuccess(socket -> {
+                    if (pendingRequests.get(requestId) != context) {
+                        LOGGER.debug("Request {} closed before target service connected", requestId);
+                        socket.close();
                         return;
                     }
+                    LOGGER.debug("Connected to target service for request: {}", requestId);
+                    if (route.connectAck && !context.detached) {
+                        batcher.operation(requestId, OperationType.CONNECT_OK);
+                    }
 
-                    try {
-                        if (data != null && data.length() > 0) {
-                            targetSocket.write(data);
-                            LOGGER.debug("Forwarded {} bytes to target service for request {}", data.length(), requestId);
+                    // 处理目标服务的数据
+                    socket.handler(data -> {
+                        try {
+                            FrameChunker.forEachChunk(data, route.maxFrameSize, chunk -> sendDataToServer(context, chunk));
+                        } catch (Exception ex) {
+                            LOGGER.error("Error sending data to server", ex);
+                            closeRequestConnection(requestId);
+                        }
+                    });
+
+                    // 目标服务写队列排空后归还信用
+                    socket.drainHandler(v -> sendWindowUpdate(context, context.window.drained()));
+
+                    // 处理目标服务关闭
+                    socket.closeHandler(v -> {
+                        LOGGER.debug("Target service connection closed for request: {}", requestId);
+                        if (context.detached) {
+                            // 链路恢复后先重发已缓存的数据，再通知 server 关闭
+                            context.targetClosed = true;
+                            return;
                         }
-                    } catch (Exception ex) {
-                        LOGGER.error("Failed to write data to target service for request: {}", requestId, ex);
                         closeRequestConnection(requestId);
+                        notifyServerOfConnectionFailure(requestId);
+                    });
+
+                    // 处理目标服务异常
+                    socket.exceptionHandler(ex -> {
+                        LOGGER.error("Target service connection error for request: {}", requestId, ex);
+                        closeRequestConnection(requestId);
+                        notifyServerOfConnectionFailure(requestId);
+                    });
+
+                    // 保存到目标服务的连接，并写出连接建立前缓存的数据
+                    context.socket = socket;
+                    flushPendingWrites(context);
+                    if (context.window.hasCredit() && !context.detached) {
+                        socket.resume();
                     }
                 })
                 .onFailure(t -> {
-                    LOGGER.error("Failed to acquire lock for request: {}", requestId, t);
+                    LOGGER.error("Failed to connect to target service for request: {}", requestId, t);
+                    if (pendingRequests.get(requestId) != context) {
+                        return;
+                    }
+                    if (context.detached) {
+                        // 不在恢复列表中，server 恢复时会关闭对应的用户连接
+                        pendingRequests.remove(requestId);
+                        return;
+                    }
+                    if (route.connectAck) {
+                        pendingRequests.remove(requestId);
+                        batcher.connectFail(requestId, ConnectFailReason.of(t));
+                    } else {
+                        notifyServerOfConnectionFailure(requestId);
+                    }
                 });
 
     }
 
-    private void handleCloseRequest(String requestId) {
+    private void handleDataRequest(long requestId, Buffer data) {
+        RequestContext context = pendingRequests.get(requestId);
+        if (context == null) {
+            LOGGER.warn("Received data for unknown request: {}", requestId);
+            return;
+        }
+        if (data == null || data.length() == 0) {
+            return;
+        }
+        context.receivedBytes += data.length();
+
+        if (context.socket == null) {
+            if (context.pendingBytes + data.length() > maxPendingBytes(context.route)) {
+                LOGGER.warn("Pending data for request {} exceeds {} bytes before target service connected",
+                        requestId, maxPendingBytes(context.route));
+                closeRequestConnection(requestId);
+                notifyServerOfConnectionFailure(requestId);
+                return;
+            }
+            context.pendingWrites.add(data);
+            context.pendingBytes += data.length();
+            LOGGER.debug("Queued {} bytes for request {} until target service connected", data.length(), requestId);
+            return;
+        }
+
+        writeToTarget(context, data);
+    }
+
+    private void flushPendingWrites(RequestContext context) {
+        Buffer data;
+        while ((data = context.pendingWrites.poll()) != null) {
+            context.pendingBytes -= data.length();
+            writeToTarget(context, data);
+        }
+    }
+
+    private void writeToTarget(RequestContext context, Buffer data) {
+        try {
+            NetSocket targetSocket = context.socket;
+            targetSocket.write(data);
+            LOGGER.debug("Forwarded {} bytes to target service for request {}", data.length(), context.requestId);
+            sendWindowUpdate(context, context.window.received(data.length(), !targetSocket.writeQueueFull()));
+        } catch (Exception ex) {
+            LOGGER.error("Failed to write data to target service for request: {}", context.requestId, ex);
+            closeRequestConnection(context.requestId);
+        }
+    }
+
+    // server 在窗口耗尽后才暂停读取用户连接，已读到的一帧仍会发出，因此在窗口之外再留一帧余量
+    private int maxPendingBytes(Route route) {
+        return Math.max(route.streamWindow, MAX_PENDING_BYTES) + route.maxFrameSize;
+    }
+
+    private void handleWindowUpdate(long requestId, int increment) {
+        RequestContext context = pendingRequests.get(requestId);
+        if (context == null) {
+            return;
+        }
+        if (context.replay != null) {
+            context.replay.ack(increment);
+        }
+        if (context.window.grant(increment) && context.socket != null) {
+            context.socket.resume();
+        }
+    }
+
+    private void handleCloseRequest(long requestId) {
         closeRequestConnection(requestId);
     }
 
-    private void closeRequestConnection(String requestId) {
-        NetSocket targetSocket = pendingRequests.remove(requestId);
-        if (targetSocket != null) {
+    private void handleResume(long requestId, long serverReceived) {
+        RequestContext context = pendingRequests.get(requestId);
+        if (context == null || !context.detached) {
+            return;
+        }
+        if (!context.replay.ackTo(serverReceived)) {
+            LOGGER.error("Cannot resume request {} from offset {}", requestId, serverReceived);
+            closeRequestConnection(requestId);
+            notifyServerOfConnectionFailure(requestId);
+            return;
+        }
+        context.detached = false;
+        context.replay.forEachUnacked(data -> FrameChunker.forEachChunk(data, context.route.maxFrameSize,
+                chunk -> batcher.data(requestId, chunk)));
+        if (context.targetClosed) {
+            closeRequestConnection(requestId);
+            notifyServerOfConnectionFailure(requestId);
+            return;
+        }
+        if (context.window.resume(context.replay.unacked()) && context.socket != null) {
+            context.socket.resume();
+        }
+        LOGGER.debug("Resumed request {} from offset {}", requestId, serverReceived);
+    }
+
+    private void closeRequestConnection(long requestId) {
+        RequestContext context = pendingRequests.remove(requestId);
+        if (context != null) {
+            context.pendingWrites.clear();
+            context.pendingBytes = 0;
+            if (context.socket == null) {
+                return;
+            }
             try {
-                targetSocket.close();
+                context.socket.close();
                 LOGGER.debug("Closed target service connection for request: {}", requestId);
             } catch (Exception ignore) {
             }
         }
     }
 
-    private void notifyServerOfConnectionFailure(String requestId) {
+    private void notifyServerOfConnectionFailure(long requestId) {
         try {
-            if (controlSocket != null && !controlSocket.isClosed()) {
-                controlSocket.writeBinaryMessage(MessageUtil.buildOperationMessage(requestId, OperationType.CLOSE));
+            if (controlSocket != null && !controlSocket.isClosed() && batcher != null) {
+                batcher.operation(requestId, OperationType.CLOSE);
                 LOGGER.debug("Notified server of connection failure for request: {}", requestId);
             }
         } catch (Exception ex) {
@@ -364,7 +752,16 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         }
     }
 
-    private void sendDataToServer(String requestId, Buffer data) {
+    private void sendDataToServer(RequestContext context, Buffer data) {
+        long requestId = context.requestId;
+        if (context.detached) {
+            // 链路恢复后随重发一起发出
+            context.replay.append(data);
+            if (!context.window.consume(data.length())) {
+                context.socket.pause();
+            }
+            return;
+        }
         if (controlSocket == null || controlSocket.isClosed()) {
             LOGGER.warn("Control channel not available, cannot send data for request: {}", requestId);
             closeRequestConnection(requestId);
@@ -377,42 +774,124 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         }
 
         try {
-            controlSocket.writeBinaryMessage(MessageUtil.buildDataMessage(requestId, data));
+            Buffer compressed = context.compressor.compress(data);
+            if (compressed != null) {
+                batcher.deflatedData(requestId, compressed);
+            } else {
+                batcher.data(requestId, data);
+            }
+            if (context.replay != null) {
+                context.replay.append(data);
+            }
             LOGGER.debug("Sent {} bytes to server for request {}", data.length(), requestId);
+            if (!context.window.consume(data.length())) {
+                context.socket.pause();
+                LOGGER.debug("Paused target service connection {} until server grants more window", requestId);
+            }
         } catch (Exception ex) {
             LOGGER.error("Failed to send data to server for request: {}", requestId, ex);
             closeRequestConnection(requestId);
         }
     }
 
+    private void sendWindowUpdate(RequestContext context, int increment) {
+        if (increment <= 0 || controlSocket == null || controlSocket.isClosed() || !authenticated) {
+            return;
+        }
+        try {
+            batcher.windowUpdate(context.requestId, increment);
+        } catch (Exception ex) {
+            LOGGER.error("Failed to send window update to server for request: {}", context.requestId, ex);
+        }
+    }
+
     private void handleConnectionLoss() {
 
         LOGGER.error("Connection to FRP server lost");
 
-        // 关闭所有目标服务连接
-        for (NetSocket socket : pendingRequests.values()) {
-            try {
-                socket.close();
-            } catch (Exception ignore) {
+        if (resumeTicket != null && !stopped) {
+            // 保留目标服务连接，在 resumeTimeout 内凭票据重连后继续传输
+            for (RequestContext context : pendingRequests.values()) {
+                context.detached = true;
+                if (context.socket != null) {
+                    context.socket.pause();
+                }
+            }
+            if (resumeTimerId == -1) {
+                scheduleResumeTimeout();
             }
+        } else {
+            closeAllStreams();
         }
 
+        setControlSocket(null);
+        setState(LinkState.DISCONNECTED);
+        scheduleReconnect();
+    }
+
+    private void scheduleResumeTimeout() {
+        vertx.cancelTimer(resumeTimerId);
+        resumeTimerId = vertx.setTimer(Math.max(1, resumeTimeout), id -> {
+            resumeTimerId = -1;
+            if (!authenticated) {
+                resumeTicket = null;
+            }
+            LongObjectHashMap<RequestContext> expired = new LongObjectHashMap<>();
+            for (RequestContext context : pendingRequests.values()) {
+                if (context.detached) {
+                    expired.put(context.requestId, context);
+                }
+            }
+            if (!expired.isEmpty()) {
+                LOGGER.warn("{} target connections were not resumed in time, closing", expired.size());
+            }
+            for (RequestContext context : expired.values()) {
+                pendingRequests.remove(context.requestId);
+                closeTargetSocket(context);
+            }
+        });
+    }
+
+    private void closeAllStreams() {
+        vertx.cancelTimer(resumeTimerId);
+        resumeTimerId = -1;
+        for (RequestContext context : pendingRequests.values()) {
+            closeTargetSocket(context);
+        }
         pendingRequests.clear();
+    }
 
-        setControlSocket(null);
+    private void closeTargetSocket(RequestContext context) {
+        if (context.socket == null) {
+            return;
+        }
+        try {
+            context.socket.closeHandler(null);
+            context.socket.close();
+        } catch (Exception ignore) {
+        }
     }
 
     private WebSocketClientOptions options(FrpTunnel server) {
-        return new WebSocketClientOptions()
+        return socketTuning.apply(new WebSocketClientOptions())
                 .setDefaultHost(server.host())
                 .setDefaultPort(server.port())
-                .setTcpKeepAlive(true)
-                .setMaxFrameSize(MAX_WEBSOCKET_FRAME_SIZE);
+                .setMaxFrameSize(frameSizeLimit)
+                .setMaxMessageSize(frameSizeLimit);
     }
 
     @Override
     public void stop() {
         LOGGER.info("Stopping agent linker");
+        stopped = true;
+        vertx.cancelTimer(reconnectTimerId);
+        setState(LinkState.STOPPED);
+
+        for (Route route : routes) {
+            if (route.upstreamPool != null) {
+                route.upstreamPool.close();
+            }
+        }
 
         // 关闭控制通道
         if (controlSocket != null) {
@@ -424,13 +903,102 @@ public class AgentLinkerVerticle extends AbstractVerticle {
         }
 
         // 关闭所有目标服务连接
-        for (NetSocket socket : pendingRequests.values()) {
-            try {
-                socket.close();
-            } catch (Exception ignore) {
+        closeAllStreams();
+
+        if (webSocketClient != null) {
+            webSocketClient.close();
+        }
+        if (netClient != null) {
+            netClient.close();
+        }
+    }
+
+    /**
+     * agent 到 server 的单条链路状态
+     */
+    public enum LinkState {
+        DISCONNECTED,
+        CONNECTING,
+        AUTHENTICATING,
+        CONNECTED,
+        BACKING_OFF,
+        STOPPED
+    }
+
+    private Route route(long requestId) {
+        int scope = (int) (requestId >>> 56);
+        return scope < routes.length ? routes[scope] : null;
+    }
+
+    private Route route(String tunnelName) {
+        if (tunnelName == null) {
+            return routes[0];
+        }
+        for (Route route : routes) {
+            if (tunnelName.equals(route.tunnel)) {
+                return route;
             }
         }
-        pendingRequests.clear();
+        return null;
+    }
 
+    /**
+     * 本链路接入的一个 tunnel 及其上游服务，协商结果随每次重连重置
+     */
+    private static class Route {
+        private final int scope;
+        // 未配置 frp-tunnel.name 的主 tunnel 为 null
+        private final String tunnel;
+        private final String token;
+        private final ProxyServer proxy;
+        private UpstreamPool upstreamPool;
+        private boolean authenticated;
+        private boolean failed;
+        private int streamWindow;
+        private int maxFrameSize = FrameChunker.DEFAULT_MAX_FRAME_SIZE;
+        private boolean compression;
+        private boolean connectAck;
+        private int priorityClass = FrameScheduler.priorityClass(null);
+
+        Route(int scope, String tunnel, String token, ProxyServer proxy) {
+            this.scope = scope;
+            this.tunnel = tunnel;
+            this.token = token;
+            this.proxy = proxy;
+        }
+
+        void reset() {
+            authenticated = false;
+            failed = false;
+            streamWindow = 0;
+            maxFrameSize = FrameChunker.DEFAULT_MAX_FRAME_SIZE;
+            compression = false;
+            connectAck = false;
+            priorityClass = FrameScheduler.priorityClass(null);
+        }
+    }
+
+    private static class RequestContext {
+        private final long requestId;
+        private final Route route;
+        private final StreamWindow window;
+        private final StreamCompressor compressor;
+        // server 签发恢复票据时记录已发给 server 但未确认的数据，否则为 null
+        private final ReplayBuffer replay;
+        private final ArrayDeque<Buffer> pendingWrites = new ArrayDeque<>();
+        private int pendingBytes;
+        private long receivedBytes;
+        private NetSocket socket;
+        private boolean detached;
+        private boolean targetClosed;
+
+        RequestContext(long requestId, Route route, StreamWindow window, StreamCompressor compressor,
+                       ReplayBuffer replay) {
+            this.requestId = requestId;
+            this.route = route;
+            this.window = window;
+            this.compressor = compressor;
+            this.replay = replay;
+        }
     }
 }
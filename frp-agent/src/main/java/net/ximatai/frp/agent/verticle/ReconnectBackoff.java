@@ -0,0 +1,45 @@
+package net.ximatai.frp.agent.verticle;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重连退避：断开后第一次立即重试，之后第 n 次在 [0, min(maxDelay, baseDelay * 2^(n-1))] 内均匀随机（full jitter），
+ * 使大量 agent 在 server 恢复时分散重连。该类只在所属 verticle 的 event loop 上使用。
+ */
+class ReconnectBackoff {
+    private final long baseDelay;
+    private final long maxDelay;
+    private int attempts;
+
+    /**
+     * @param baseDelay 第一次退避的上限（毫秒）
+     * @param maxDelay  退避上限（毫秒）
+     */
+    ReconnectBackoff(long baseDelay, long maxDelay) {
+        this.baseDelay = Math.max(1, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    /**
+     * @return 下一次重连前等待的毫秒数，0 表示立即重连
+     */
+    long nextDelay() {
+        int attempt = attempts++;
+        if (attempt == 0) {
+            return 0;
+        }
+        long cap = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    int attempts() {
+        return attempts;
+    }
+
+    /**
+     * 鉴权成功后调用
+     */
+    void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,116 @@
+package net.ximatai.frp.agent.verticle;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+import net.ximatai.frp.agent.config.ProxyServer;
+import net.ximatai.frp.common.SocketTuning;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+
+/**
+ * 上游服务连接器：所有 CONNECT 共用一个长期存在的 {@link NetClient}，并可选地维护一组预先建立的空闲连接。
+ * <p>
+ * 预热连接建立后立即 pause，上游主动发送的数据（如 SSH banner）会保留在读缓冲中，
+ * 被取出后由调用方设置好 handler 再 resume。空闲连接被上游关闭时自动移出池并在后台补足。
+ * 该类只在所属 verticle 的 event loop 上使用。
+ */
+class UpstreamPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamPool.class);
+
+    private static final long REFILL_RETRY_DELAY = 1000;
+
+    private final Vertx vertx;
+    private final ProxyServer proxyServer;
+    private final NetClient client;
+    private final int warmPoolSize;
+    private final ArrayDeque<NetSocket> idleSockets = new ArrayDeque<>();
+    private int connecting;
+    private boolean refillScheduled;
+    private boolean closed;
+
+    /**
+     * @param socketTuning 上游连接的 socket 参数，keepalive 以 proxy 配置为准
+     */
+    UpstreamPool(Vertx vertx, ProxyServer proxyServer, int warmPoolSize, SocketTuning socketTuning) {
+        this.vertx = vertx;
+        this.proxyServer = proxyServer;
+        this.warmPoolSize = warmPoolSize;
+        this.client = vertx.createNetClient(socketTuning.apply(new NetClientOptions())
+                .setConnectTimeout(proxyServer.connectTimeout())
+                .setTcpKeepAlive(proxyServer.tcpKeepAlive()));
+    }
+
+    /**
+     * 获取一个到上游服务的连接，优先使用预热连接。返回的 socket 处于 pause 状态，调用方设置 handler 后需要 resume。
+     */
+    Future<NetSocket> acquire() {
+        NetSocket socket = idleSockets.poll();
+        refill();
+        if (socket != null) {
+            LOGGER.debug("Took warm upstream connection, {} left in pool", idleSockets.size());
+            return Future.succeededFuture(socket);
+        }
+        return client.connect(proxyServer.port(), proxyServer.host())
+                .onSuccess(NetSocket::pause);
+    }
+
+    void refill() {
+        if (closed) {
+            return;
+        }
+        while (idleSockets.size() + connecting < warmPoolSize) {
+            connecting++;
+            client.connect(proxyServer.port(), proxyServer.host())
+                    .onComplete(ar -> {
+                        connecting--;
+                        if (ar.failed()) {
+                            LOGGER.warn("Failed to pre-connect upstream {}:{}", proxyServer.host(), proxyServer.port(), ar.cause());
+                            scheduleRefill();
+                            return;
+                        }
+                        NetSocket socket = ar.result();
+                        if (closed) {
+                            socket.close();
+                            return;
+                        }
+                        socket.pause();
+                        socket.closeHandler(v -> {
+                            if (idleSockets.remove(socket)) {
+                                LOGGER.debug("Warm upstream connection closed by peer");
+                                refill();
+                            }
+                        });
+                        socket.exceptionHandler(ex -> socket.close());
+                        idleSockets.add(socket);
+                    });
+        }
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled || closed) {
+            return;
+        }
+        refillScheduled = true;
+        vertx.setTimer(REFILL_RETRY_DELAY, id -> {
+            refillScheduled = false;
+            refill();
+        });
+    }
+
+    void close() {
+        closed = true;
+        NetSocket socket;
+        while ((socket = idleSockets.poll()) != null) {
+            try {
+                socket.close();
+            } catch (Exception ignore) {
+            }
+        }
+        client.close();
+    }
+}
@@ -5,5 +5,9 @@ plugins {
 
 dependencies {
     implementation(libs.vertx.core)
-}
 
+    testImplementation(enforcedPlatform(libs.quarkus.platform.bom))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testRuntimeOnly("org.jboss.logmanager:jboss-logmanager")
+}
@@ -0,0 +1,53 @@
+package net.ximatai.frp.common;
+
+import io.netty.channel.ConnectTimeoutException;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * CONNECT_FAIL 的原因码，payload 为 1 字节 code
+ */
+public enum ConnectFailReason {
+    UNKNOWN((byte) 0x00),
+    REFUSED((byte) 0x01),
+    TIMEOUT((byte) 0x02),
+    UNREACHABLE((byte) 0x03);
+
+    private final byte code;
+
+    ConnectFailReason(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static ConnectFailReason fromCode(byte code) {
+        for (ConnectFailReason reason : values()) {
+            if (reason.code == code) {
+                return reason;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * 按连接目标服务失败的异常归类，超时异常也是 ConnectException 的子类，需要先判断
+     */
+    public static ConnectFailReason of(Throwable throwable) {
+        if (throwable instanceof ConnectTimeoutException || throwable instanceof SocketTimeoutException) {
+            return TIMEOUT;
+        }
+        if (throwable instanceof UnknownHostException || throwable instanceof NoRouteToHostException) {
+            return UNREACHABLE;
+        }
+        if (throwable instanceof ConnectException) {
+            return REFUSED;
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,48 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketFrame;
+
+/**
+ * 把中间代理或对端拆成 continuation 帧的 WebSocket 二进制消息重新拼成完整消息，
+ * 累计长度超过上限时抛出 IllegalStateException。每条 WebSocket 连接使用一个实例
+ */
+public class FrameAssembler {
+    private final int maxMessageSize;
+    private Buffer partial;
+
+    public FrameAssembler(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * @return 完整的二进制消息；帧不是二进制消息的一部分或消息尚未结束时返回 null
+     */
+    public Buffer append(WebSocketFrame frame) {
+        if (frame.isContinuation()) {
+            if (partial == null) {
+                return null;
+            }
+            partial.appendBuffer(frame.binaryData());
+        } else if (frame.isBinary()) {
+            if (frame.isFinal()) {
+                partial = null;
+                return frame.binaryData();
+            }
+            partial = Buffer.buffer().appendBuffer(frame.binaryData());
+        } else {
+            return null;
+        }
+
+        if (partial.length() > maxMessageSize) {
+            partial = null;
+            throw new IllegalStateException("WebSocket message exceeds " + maxMessageSize + " bytes");
+        }
+        if (!frame.isFinal()) {
+            return null;
+        }
+        Buffer message = partial;
+        partial = null;
+        return message;
+    }
+}
@@ -0,0 +1,166 @@
+package net.ximatai.frp.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongToIntFunction;
+
+/**
+ * 一条链路在单个 event loop 上的转发帧出口。
+ * <p>
+ * 小帧先追加到待发批次，批次满或本轮事件循环结束时发送；大块 DATA 先发送已有批次再单独成帧，保证帧顺序不变。
+ * 链路不可写时 DATA 按 {@link FrameScheduler} 在各 stream 间排队，CLOSE 排在同一 stream 已排队的 DATA 之后。
+ * 只能在创建时传入的 context 上使用。
+ */
+public class FrameBatcher {
+    public static final int MAX_RECORD_PAYLOAD = 1024;
+    public static final int MAX_BATCH_BYTES = 16 * 1024;
+
+    private final Context context;
+    private final Consumer<Buffer> sink;
+    private final boolean enabled;
+    private final BooleanSupplier writable;
+    private final LongToIntFunction priorityClass;
+    private final FrameScheduler scheduler = new FrameScheduler();
+    private ByteBuf pending;
+    private boolean flushScheduled;
+
+    public FrameBatcher(Context context, Consumer<Buffer> sink, boolean enabled) {
+        this(context, sink, enabled, () -> true, requestId -> FrameScheduler.priorityClass(null));
+    }
+
+    public FrameBatcher(Context context, Consumer<Buffer> sink, boolean enabled, BooleanSupplier writable,
+                        LongToIntFunction priorityClass) {
+        this.context = context;
+        this.sink = sink;
+        this.enabled = enabled;
+        this.writable = writable;
+        this.priorityClass = priorityClass;
+    }
+
+    /**
+     * 写队列未满即视为可写，已关闭的链路视为可写，交由 sink 丢弃
+     */
+    public static BooleanSupplier writable(LinkSocket link) {
+        return () -> !link.writeQueueFull();
+    }
+
+    /**
+     * 可在任意线程调用，通常由链路的 drainHandler 触发
+     */
+    public void onWritable() {
+        context.runOnContext(v -> drain());
+    }
+
+    public void data(long requestId, Buffer payload) {
+        scheduled(requestId, OperationType.DATA, payload);
+    }
+
+    public void deflatedData(long requestId, Buffer payload) {
+        scheduled(requestId, OperationType.DATA_DEFLATE, payload);
+    }
+
+    public void connect(long requestId, Buffer earlyData) {
+        if (earlyData == null || earlyData.length() == 0) {
+            operation(requestId, OperationType.CONNECT);
+            return;
+        }
+        data(requestId, OperationType.CONNECT, earlyData);
+    }
+
+    public void connectFail(long requestId, ConnectFailReason reason) {
+        data(requestId, OperationType.CONNECT_FAIL, Buffer.buffer(new byte[]{reason.getCode()}));
+    }
+
+    public void resume(long requestId, long receivedBytes) {
+        data(requestId, OperationType.RESUME, Buffer.buffer(Long.BYTES).appendLong(receivedBytes));
+    }
+
+    public void operation(long requestId, OperationType type) {
+        if (type == OperationType.CLOSE && scheduler.isQueued(requestId)) {
+            scheduler.enqueue(requestId, priorityClass.applyAsInt(requestId), type, null);
+            return;
+        }
+        if (!enabled) {
+            sink.accept(MessageUtil.buildOperationMessage(requestId, type));
+            return;
+        }
+        record(type, requestId, 0);
+        afterRecord();
+    }
+
+    public void windowUpdate(long requestId, int increment) {
+        if (!enabled) {
+            sink.accept(MessageUtil.buildWindowUpdateMessage(requestId, increment));
+            return;
+        }
+        record(OperationType.WINDOW_UPDATE, requestId, 4).writeInt(increment);
+        afterRecord();
+    }
+
+    private void scheduled(long requestId, OperationType type, Buffer payload) {
+        if (scheduler.isEmpty() && writable.getAsBoolean()) {
+            data(requestId, type, payload);
+            return;
+        }
+        scheduler.enqueue(requestId, priorityClass.applyAsInt(requestId), type, payload);
+        drain();
+    }
+
+    private void drain() {
+        FrameScheduler.Frame frame;
+        while (!scheduler.isEmpty() && writable.getAsBoolean() && (frame = scheduler.poll()) != null) {
+            if (frame.payload() == null) {
+                operation(frame.requestId(), frame.type());
+            } else {
+                data(frame.requestId(), frame.type(), frame.payload());
+            }
+        }
+    }
+
+    private void data(long requestId, OperationType type, Buffer payload) {
+        if (!enabled || payload.length() > MAX_RECORD_PAYLOAD) {
+            flush();
+            sink.accept(MessageUtil.buildDataMessage(requestId, type, payload));
+            return;
+        }
+        record(type, requestId, payload.length()).writeBytes(NettyBuffers.byteBuf(payload));
+        afterRecord();
+    }
+
+    public void flush() {
+        ByteBuf batch = pending;
+        if (batch == null) {
+            return;
+        }
+        pending = null;
+        sink.accept(NettyBuffers.wrap(batch));
+    }
+
+    private ByteBuf record(OperationType type, long requestId, int length) {
+        if (pending == null) {
+            pending = Unpooled.buffer(Math.min(MAX_BATCH_BYTES, 256));
+            pending.writeByte(OperationType.BATCH.getValue());
+            if (!flushScheduled) {
+                flushScheduled = true;
+                context.runOnContext(v -> {
+                    flushScheduled = false;
+                    flush();
+                });
+            }
+        }
+        return pending.writeByte(type.getValue())
+                .writeLong(requestId)
+                .writeInt(length);
+    }
+
+    private void afterRecord() {
+        if (pending.readableBytes() >= MAX_BATCH_BYTES) {
+            flush();
+        }
+    }
+}
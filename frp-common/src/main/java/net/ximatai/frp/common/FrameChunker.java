@@ -0,0 +1,49 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.function.Consumer;
+
+/**
+ * 转发帧大小的协商与切分，切片与原 buffer 共享内存。对端未声明时使用 {@link #DEFAULT_MAX_FRAME_SIZE}，与旧版本兼容
+ */
+public final class FrameChunker {
+    public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+    public static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+
+    private FrameChunker() {
+    }
+
+    /**
+     * @param requested 对端声明的最大帧长度，小于等于 0 表示未声明
+     */
+    public static int negotiate(int requested, int limit) {
+        if (requested <= 0) {
+            return DEFAULT_MAX_FRAME_SIZE;
+        }
+        return Math.max(DEFAULT_MAX_FRAME_SIZE, Math.min(Math.min(MAX_FRAME_SIZE, limit), requested));
+    }
+
+    public static int maxPayload(int maxFrameSize) {
+        return maxFrameSize - MessageUtil.OPERATION_WIDTH;
+    }
+
+    public static void forEachChunk(Buffer data, int maxFrameSize, Consumer<Buffer> sink) {
+        int maxPayload = maxPayload(maxFrameSize);
+        int length = data.length();
+        if (length <= maxPayload) {
+            sink.accept(data);
+            return;
+        }
+        for (int offset = 0; offset < length; offset += maxPayload) {
+            sink.accept(data.slice(offset, Math.min(length, offset + maxPayload)));
+        }
+    }
+
+    /**
+     * 源 socket 单次读取的缓冲大小，返回 -1 表示沿用 Vert.x 默认值
+     */
+    public static int readBufferSize(int maxFrameSize) {
+        return maxFrameSize > DEFAULT_MAX_FRAME_SIZE ? maxPayload(maxFrameSize) : -1;
+    }
+}
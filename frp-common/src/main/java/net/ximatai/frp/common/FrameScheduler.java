@@ -0,0 +1,108 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条链路上待发送 DATA 的调度队列。
+ * <p>
+ * 每个 stream 一个 FIFO 队列，按优先级类别严格区分先后，同一类别内按 deficit round-robin 轮转：
+ * stream 每轮获得 {@link #QUANTUM} 字节额度，额度不足以发送队首帧时让给下一个 stream。
+ * 大流量 stream 因此不会在交互式 stream 的按键之前排入数 MB 数据。
+ * <p>
+ * 该类非线程安全，只应在所属链路出口的 event loop 上使用。
+ */
+public class FrameScheduler {
+    public static final String PRIORITY_HIGH = "high";
+    public static final String PRIORITY_NORMAL = "normal";
+    public static final String PRIORITY_LOW = "low";
+    public static final List<String> PRIORITIES = List.of(PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW);
+
+    /**
+     * 每轮额度，不小于缺省的最大帧长，缺省帧长下每轮至少能发送一帧
+     */
+    public static final int QUANTUM = FrameChunker.DEFAULT_MAX_FRAME_SIZE;
+
+    private final Map<Long, StreamQueue> streams = new HashMap<>();
+    // 下标为优先级类别，越小越先发送
+    private final List<ArrayDeque<StreamQueue>> rounds = new ArrayList<>(PRIORITIES.size());
+
+    public FrameScheduler() {
+        for (int i = 0; i < PRIORITIES.size(); i++) {
+            rounds.add(new ArrayDeque<>());
+        }
+    }
+
+    public static int priorityClass(String priority) {
+        int index = priority == null ? -1 : PRIORITIES.indexOf(priority);
+        return index < 0 ? PRIORITIES.indexOf(PRIORITY_NORMAL) : index;
+    }
+
+    public boolean isEmpty() {
+        return streams.isEmpty();
+    }
+
+    /**
+     * @return 该 stream 是否还有未发送的帧，此时它的后续帧（包括 CLOSE）也要排队以保持顺序
+     */
+    public boolean isQueued(long requestId) {
+        return streams.containsKey(requestId);
+    }
+
+    /**
+     * @param priorityClass {@link #priorityClass(String)} 的结果，只在 stream 开始排队时生效
+     */
+    public void enqueue(long requestId, int priorityClass, OperationType type, Buffer payload) {
+        StreamQueue stream = streams.get(requestId);
+        if (stream == null) {
+            stream = new StreamQueue(requestId);
+            streams.put(requestId, stream);
+            // 新加入的 stream 排在本轮末尾，带着一轮额度
+            stream.deficit = QUANTUM;
+            rounds.get(priorityClass).addLast(stream);
+        }
+        stream.frames.add(new Frame(type, requestId, payload));
+    }
+
+    public Frame poll() {
+        for (ArrayDeque<StreamQueue> round : rounds) {
+            while (!round.isEmpty()) {
+                StreamQueue stream = round.peekFirst();
+                Frame frame = stream.frames.peekFirst();
+                int cost = frame.payload() == null ? 0 : frame.payload().length();
+                if (cost <= stream.deficit) {
+                    stream.frames.pollFirst();
+                    stream.deficit -= cost;
+                    if (stream.frames.isEmpty()) {
+                        round.pollFirst();
+                        streams.remove(stream.requestId);
+                    }
+                    return frame;
+                }
+                // 本轮额度用完，补充额度后移到末尾
+                round.pollFirst();
+                stream.deficit += QUANTUM;
+                round.addLast(stream);
+            }
+        }
+        return null;
+    }
+
+    public record Frame(OperationType type, long requestId, Buffer payload) {
+    }
+
+    private static class StreamQueue {
+        private final long requestId;
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        private long deficit;
+
+        StreamQueue(long requestId) {
+            this.requestId = requestId;
+        }
+    }
+}
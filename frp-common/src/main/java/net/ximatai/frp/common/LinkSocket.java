@@ -0,0 +1,61 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.SocketAddress;
+
+import java.util.List;
+
+/**
+ * agent 与 server 之间的一条链路，屏蔽 WebSocket 与原始 TCP 两种传输的差异。
+ * <p>
+ * 链路上收发的是完整的 MuYunFRP 消息（操作码开头），消息边界与心跳由传输层负责：
+ * WebSocket 使用二进制消息和 PING/PONG 帧，TCP 使用 4 字节长度前缀和 {@link OperationType#PING} / {@link OperationType#PONG} 消息。
+ * 收到 PING 时由传输层自动回复 PONG。
+ */
+public interface LinkSocket {
+    String TRANSPORT_WEBSOCKET = "websocket";
+    String TRANSPORT_TCP = "tcp";
+    List<String> TRANSPORTS = List.of(TRANSPORT_WEBSOCKET, TRANSPORT_TCP);
+
+    @FunctionalInterface
+    interface HeartbeatHandler {
+        /**
+         * @param pong false 表示收到对端的 PING
+         */
+        void handle(boolean pong, Buffer payload);
+    }
+
+    /**
+     * @param handler 接收完整消息，超过长度上限的消息按异常处理并关闭链路
+     */
+    LinkSocket messageHandler(Handler<Buffer> handler);
+
+    LinkSocket heartbeatHandler(HeartbeatHandler handler);
+
+    LinkSocket closeHandler(Handler<Void> handler);
+
+    LinkSocket exceptionHandler(Handler<Throwable> handler);
+
+    LinkSocket drainHandler(Handler<Void> handler);
+
+    Future<Void> writeMessage(Buffer message);
+
+    void writePing(Buffer payload);
+
+    /**
+     * @return 写队列是否已满，已关闭的链路返回 false
+     */
+    boolean writeQueueFull();
+
+    boolean isClosed();
+
+    Future<Void> close();
+
+    SocketAddress remoteAddress();
+
+    LinkSocket pause();
+
+    LinkSocket resume();
+}
@@ -1,43 +1,58 @@
 package net.ximatai.frp.common;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
 import java.nio.charset.StandardCharsets;
-import java.util.UUID;
-
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Server 与 Agent 之间的帧编解码。
+ * <p>
+ * 转发帧只分配 17 字节的帧头，与 payload 组合成 composite buffer 发送，不复制 payload；
+ * 解码时 payload 以只读 slice 的形式返回，requestId 直接从帧内读取为 long。
+ * <p>
+ * requestId 占用帧头中的 16 字节：高 8 字节保留为 0，低 8 字节为 server 按 session 单调分配的 stream id。
+ * <p>
+ * 批量帧为 1 字节 BATCH 操作码加若干条记录，每条记录为 1 字节操作码 + 8 字节 requestId + 4 字节 payload 长度 + payload，
+ * 由 {@link FrameBatcher} 编码。
+ * <p>
+ * DATA_DEFLATE 帧的 payload 为 4 字节原始长度 + raw deflate 数据，每帧独立压缩，不依赖前后帧。
+ */
 public class MessageUtil {
 
-    public static final int OPERATION_WIDTH = 17; // 标志位一个字节，UUID 16个字节
+    public static final int OPERATION_WIDTH = 17; // 标志位一个字节，requestId 16个字节
     public static final int CONTROL_WIDTH = 1; // 控制帧只有操作码，不携带请求ID
+    public static final int WINDOW_UPDATE_WIDTH = OPERATION_WIDTH + 4; // 转发帧头 + 4字节信用增量
+    public static final int BATCH_RECORD_WIDTH = 13; // 批量记录头：操作码 1 字节，requestId 8 字节，payload 长度 4 字节
+    public static final int MIN_DEFLATE_SIZE = 256; // 小于该长度的 payload 压缩收益不抵帧头开销
 
-    public static Buffer buildOperationMessage(String requestId, OperationType type) {
-        Buffer frame = Buffer.buffer(OPERATION_WIDTH);
-
-        // 添加操作码
-        frame.appendByte(type.getValue());
-
-        // 添加请求ID (16字节)
-        UUID uuid = UUID.fromString(requestId);
-        frame.appendLong(uuid.getMostSignificantBits());
-        frame.appendLong(uuid.getLeastSignificantBits());
+    // event loop 线程数量固定，每个线程复用一组 native 压缩上下文
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
 
-        return frame;
+    public static Buffer buildOperationMessage(long requestId, OperationType type) {
+        return NettyBuffers.wrap(header(type, requestId, 0));
     }
 
-    public static Buffer buildDataMessage(String requestId, Buffer data) {
-        Buffer frame = Buffer.buffer(OPERATION_WIDTH + data.length());
-
-        // 添加操作码
-        frame.appendByte(OperationType.DATA.getValue());
+    public static Buffer buildDataMessage(long requestId, Buffer data) {
+        return buildDataMessage(requestId, OperationType.DATA, data);
+    }
 
-        // 添加请求ID (16字节)
-        UUID uuid = UUID.fromString(requestId);
-        frame.appendLong(uuid.getMostSignificantBits());
-        frame.appendLong(uuid.getLeastSignificantBits());
-        frame.appendBuffer(data);
+    public static Buffer buildDataMessage(long requestId, OperationType type, Buffer data) {
+        // 帧头与 payload 组合发送，payload 不做复制
+        return NettyBuffers.wrap(Unpooled.wrappedBuffer(
+                header(type, requestId, 0),
+                NettyBuffers.byteBuf(data)
+        ));
+    }
 
-        return frame;
+    public static Buffer buildWindowUpdateMessage(long requestId, int increment) {
+        return NettyBuffers.wrap(header(OperationType.WINDOW_UPDATE, requestId, 4).writeInt(increment));
     }
 
     public static Buffer buildControlMessage(OperationType type, JsonObject payload) {
@@ -53,16 +68,18 @@ public class MessageUtil {
         return OperationType.fromValue(data.getByte(0));
     }
 
-    public static String getRequestId(Buffer data) {
-        Buffer requestIdBuffer = data.getBuffer(1, OPERATION_WIDTH);
-        return new UUID(
-                requestIdBuffer.getLong(0),
-                requestIdBuffer.getLong(8)
-        ).toString();
+    public static long getRequestId(Buffer data) {
+        return data.getLong(9);
     }
 
     public static Buffer getPayload(Buffer data) {
-        return data.getBuffer(OPERATION_WIDTH, data.length());
+        return NettyBuffers.wrap(NettyBuffers.byteBuf(data)
+                .slice(OPERATION_WIDTH, data.length() - OPERATION_WIDTH)
+                .asReadOnly());
+    }
+
+    public static int getWindowIncrement(Buffer data) {
+        return data.getInt(OPERATION_WIDTH);
     }
 
     public static JsonObject getControlPayload(Buffer data) {
@@ -72,9 +89,142 @@ public class MessageUtil {
         return new JsonObject(data.getString(CONTROL_WIDTH, data.length()));
     }
 
+    /**
+     * 依次解出批量帧中的记录，payload 与原始帧共享内存。记录不完整或操作码不可批量时抛出 IllegalArgumentException
+     */
+    public static void forEachBatchRecord(Buffer batch, BatchRecordHandler handler) {
+        ByteBuf buf = NettyBuffers.byteBuf(batch);
+        int offset = CONTROL_WIDTH;
+        int end = batch.length();
+        while (offset < end) {
+            if (end - offset < BATCH_RECORD_WIDTH) {
+                throw new IllegalArgumentException("Truncated batch record header at " + offset);
+            }
+            OperationType type = OperationType.fromValue(buf.getByte(offset));
+            long requestId = buf.getLong(offset + 1);
+            int length = buf.getInt(offset + 9);
+            offset += BATCH_RECORD_WIDTH;
+            if (!isBatchable(type) || length < 0 || length > end - offset) {
+                throw new IllegalArgumentException("Invalid batch record " + type + " with length " + length);
+            }
+            handler.handle(type, requestId, NettyBuffers.wrap(buf.slice(offset, length).asReadOnly()));
+            offset += length;
+        }
+    }
+
+    /**
+     * @return DATA_DEFLATE payload；压缩后节省不到 1/8 时返回 null，调用方应按原样发送
+     */
+    public static Buffer deflate(Buffer data) {
+        int length = data.length();
+        byte[] out = new byte[4 + length - length / 8];
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(NettyBuffers.byteBuf(data).nioBuffer());
+        deflater.finish();
+        int written = 4;
+        while (!deflater.finished() && written < out.length) {
+            written += deflater.deflate(out, written, out.length - written);
+        }
+        if (!deflater.finished()) {
+            return null;
+        }
+        return NettyBuffers.wrap(Unpooled.wrappedBuffer(out, 0, written).setInt(0, length));
+    }
+
+    /**
+     * @throws IllegalArgumentException 数据损坏或原始长度超过 maxLength
+     */
+    public static Buffer inflate(Buffer payload, int maxLength) {
+        if (payload.length() < 4) {
+            throw new IllegalArgumentException("Truncated deflate payload");
+        }
+        int length = payload.getInt(0);
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Invalid inflated length " + length);
+        }
+        byte[] out = new byte[length];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(NettyBuffers.byteBuf(payload).nioBuffer(4, payload.length() - 4));
+        try {
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(out, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalArgumentException("Inflated " + read + " of " + length + " bytes");
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Corrupted deflate payload", ex);
+        }
+        return Buffer.buffer(out);
+    }
+
+    /**
+     * 根据开头几个字节判断 payload 是否为 TLS 记录或常见压缩格式
+     */
+    public static boolean looksCompressed(Buffer data) {
+        if (data.length() < 4) {
+            return false;
+        }
+        int b0 = data.getUnsignedByte(0);
+        int b1 = data.getUnsignedByte(1);
+        int b2 = data.getUnsignedByte(2);
+        int b3 = data.getUnsignedByte(3);
+        // TLS 记录头：content type 20-23，版本 3.x
+        if (b0 >= 0x14 && b0 <= 0x17 && b1 == 0x03 && b2 <= 0x04) {
+            return true;
+        }
+        return (b0 == 0x1F && b1 == 0x8B)                                  // gzip
+                || (b0 == 0x50 && b1 == 0x4B && b2 == 0x03 && b3 == 0x04) // zip
+                || (b0 == 0x89 && b1 == 0x50 && b2 == 0x4E && b3 == 0x47) // png
+                || (b0 == 0xFF && b1 == 0xD8 && b2 == 0xFF)               // jpeg
+                || (b0 == 0x47 && b1 == 0x49 && b2 == 0x46 && b3 == 0x38) // gif
+                || (b0 == 0x28 && b1 == 0xB5 && b2 == 0x2F && b3 == 0xFD) // zstd
+                || (b0 == 0xFD && b1 == 0x37 && b2 == 0x7A && b3 == 0x58) // xz
+                || (b0 == 0x52 && b1 == 0x49 && b2 == 0x46 && b3 == 0x46); // riff (webp 等)
+    }
+
+    public static boolean isBatchable(OperationType operationType) {
+        return operationType == OperationType.CONNECT
+                || operationType == OperationType.CONNECT_OK
+                || operationType == OperationType.CONNECT_FAIL
+                || operationType == OperationType.RESUME
+                || operationType == OperationType.DATA
+                || operationType == OperationType.DATA_DEFLATE
+                || operationType == OperationType.CLOSE
+                || operationType == OperationType.WINDOW_UPDATE;
+    }
+
     public static boolean isControlOperation(OperationType operationType) {
         return operationType == OperationType.AUTH
                 || operationType == OperationType.AUTH_OK
                 || operationType == OperationType.AUTH_FAIL;
     }
+
+    @FunctionalInterface
+    public interface BatchRecordHandler {
+        /**
+         * @param payload 记录的 payload，WINDOW_UPDATE 为 4 字节信用增量，CONNECT/CLOSE 为空
+         */
+        void handle(OperationType type, long requestId, Buffer payload);
+    }
+
+    private static ByteBuf header(OperationType type, long requestId, int extraCapacity) {
+        ByteBuf header = Unpooled.buffer(OPERATION_WIDTH + extraCapacity);
+
+        // 添加操作码
+        header.writeByte(type.getValue());
+
+        // 添加请求ID (16字节，高8字节保留)
+        header.writeLong(0L);
+        header.writeLong(requestId);
+
+        return header;
+    }
 }
@@ -0,0 +1,23 @@
+package net.ximatai.frp.common;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Vert.x Buffer 与 Netty ByteBuf 的互转。
+ */
+// Vert.x 4 已将这两个方法标记为废弃，但帧编解码要靠 ByteBuf 的 composite / slice 做到零拷贝；
+// 直接访问 Netty 的地方都集中在这里，迁移 Vert.x 5 时只需修改这个类
+@SuppressWarnings("deprecation")
+final class NettyBuffers {
+    private NettyBuffers() {
+    }
+
+    static ByteBuf byteBuf(Buffer buffer) {
+        return buffer.getByteBuf();
+    }
+
+    static Buffer wrap(ByteBuf buf) {
+        return Buffer.buffer(buf);
+    }
+}
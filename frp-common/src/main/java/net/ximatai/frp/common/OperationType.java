@@ -4,9 +4,26 @@ public enum OperationType {
     CONNECT((byte) 0x01),
     DATA((byte) 0x02),
     CLOSE((byte) 0x03),
+    WINDOW_UPDATE((byte) 0x04),
+    BATCH((byte) 0x05),
+    DATA_DEFLATE((byte) 0x06),
+    CONNECT_OK((byte) 0x07),
+    CONNECT_FAIL((byte) 0x08),
+    RESUME((byte) 0x09),
     AUTH((byte) 0x10),
     AUTH_OK((byte) 0x11),
-    AUTH_FAIL((byte) 0x12);
+    AUTH_FAIL((byte) 0x12),
+    // 仅用于 TCP 传输的链路心跳，WebSocket 链路使用 PING/PONG 帧
+    PING((byte) 0x13),
+    PONG((byte) 0x14);
+
+    private static final OperationType[] LOOKUP = new OperationType[256];
+
+    static {
+        for (OperationType type : values()) {
+            LOOKUP[type.value & 0xFF] = type;
+        }
+    }
 
     private final byte value;
 
@@ -18,13 +35,12 @@ public enum OperationType {
         return value;
     }
 
-    // 可选：根据字节值获取对应的枚举常量
+    // 根据字节值获取对应的枚举常量，每帧都会调用，使用查找表避免遍历 values()
     public static OperationType fromValue(byte value) {
-        for (OperationType type : OperationType.values()) {
-            if (type.value == value) {
-                return type;
-            }
+        OperationType type = LOOKUP[value & 0xFF];
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown ControlType value: " + value);
         }
-        throw new IllegalArgumentException("Unknown ControlType value: " + value);
+        return type;
     }
 }
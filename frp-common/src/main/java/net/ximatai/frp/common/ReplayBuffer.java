@@ -0,0 +1,83 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * 单个 stream 已发送但对端尚未确认的原始数据，用于链路恢复后从对端的接收偏移处重发。
+ * <p>
+ * 偏移按该 stream 单方向发送的原始字节累计，与是否压缩、是否批量无关。
+ * 对端通过 WINDOW_UPDATE 归还的信用即为已确认的字节，因此缓冲量不超过流控窗口加一帧。
+ * 该类非线程安全，只应在 stream 所属的 event loop 上使用。
+ */
+public class ReplayBuffer {
+    private final ArrayDeque<Buffer> chunks = new ArrayDeque<>();
+    // 第一个 chunk 中已确认的字节数
+    private int headAcked;
+    private long acked;
+    private long sent;
+
+    /**
+     * 记录一段已发送的数据，调用方之后不得修改该 Buffer
+     */
+    public void append(Buffer data) {
+        if (data.length() == 0) {
+            return;
+        }
+        chunks.add(data);
+        sent += data.length();
+    }
+
+    public void ack(int bytes) {
+        ackTo(acked + bytes);
+    }
+
+    /**
+     * 丢弃 offset 之前的数据
+     *
+     * @return offset 是否落在 [已确认偏移, 已发送偏移] 之内，false 表示无法从该偏移重发
+     */
+    public boolean ackTo(long offset) {
+        if (offset < acked || offset > sent) {
+            return false;
+        }
+        while (acked < offset) {
+            Buffer head = chunks.peek();
+            int remaining = head.length() - headAcked;
+            long skip = offset - acked;
+            if (skip >= remaining) {
+                chunks.poll();
+                headAcked = 0;
+                acked += remaining;
+            } else {
+                headAcked += (int) skip;
+                acked = offset;
+            }
+        }
+        return true;
+    }
+
+    public void forEachUnacked(Consumer<Buffer> action) {
+        boolean first = true;
+        for (Buffer chunk : chunks) {
+            action.accept(first && headAcked > 0 ? chunk.slice(headAcked, chunk.length()) : chunk);
+            first = false;
+        }
+    }
+
+    public long sent() {
+        return sent;
+    }
+
+    public long unacked() {
+        return sent - acked;
+    }
+
+    public void clear() {
+        chunks.clear();
+        headAcked = 0;
+        acked = sent;
+    }
+}
@@ -0,0 +1,67 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.net.TCPSSLOptions;
+
+/**
+ * 数据面 TCP socket 参数，server 与 agent 共用。
+ * <p>
+ * 缓冲区大小小于等于 0 表示使用系统默认值。TCP_QUICKACK 只在 native epoll transport 下生效，NIO 下被忽略。
+ * 对 receiveBufferSize 的设置同时决定 Vert.x 单次读取的缓冲大小。
+ *
+ * @param tcpNoDelay        关闭 Nagle 算法，交互式流量应保持开启
+ * @param tcpQuickAck       立即回复 ACK，降低请求-响应型流量的延迟
+ * @param tcpKeepAlive      开启 TCP keepalive
+ * @param sendBufferSize    SO_SNDBUF
+ * @param receiveBufferSize SO_RCVBUF
+ */
+public record SocketTuning(
+        boolean tcpNoDelay,
+        boolean tcpQuickAck,
+        boolean tcpKeepAlive,
+        int sendBufferSize,
+        int receiveBufferSize
+) {
+    public static final SocketTuning DEFAULT = new SocketTuning(true, false, true, -1, -1);
+
+    public <T extends TCPSSLOptions> T apply(T options) {
+        options.setTcpNoDelay(tcpNoDelay);
+        options.setTcpQuickAck(tcpQuickAck);
+        options.setTcpKeepAlive(tcpKeepAlive);
+        if (sendBufferSize > 0) {
+            options.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            options.setReceiveBufferSize(receiveBufferSize);
+        }
+        return options;
+    }
+
+    /**
+     * @param readBufferSize {@link FrameChunker#readBufferSize(int)} 的结果，-1 表示不要求
+     * @return 接收缓冲区至少为 readBufferSize 的参数
+     */
+    public SocketTuning withMinReceiveBufferSize(int readBufferSize) {
+        if (readBufferSize <= receiveBufferSize) {
+            return this;
+        }
+        return new SocketTuning(tcpNoDelay, tcpQuickAck, tcpKeepAlive, sendBufferSize, readBufferSize);
+    }
+
+    /**
+     * @return 当前 transport 下实际生效的参数，NIO 不支持 TCP_QUICKACK，该项记为 false
+     */
+    public SocketTuning effective(Vertx vertx) {
+        if (!tcpQuickAck || vertx.isNativeTransportEnabled()) {
+            return this;
+        }
+        return new SocketTuning(tcpNoDelay, false, tcpKeepAlive, sendBufferSize, receiveBufferSize);
+    }
+
+    /**
+     * @return native 或 nio；启用 native transport 但本机不可用时 Vert.x 会回退到 NIO
+     */
+    public static String transportName(Vertx vertx) {
+        return vertx.isNativeTransportEnabled() ? "native" : "nio";
+    }
+}
@@ -0,0 +1,41 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * 单个 requestId 发送方向上的压缩决策。
+ * <p>
+ * 小于 {@link MessageUtil#MIN_DEFLATE_SIZE} 的 payload 不压缩；看起来已经压缩过（TLS、图片、压缩包）的 payload 直接跳过；
+ * 连续 {@link #MAX_MISSES} 个 payload 都没有压缩收益时，该 stream 后续数据不再尝试压缩。
+ * 该类非线程安全，只应在 stream 所属的 event loop 上使用。
+ */
+public class StreamCompressor {
+    public static final int MAX_MISSES = 4;
+
+    private boolean enabled;
+    private int misses;
+
+    public StreamCompressor(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return DATA_DEFLATE payload；返回 null 时调用方应按 DATA 原样发送
+     */
+    public Buffer compress(Buffer data) {
+        if (!enabled || data.length() < MessageUtil.MIN_DEFLATE_SIZE) {
+            return null;
+        }
+        Buffer compressed = MessageUtil.looksCompressed(data) ? null : MessageUtil.deflate(data);
+        if (compressed != null) {
+            misses = 0;
+        } else if (++misses >= MAX_MISSES) {
+            enabled = false;
+        }
+        return compressed;
+    }
+}
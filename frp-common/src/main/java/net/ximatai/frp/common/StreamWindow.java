@@ -0,0 +1,115 @@
+package net.ximatai.frp.common;
+
+/**
+ * 单个 requestId 的信用窗口，实现 server 与 agent 之间按 stream 的流控。
+ * <p>
+ * 发送方每发出一个 DATA 帧扣减对应字节数，信用耗尽时暂停源 socket；
+ * 接收方把数据写入目标 socket 且写队列未满时累计待归还信用，达到半个窗口后通过 WINDOW_UPDATE 归还；
+ * 目标 socket 写队列满时暂不归还，等 drain 后一次性归还，从而把每个 stream 的缓冲限制在窗口大小附近。
+ * <p>
+ * 窗口为 0 表示对端未协商流控，此时不限制发送，也不归还信用。
+ * 该类非线程安全，只应在 stream 所属的 event loop 上使用。
+ */
+public class StreamWindow {
+    public static final int DEFAULT_WINDOW = 256 * 1024;
+    public static final int MIN_WINDOW = 64 * 1024;
+    public static final int MAX_WINDOW = 16 * 1024 * 1024;
+
+    private final int initialWindow;
+    private long sendCredit;
+    private int pendingAck;
+
+    public StreamWindow(int initialWindow) {
+        this.initialWindow = Math.max(0, initialWindow);
+        this.sendCredit = this.initialWindow;
+    }
+
+    /**
+     * @param requested 对端在 AUTH 中声明的窗口，小于等于 0 表示不支持流控
+     * @return 协商后的窗口，0 表示关闭流控
+     */
+    public static int negotiate(int requested) {
+        if (requested <= 0) {
+            return 0;
+        }
+        return Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, requested));
+    }
+
+    public boolean enabled() {
+        return initialWindow > 0;
+    }
+
+    public boolean hasCredit() {
+        return !enabled() || sendCredit > 0;
+    }
+
+    /**
+     * @return 是否仍有发送信用，false 时调用方应暂停源 socket
+     */
+    public boolean consume(int bytes) {
+        if (!enabled()) {
+            return true;
+        }
+        sendCredit -= bytes;
+        return sendCredit > 0;
+    }
+
+    /**
+     * @return 归还后是否有发送信用，true 时调用方可以恢复源 socket
+     */
+    public boolean grant(int increment) {
+        if (!enabled() || increment <= 0) {
+            return false;
+        }
+        sendCredit += increment;
+        return sendCredit > 0;
+    }
+
+    /**
+     * @return 本次应通过 WINDOW_UPDATE 归还的信用，0 表示暂不发送
+     */
+    public int received(int bytes, boolean writable) {
+        if (!enabled()) {
+            return 0;
+        }
+        pendingAck += bytes;
+        if (!writable || pendingAck < initialWindow / 2) {
+            return 0;
+        }
+        return takePendingAck();
+    }
+
+    /**
+     * 目标 socket 写队列排空后调用，返回应归还的全部挂起信用
+     */
+    public int drained() {
+        if (!enabled()) {
+            return 0;
+        }
+        return takePendingAck();
+    }
+
+    /**
+     * @param unacked 已发送但对端未收到、需要重发的字节数
+     */
+    public boolean resume(long unacked) {
+        if (!enabled()) {
+            return true;
+        }
+        sendCredit = initialWindow - unacked;
+        return sendCredit > 0;
+    }
+
+    /**
+     * 向对端报告接收偏移时调用，此前挂起的待归还信用不再通过 WINDOW_UPDATE 发送
+     */
+    public void discardPendingAck() {
+        pendingAck = 0;
+    }
+
+    private int takePendingAck() {
+        int increment = pendingAck;
+        pendingAck = 0;
+        return increment;
+    }
+}
@@ -0,0 +1,178 @@
+package net.ximatai.frp.common;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.parsetools.RecordParser;
+
+/**
+ * 基于原始 TCP 的链路，省去 WebSocket 的帧头和 agent 到 server 方向的掩码运算，适合不需要经过 HTTP 代理的部署。
+ * <p>
+ * 每条消息前加 4 字节大端长度，长度不含自身且不能为 0；心跳为操作码 PING / PONG 加原样回送的 payload。
+ * 只有设置了消息或心跳处理器后才开始读取。
+ */
+public final class TcpLink implements LinkSocket {
+    public static final int LENGTH_WIDTH = 4;
+
+    private final NetSocket socket;
+    private final int maxMessageSize;
+    private final RecordParser parser;
+    // 正在读取的消息体长度，-1 表示正在读取长度前缀
+    private int bodyLength = -1;
+    private boolean closed;
+    private boolean reading;
+    private Handler<Buffer> messageHandler;
+    private HeartbeatHandler heartbeatHandler;
+    private Handler<Void> closeHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public TcpLink(NetSocket socket, int maxMessageSize) {
+        this.socket = socket;
+        this.maxMessageSize = maxMessageSize;
+        this.parser = RecordParser.newFixed(LENGTH_WIDTH, this::handleRecord);
+        socket.closeHandler(v -> {
+            closed = true;
+            if (closeHandler != null) {
+                closeHandler.handle(null);
+            }
+        });
+        socket.exceptionHandler(ex -> {
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(ex);
+            }
+        });
+    }
+
+    @Override
+    public LinkSocket messageHandler(Handler<Buffer> handler) {
+        this.messageHandler = handler;
+        startReading();
+        return this;
+    }
+
+    @Override
+    public LinkSocket heartbeatHandler(HeartbeatHandler handler) {
+        this.heartbeatHandler = handler;
+        startReading();
+        return this;
+    }
+
+    @Override
+    public LinkSocket closeHandler(Handler<Void> handler) {
+        this.closeHandler = handler;
+        return this;
+    }
+
+    @Override
+    public LinkSocket exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public LinkSocket drainHandler(Handler<Void> handler) {
+        socket.drainHandler(handler);
+        return this;
+    }
+
+    @Override
+    public Future<Void> writeMessage(Buffer message) {
+        // 长度前缀与消息体组合写出，不复制消息体
+        Buffer length = Buffer.buffer(LENGTH_WIDTH).appendInt(message.length());
+        return socket.write(NettyBuffers.wrap(Unpooled.wrappedBuffer(NettyBuffers.byteBuf(length),
+                NettyBuffers.byteBuf(message))));
+    }
+
+    @Override
+    public void writePing(Buffer payload) {
+        writeHeartbeat(OperationType.PING, payload);
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return !closed && socket.writeQueueFull();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Future<Void> close() {
+        return socket.close();
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return socket.remoteAddress();
+    }
+
+    @Override
+    public LinkSocket pause() {
+        socket.pause();
+        return this;
+    }
+
+    @Override
+    public LinkSocket resume() {
+        socket.resume();
+        return this;
+    }
+
+    private void startReading() {
+        if (!reading) {
+            reading = true;
+            socket.handler(parser);
+        }
+    }
+
+    private void writeHeartbeat(OperationType type, Buffer payload) {
+        writeMessage(Buffer.buffer(MessageUtil.CONTROL_WIDTH + payload.length())
+                .appendByte(type.getValue())
+                .appendBuffer(payload));
+    }
+
+    private void handleRecord(Buffer record) {
+        if (bodyLength < 0) {
+            int length = record.getInt(0);
+            if (length < MessageUtil.CONTROL_WIDTH || length > maxMessageSize) {
+                fail(new IllegalStateException("TCP link message length " + length + " out of range, limit is "
+                        + maxMessageSize + " bytes"));
+                return;
+            }
+            bodyLength = length;
+            parser.fixedSizeMode(length);
+            return;
+        }
+        bodyLength = -1;
+        parser.fixedSizeMode(LENGTH_WIDTH);
+
+        byte opcode = record.getByte(0);
+        if (opcode == OperationType.PING.getValue() || opcode == OperationType.PONG.getValue()) {
+            Buffer payload = record.slice(MessageUtil.CONTROL_WIDTH, record.length());
+            boolean pong = opcode == OperationType.PONG.getValue();
+            if (!pong) {
+                writeHeartbeat(OperationType.PONG, payload);
+            }
+            if (heartbeatHandler != null) {
+                heartbeatHandler.handle(pong, payload);
+            }
+            return;
+        }
+        if (messageHandler != null) {
+            messageHandler.handle(record);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        socket.handler(null);
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(cause);
+        }
+        socket.close();
+    }
+}
@@ -0,0 +1,136 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketBase;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.net.SocketAddress;
+
+/**
+ * 基于 WebSocket 的链路，每条 MuYunFRP 消息是一个二进制消息，分片的消息由 {@link FrameAssembler} 拼接。
+ * PING 由 Vert.x 自动回复。只有设置了消息或心跳处理器后才接管 WebSocket 的帧处理器。
+ */
+public final class WebSocketLink implements LinkSocket {
+    private final WebSocketBase webSocket;
+    private final FrameAssembler assembler;
+    private Handler<Buffer> messageHandler;
+    private HeartbeatHandler heartbeatHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public WebSocketLink(WebSocketBase webSocket, int maxMessageSize) {
+        this.webSocket = webSocket;
+        this.assembler = new FrameAssembler(maxMessageSize);
+    }
+
+    public WebSocketBase webSocket() {
+        return webSocket;
+    }
+
+    @Override
+    public LinkSocket messageHandler(Handler<Buffer> handler) {
+        this.messageHandler = handler;
+        webSocket.frameHandler(this::handleFrame);
+        return this;
+    }
+
+    @Override
+    public LinkSocket heartbeatHandler(HeartbeatHandler handler) {
+        this.heartbeatHandler = handler;
+        webSocket.frameHandler(this::handleFrame);
+        return this;
+    }
+
+    @Override
+    public LinkSocket closeHandler(Handler<Void> handler) {
+        webSocket.closeHandler(handler);
+        return this;
+    }
+
+    @Override
+    public LinkSocket exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        webSocket.exceptionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public LinkSocket drainHandler(Handler<Void> handler) {
+        webSocket.drainHandler(handler);
+        return this;
+    }
+
+    @Override
+    public Future<Void> writeMessage(Buffer message) {
+        return webSocket.writeBinaryMessage(message);
+    }
+
+    @Override
+    public void writePing(Buffer payload) {
+        webSocket.writePing(payload);
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        try {
+            return !webSocket.isClosed() && webSocket.writeQueueFull();
+        } catch (IllegalStateException ex) {
+            // 检查期间连接已关闭
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return webSocket.isClosed();
+    }
+
+    @Override
+    public Future<Void> close() {
+        return webSocket.close();
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return webSocket.remoteAddress();
+    }
+
+    @Override
+    public LinkSocket pause() {
+        webSocket.pause();
+        return this;
+    }
+
+    @Override
+    public LinkSocket resume() {
+        webSocket.resume();
+        return this;
+    }
+
+    private void handleFrame(WebSocketFrame frame) {
+        if (frame.isClose()) {
+            webSocket.close();
+            return;
+        }
+        if (frame.isPing() || frame.type() == WebSocketFrameType.PONG) {
+            if (heartbeatHandler != null) {
+                heartbeatHandler.handle(!frame.isPing(), frame.binaryData());
+            }
+            return;
+        }
+        Buffer message;
+        try {
+            message = assembler.append(frame);
+        } catch (IllegalStateException ex) {
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(ex);
+            }
+            webSocket.close();
+            return;
+        }
+        if (message != null && messageHandler != null) {
+            messageHandler.handle(message);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class FrameBatcherTest {
+    private static Vertx vertx;
+
+    @BeforeAll
+    static void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void shouldQueueCloseOnlyBehindDataOfSameStream() throws Exception {
+        Context context = vertx.getOrCreateContext();
+        List<String> sent = new ArrayList<>();
+        AtomicBoolean writable = new AtomicBoolean(false);
+        FrameBatcher batcher = new FrameBatcher(context, frame -> sent.add(describe(frame)), false,
+                writable::get, requestId -> FrameScheduler.priorityClass(null));
+
+        onContext(context, () -> {
+            for (int i = 0; i < 3; i++) {
+                batcher.data(1, Buffer.buffer("a" + i));
+            }
+            batcher.data(2, Buffer.buffer("b0"));
+            // 没有排队 DATA 的 stream 不必等待其他 stream
+            batcher.operation(3, OperationType.CLOSE);
+            batcher.operation(1, OperationType.CLOSE);
+        });
+        Assertions.assertEquals(List.of("CLOSE 3"), sent);
+
+        writable.set(true);
+        batcher.onWritable();
+        onContext(context, () -> {
+        });
+
+        Assertions.assertEquals(List.of("CLOSE 3", "DATA 1", "DATA 1", "DATA 1", "CLOSE 1", "DATA 2"), sent);
+    }
+
+    @Test
+    void shouldSendDirectlyWhileNothingIsQueued() throws Exception {
+        Context context = vertx.getOrCreateContext();
+        List<String> sent = new ArrayList<>();
+        FrameBatcher batcher = new FrameBatcher(context, frame -> sent.add(describe(frame)), false,
+                () -> true, requestId -> FrameScheduler.priorityClass(null));
+
+        onContext(context, () -> {
+            batcher.data(1, Buffer.buffer("a"));
+            batcher.operation(1, OperationType.CLOSE);
+            batcher.data(2, Buffer.buffer("b"));
+        });
+
+        Assertions.assertEquals(List.of("DATA 1", "CLOSE 1", "DATA 2"), sent);
+    }
+
+    private static String describe(Buffer frame) {
+        return MessageUtil.getOperationType(frame) + " " + MessageUtil.getRequestId(frame);
+    }
+
+    private static void onContext(Context context, Runnable action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            try {
+                action.run();
+                done.complete(null);
+            } catch (Throwable ex) {
+                done.completeExceptionally(ex);
+            }
+        });
+        done.get(10, TimeUnit.SECONDS);
+    }
+}
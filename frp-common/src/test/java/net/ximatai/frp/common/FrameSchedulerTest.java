@@ -0,0 +1,114 @@
+package net.ximatai.frp.common;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class FrameSchedulerTest {
+    private static final int NORMAL = FrameScheduler.priorityClass(FrameScheduler.PRIORITY_NORMAL);
+
+    @Test
+    void shouldShareEachRoundByQuantum() {
+        FrameScheduler scheduler = new FrameScheduler();
+        // 大流量 stream 的帧是交互 stream 的两倍长，每轮双方发送的字节数仍相同
+        for (int i = 0; i < 6; i++) {
+            scheduler.enqueue(1, NORMAL, OperationType.DATA, payload(FrameScheduler.QUANTUM / 2));
+        }
+        for (int i = 0; i < 12; i++) {
+            scheduler.enqueue(2, NORMAL, OperationType.DATA, payload(FrameScheduler.QUANTUM / 4));
+        }
+
+        List<FrameScheduler.Frame> frames = drain(scheduler);
+
+        Assertions.assertEquals(List.of(1L, 1L, 2L, 2L, 2L, 2L, 1L, 1L, 2L, 2L, 2L, 2L, 1L, 1L, 2L, 2L, 2L, 2L),
+                requestIds(frames));
+        for (int round = 0; round < 3; round++) {
+            List<FrameScheduler.Frame> roundFrames = frames.subList(round * 6, round * 6 + 6);
+            Assertions.assertEquals(FrameScheduler.QUANTUM, bytes(roundFrames, 1));
+            Assertions.assertEquals(FrameScheduler.QUANTUM, bytes(roundFrames, 2));
+        }
+        Assertions.assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    void shouldCarryDeficitForFramesLargerThanQuantum() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.enqueue(1, NORMAL, OperationType.DATA, payload(FrameScheduler.QUANTUM * 3 / 2));
+        for (int i = 0; i < 4; i++) {
+            scheduler.enqueue(2, NORMAL, OperationType.DATA, payload(FrameScheduler.QUANTUM / 2));
+        }
+
+        // 第一轮额度不够发送大帧，让给下一个 stream，第二轮累计额度后发出
+        Assertions.assertEquals(List.of(2L, 2L, 1L, 2L, 2L), requestIds(drain(scheduler)));
+    }
+
+    @Test
+    void shouldServeHigherPriorityClassesFirst() {
+        FrameScheduler scheduler = new FrameScheduler();
+        int high = FrameScheduler.priorityClass(FrameScheduler.PRIORITY_HIGH);
+        int low = FrameScheduler.priorityClass(FrameScheduler.PRIORITY_LOW);
+        scheduler.enqueue(3, low, OperationType.DATA, payload(16));
+        scheduler.enqueue(3, low, OperationType.DATA, payload(16));
+        scheduler.enqueue(2, NORMAL, OperationType.DATA, payload(16));
+        scheduler.enqueue(1, high, OperationType.DATA, payload(16));
+
+        Assertions.assertEquals(1L, scheduler.poll().requestId());
+        Assertions.assertEquals(2L, scheduler.poll().requestId());
+        Assertions.assertEquals(3L, scheduler.poll().requestId());
+
+        // 低优先级发送过程中加入的高优先级 stream 立即插到前面
+        scheduler.enqueue(1, high, OperationType.DATA, payload(16));
+        Assertions.assertEquals(1L, scheduler.poll().requestId());
+        Assertions.assertEquals(3L, scheduler.poll().requestId());
+        Assertions.assertNull(scheduler.poll());
+    }
+
+    @Test
+    void shouldUseNormalClassForUnknownPriority() {
+        Assertions.assertEquals(NORMAL, FrameScheduler.priorityClass(null));
+        Assertions.assertEquals(NORMAL, FrameScheduler.priorityClass("urgent"));
+    }
+
+    @Test
+    void shouldKeepCloseAfterQueuedDataOfSameStream() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.enqueue(1, NORMAL, OperationType.DATA, payload(16));
+        scheduler.enqueue(1, NORMAL, OperationType.DATA, payload(16));
+        Assertions.assertTrue(scheduler.isQueued(1));
+        Assertions.assertFalse(scheduler.isQueued(2));
+        scheduler.enqueue(1, NORMAL, OperationType.CLOSE, null);
+
+        List<FrameScheduler.Frame> frames = drain(scheduler);
+
+        Assertions.assertEquals(List.of(OperationType.DATA, OperationType.DATA, OperationType.CLOSE),
+                frames.stream().map(FrameScheduler.Frame::type).toList());
+        Assertions.assertFalse(scheduler.isQueued(1));
+    }
+
+    private static List<FrameScheduler.Frame> drain(FrameScheduler scheduler) {
+        List<FrameScheduler.Frame> frames = new ArrayList<>();
+        FrameScheduler.Frame frame;
+        while ((frame = scheduler.poll()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static List<Long> requestIds(List<FrameScheduler.Frame> frames) {
+        return frames.stream().map(FrameScheduler.Frame::requestId).toList();
+    }
+
+    private static int bytes(List<FrameScheduler.Frame> frames, long requestId) {
+        return frames.stream()
+                .filter(frame -> frame.requestId() == requestId)
+                .mapToInt(frame -> frame.payload().length())
+                .sum();
+    }
+
+    private static Buffer payload(int length) {
+        return Buffer.buffer(new byte[length]);
+    }
+}
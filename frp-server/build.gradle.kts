@@ -21,6 +21,8 @@ dependencies {
     implementation("io.quarkus:quarkus-rest-jackson")
     implementation("io.quarkus:quarkus-websockets")
     implementation(libs.jackson.databind)
+    implementation("io.netty:netty-transport-native-epoll::linux-x86_64")
+    implementation("io.netty:netty-transport-native-epoll::linux-aarch_64")
 
     testImplementation("io.quarkus:quarkus-junit5")
     testImplementation("io.rest-assured:rest-assured")
@@ -0,0 +1,39 @@
+package net.ximatai.frp.server.config;
+
+import io.smallrye.config.WithDefault;
+
+/**
+ * 所有 tunnel 共用的 agent 接入端口，agent 在 AUTH 中指明要接入的 tunnel
+ */
+public interface AgentEndpointConfig {
+
+    /**
+     * 0 表示不开启，此时每个 tunnel 都必须配置自己的 agentPort
+     *
+     * @return 共用 agent 端口
+     */
+    @WithDefault("0")
+    int port();
+
+    /**
+     * 监听共用端口的 event loop 数，经共用端口接入的 agent 链路都在这些 event loop 上收发，0 表示与 CPU 核数相同
+     *
+     * @return 监听实例数
+     */
+    @WithDefault("0")
+    int instances();
+
+    /**
+     * 一条链路接入多个 tunnel 时由端口统一发送心跳，不使用各 tunnel 的 heartbeatInterval
+     *
+     * @return 多 tunnel 链路的心跳间隔（秒）
+     */
+    @WithDefault("30")
+    int heartbeatInterval();
+
+    /**
+     * @return 多 tunnel 链路连续多少个心跳间隔收不到 agent 的心跳即判定失效
+     */
+    @WithDefault("3")
+    int heartbeatMisses();
+}
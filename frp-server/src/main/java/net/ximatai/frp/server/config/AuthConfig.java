@@ -0,0 +1,49 @@
+package net.ximatai.frp.server.config;
+
+import io.smallrye.config.WithDefault;
+
+/**
+ * agent 鉴权的资源限制，所有 tunnel 共用
+ */
+public interface AuthConfig {
+
+    /**
+     * 执行 PBKDF2 校验的专用线程数，不占用 Quarkus 和 Vert.x 的 worker 线程池
+     *
+     * @return 线程数
+     */
+    @WithDefault("2")
+    int threads();
+
+    /**
+     * 等待校验的鉴权请求上限，队列满时直接拒绝，agent 按退避重连
+     *
+     * @return 队列长度
+     */
+    @WithDefault("256")
+    int queueSize();
+
+    /**
+     * 单个来源地址每秒允许的新增 PBKDF2 校验次数，命中缓存的鉴权不计入，0 表示不限制
+     *
+     * @return 每秒次数
+     */
+    @WithDefault("10")
+    int ratePerIp();
+
+    /**
+     * 单个来源地址允许的瞬时校验次数
+     *
+     * @return 突发上限
+     */
+    @WithDefault("20")
+    int burstPerIp();
+
+    /**
+     * 校验成功的 token 在内存中缓存的秒数，期间同一 agent 重连不再执行 PBKDF2，0 表示不缓存
+     *
+     * @return 缓存秒数
+     */
+    @WithDefault("300")
+    int cacheTtl();
+}
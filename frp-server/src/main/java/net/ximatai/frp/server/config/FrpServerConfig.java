@@ -7,4 +7,10 @@ public interface FrpServerConfig {
     ManagementConfig management();
 
     TunnelStoreConfig tunnelStore();
+
+    DataPlaneConfig dataPlane();
+
+    AuthConfig auth();
+
+    AgentEndpointConfig agentEndpoint();
 }
@@ -1,6 +1,13 @@
 package net.ximatai.frp.server.config;
 
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.FrameScheduler;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
+
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface Tunnel {
 
@@ -33,6 +40,13 @@ public interface Tunnel {
 
     String updatedAt();
 
+    /**
+     * tunnel 的可选运行参数
+     *
+     * @return 运行参数，未配置时为缺省值
+     */
+    TunnelOptions options();
+
     default boolean verifyToken(String token) {
         return tokenHash().verify(token);
     }
@@ -46,8 +60,16 @@ public interface Tunnel {
     }
 
     static Tunnel createRecord(String name, ProxyType type, int openPort, int agentPort, String token) {
+        return createRecord(name, type, openPort, agentPort, token, TunnelOptions.DEFAULT);
+    }
+
+    static Tunnel createRecord(String name, ProxyType type, int openPort, int agentPort, TunnelOptions options) {
+        return createRecord(name, type, openPort, agentPort, "test-token", options);
+    }
+
+    static Tunnel createRecord(String name, ProxyType type, int openPort, int agentPort, String token, TunnelOptions options) {
         String now = java.time.Instant.now().toString();
-        return new TunnelConfig(name, type, openPort, agentPort, TokenHash.create(token), now, now);
+        return new TunnelConfig(name, type, openPort, agentPort, TokenHash.create(token), now, now, options);
     }
 
     record TunnelConfig(
@@ -57,8 +79,280 @@ public interface Tunnel {
             int agentPort,
             TokenHash tokenHash,
             String createdAt,
-            String updatedAt
+            String updatedAt,
+            TunnelOptions options
     ) implements Tunnel {
+        public TunnelConfig {
+            if (options == null) {
+                options = TunnelOptions.DEFAULT;
+            }
+        }
+    }
+
+    /**
+     * tunnel 可选运行参数，store 中缺省或为 0 的项使用缺省值；代码中从 {@link #DEFAULT} 出发用 with 方法逐项修改
+     *
+     * @param instances    处理该 tunnel 的 verticle 实例数，各实例运行在不同的 event loop 上并共享监听端口
+     * @param maxFrameSize 与 agent 协商的 WebSocket 消息长度上限，大块传输可调大以减少帧数
+     * @param compression  是否允许与 agent 协商 DATA 压缩，适合 HTTP/JSON、日志等文本流量
+     * @param idleTimeout  用户连接空闲超时（秒），任一方向有数据即重新计时，-1 表示不做空闲超时
+     * @param maxLifetime  用户连接最长存活时间（秒），不论是否活跃，0 表示不限制
+     * @param balance      多 agent 模式的分配策略，为空时同一时刻只有一个 agent，新 agent 接入会替换旧 agent
+     * @param drainTimeout agent 被替换后旧会话继续服务已有连接的最长秒数，0 表示立即关闭旧连接
+     * @param heartbeatInterval 向 agent 链路发送心跳的间隔（秒）
+     * @param heartbeatMisses   连续多少个心跳间隔收不到 agent 的心跳即判定链路失效并关闭
+     * @param resumeTimeout     agent 链路断开后保留其用户连接等待 agent 凭恢复票据重连的秒数，0 表示不支持恢复
+     * @param priority          与其他 tunnel 共用 agent 链路时的发送优先级，high 的数据总是先于 normal、low 发送
+     * @param agentTransport    agent 端口的传输方式，websocket 或 tcp；共用 agent 端口始终为 websocket
+     * @param earlyData         CONNECT 是否等到用户首次发送数据时随首包发出，只适合客户端先发数据的协议（HTTP、TLS 等）
+     * @param socket            用户端口与 tunnel 自己的 agent 端口的 socket 参数，为 null 或其中未设置的项使用数据面缺省值
+     */
+    record TunnelOptions(int instances, int maxFrameSize, boolean compression, int idleTimeout, int maxLifetime,
+                         String balance, int drainTimeout, int heartbeatInterval, int heartbeatMisses,
+                         int resumeTimeout, String priority, String agentTransport, boolean earlyData,
+                         SocketOptions socket) {
+        public static final int MAX_INSTANCES = 64;
+        public static final String BALANCE_ROUND_ROBIN = "round-robin";
+        public static final String BALANCE_LEAST_STREAMS = "least-streams";
+        public static final String BALANCE_WEIGHTED = "weighted";
+        public static final String BALANCE_IP_HASH = "ip-hash";
+        public static final List<String> BALANCE_STRATEGIES =
+                List.of(BALANCE_ROUND_ROBIN, BALANCE_LEAST_STREAMS, BALANCE_WEIGHTED, BALANCE_IP_HASH);
+        public static final int DEFAULT_IDLE_TIMEOUT = 3600;
+        public static final int NO_IDLE_TIMEOUT = -1;
+        public static final int DEFAULT_HEARTBEAT_INTERVAL = 30;
+        public static final int DEFAULT_HEARTBEAT_MISSES = 3;
+        public static final TunnelOptions DEFAULT = new Builder().build();
+
+        public TunnelOptions {
+            if (instances == 0) {
+                instances = 1;
+            }
+            if (maxFrameSize == 0) {
+                maxFrameSize = FrameChunker.DEFAULT_MAX_FRAME_SIZE;
+            }
+            if (idleTimeout == 0) {
+                idleTimeout = DEFAULT_IDLE_TIMEOUT;
+            }
+            if (balance != null && balance.isBlank()) {
+                balance = null;
+            }
+            if (heartbeatInterval == 0) {
+                heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+            }
+            if (heartbeatMisses == 0) {
+                heartbeatMisses = DEFAULT_HEARTBEAT_MISSES;
+            }
+            if (priority == null || priority.isBlank()) {
+                priority = FrameScheduler.PRIORITY_NORMAL;
+            }
+            if (agentTransport == null || agentTransport.isBlank()) {
+                agentTransport = LinkSocket.TRANSPORT_WEBSOCKET;
+            }
+        }
+
+        public TunnelOptions withInstances(int instances) {
+            return copy(options -> options.instances = instances);
+        }
+
+        public TunnelOptions withMaxFrameSize(int maxFrameSize) {
+            return copy(options -> options.maxFrameSize = maxFrameSize);
+        }
+
+        public TunnelOptions withCompression(boolean compression) {
+            return copy(options -> options.compression = compression);
+        }
+
+        public TunnelOptions withIdleTimeout(int idleTimeout) {
+            return copy(options -> options.idleTimeout = idleTimeout);
+        }
+
+        public TunnelOptions withMaxLifetime(int maxLifetime) {
+            return copy(options -> options.maxLifetime = maxLifetime);
+        }
+
+        public TunnelOptions withBalance(String balance) {
+            return copy(options -> options.balance = balance);
+        }
+
+        public TunnelOptions withDrainTimeout(int drainTimeout) {
+            return copy(options -> options.drainTimeout = drainTimeout);
+        }
+
+        public TunnelOptions withHeartbeatInterval(int heartbeatInterval) {
+            return copy(options -> options.heartbeatInterval = heartbeatInterval);
+        }
+
+        public TunnelOptions withHeartbeatMisses(int heartbeatMisses) {
+            return copy(options -> options.heartbeatMisses = heartbeatMisses);
+        }
+
+        public TunnelOptions withResumeTimeout(int resumeTimeout) {
+            return copy(options -> options.resumeTimeout = resumeTimeout);
+        }
+
+        public TunnelOptions withPriority(String priority) {
+            return copy(options -> options.priority = priority);
+        }
+
+        public TunnelOptions withAgentTransport(String agentTransport) {
+            return copy(options -> options.agentTransport = agentTransport);
+        }
+
+        public TunnelOptions withEarlyData(boolean earlyData) {
+            return copy(options -> options.earlyData = earlyData);
+        }
+
+        public TunnelOptions withSocket(SocketOptions socket) {
+            return copy(options -> options.socket = socket);
+        }
+
+        /**
+         * @param defaults 数据面缺省的 socket 参数
+         * @return 叠加本 tunnel 覆盖项后的 socket 参数
+         */
+        public SocketTuning socketTuning(SocketTuning defaults) {
+            return socket == null ? defaults : socket.over(defaults);
+        }
+
+        /**
+         * @return 是否允许多个 agent 会话同时接收新连接
+         */
+        public boolean multiAgent() {
+            return balance != null;
+        }
+
+        /**
+         * @return 参数不合法的原因，合法时返回 null
+         */
+        public String validationError() {
+            if (instances < 1 || instances > MAX_INSTANCES) {
+                return "instances must be between 1 and " + MAX_INSTANCES;
+            }
+            if (maxFrameSize < FrameChunker.DEFAULT_MAX_FRAME_SIZE || maxFrameSize > FrameChunker.MAX_FRAME_SIZE) {
+                return "maxFrameSize must be between " + FrameChunker.DEFAULT_MAX_FRAME_SIZE + " and " + FrameChunker.MAX_FRAME_SIZE;
+            }
+            if (idleTimeout < NO_IDLE_TIMEOUT) {
+                return "idleTimeout must be a positive number of seconds, or -1 to disable";
+            }
+            if (maxLifetime < 0) {
+                return "maxLifetime must not be negative";
+            }
+            if (balance != null && !BALANCE_STRATEGIES.contains(balance)) {
+                return "balance must be one of " + String.join(", ", BALANCE_STRATEGIES);
+            }
+            if (drainTimeout < 0) {
+                return "drainTimeout must not be negative";
+            }
+            if (heartbeatInterval < 1) {
+                return "heartbeatInterval must be a positive number of seconds";
+            }
+            if (heartbeatMisses < 1) {
+                return "heartbeatMisses must be positive";
+            }
+            if (resumeTimeout < 0) {
+                return "resumeTimeout must not be negative";
+            }
+            if (!FrameScheduler.PRIORITIES.contains(priority)) {
+                return "priority must be one of " + String.join(", ", FrameScheduler.PRIORITIES);
+            }
+            if (!LinkSocket.TRANSPORTS.contains(agentTransport)) {
+                return "agentTransport must be one of " + String.join(", ", LinkSocket.TRANSPORTS);
+            }
+            if (socket != null) {
+                return socket.validationError();
+            }
+            return null;
+        }
+
+        private TunnelOptions copy(Consumer<Builder> change) {
+            Builder builder = new Builder(this);
+            change.accept(builder);
+            return builder.build();
+        }
+
+        /**
+         * with 方法的可变副本，各项按名称复制，只在 build 中按位置构造一次；字段初值与 store 中缺省时相同
+         */
+        private static final class Builder {
+            private int instances;
+            private int maxFrameSize;
+            private boolean compression;
+            private int idleTimeout;
+            private int maxLifetime;
+            private String balance;
+            private int drainTimeout;
+            private int heartbeatInterval;
+            private int heartbeatMisses;
+            private int resumeTimeout;
+            private String priority;
+            private String agentTransport;
+            private boolean earlyData;
+            private SocketOptions socket;
+
+            private Builder() {
+            }
+
+            private Builder(TunnelOptions options) {
+                instances = options.instances;
+                maxFrameSize = options.maxFrameSize;
+                compression = options.compression;
+                idleTimeout = options.idleTimeout;
+                maxLifetime = options.maxLifetime;
+                balance = options.balance;
+                drainTimeout = options.drainTimeout;
+                heartbeatInterval = options.heartbeatInterval;
+                heartbeatMisses = options.heartbeatMisses;
+                resumeTimeout = options.resumeTimeout;
+                priority = options.priority;
+                agentTransport = options.agentTransport;
+                earlyData = options.earlyData;
+                socket = options.socket;
+            }
+
+            private TunnelOptions build() {
+                return new TunnelOptions(instances, maxFrameSize, compression, idleTimeout, maxLifetime, balance,
+                        drainTimeout, heartbeatInterval, heartbeatMisses, resumeTimeout, priority, agentTransport,
+                        earlyData, socket);
+            }
+        }
+    }
+
+    /**
+     * tunnel 级 socket 参数覆盖，为 null 的项使用数据面缺省值，含义见 {@link SocketTuning}
+     *
+     * @param sendBufferSize    SO_SNDBUF，-1 表示使用系统默认值
+     * @param receiveBufferSize SO_RCVBUF，-1 表示使用系统默认值
+     */
+    record SocketOptions(Boolean tcpNoDelay, Boolean tcpQuickAck, Boolean tcpKeepAlive, Integer sendBufferSize,
+                         Integer receiveBufferSize) {
+
+        public SocketTuning over(SocketTuning defaults) {
+            return new SocketTuning(
+                    tcpNoDelay == null ? defaults.tcpNoDelay() : tcpNoDelay,
+                    tcpQuickAck == null ? defaults.tcpQuickAck() : tcpQuickAck,
+                    tcpKeepAlive == null ? defaults.tcpKeepAlive() : tcpKeepAlive,
+                    sendBufferSize == null ? defaults.sendBufferSize() : sendBufferSize,
+                    receiveBufferSize == null ? defaults.receiveBufferSize() : receiveBufferSize
+            );
+        }
+
+        /**
+         * @return 参数不合法的原因，合法时返回 null
+         */
+        public String validationError() {
+            if (!validBufferSize(sendBufferSize)) {
+                return "socket.sendBufferSize must be positive, or -1 for the system default";
+            }
+            if (!validBufferSize(receiveBufferSize)) {
+                return "socket.receiveBufferSize must be positive, or -1 for the system default";
+            }
+            return null;
+        }
+
+        private static boolean validBufferSize(Integer size) {
+            return size == null || size == -1 || size > 0;
+        }
     }
 
     record TunnelRecord(String name, ProxyType type, int openPort, int agentPort, boolean tokenConfigured) {
@@ -0,0 +1,207 @@
+package net.ximatai.frp.server.service;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import net.ximatai.frp.server.config.AuthConfig;
+import net.ximatai.frp.server.config.Tunnel;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * agent token 校验。
+ * <p>
+ * PBKDF2 在专用的有界线程池上执行，队列满时立即拒绝，server 重启后的重连风暴不会占满 Quarkus REST 共用的 worker 线程池；
+ * 未命中缓存的校验按来源地址限速。校验成功的 token 以进程内随机密钥的 HMAC 为键短期缓存，
+ * 同一 agent 重连时跳过 PBKDF2；缓存键包含 tunnel 当前的 token hash，重新生成 token 后旧缓存自然失效。
+ * 缓存中不保存明文 token，也不保存可离线校验 token 的摘要。
+ */
+public class AgentAuthenticator {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAX_CACHE_ENTRIES = 4096;
+    private static final int MAX_TRACKED_HOSTS = 4096;
+
+    private final ThreadPoolExecutor executor;
+    private final double ratePerIp;
+    private final int burstPerIp;
+    private final long cacheTtlNanos;
+    private final SecretKeySpec hmacKey;
+    // HMAC(tunnel, token hash, token) -> 过期时间（nanoTime）
+    private final Map<String, Long> verified = new ConcurrentHashMap<>();
+    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads    执行 PBKDF2 的线程数
+     * @param queueSize  等待校验的请求上限
+     * @param ratePerIp  单个来源地址每秒允许的校验次数，0 表示不限制
+     * @param burstPerIp 单个来源地址允许的瞬时校验次数
+     * @param cacheTtl   校验成功后缓存的秒数，0 表示不缓存
+     */
+    public AgentAuthenticator(int threads, int queueSize, int ratePerIp, int burstPerIp, int cacheTtl) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "frp-auth-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.ratePerIp = ratePerIp;
+        this.burstPerIp = Math.max(1, burstPerIp);
+        this.cacheTtlNanos = TimeUnit.SECONDS.toNanos(cacheTtl);
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    public static AgentAuthenticator create(AuthConfig config) {
+        return new AgentAuthenticator(config.threads(), config.queueSize(), config.ratePerIp(), config.burstPerIp(),
+                config.cacheTtl());
+    }
+
+    /**
+     * 校验 token，结果在 context 上回调；被限速或队列已满时以失败结束
+     *
+     * @param remoteHost agent 的来源地址，用于限速
+     */
+    public Future<Boolean> verify(Context context, Tunnel tunnel, String token, String remoteHost) {
+        if (token == null) {
+            return Future.succeededFuture(false);
+        }
+        String cacheKey = cacheTtlNanos > 0 ? cacheKey(tunnel, token) : null;
+        if (cached(cacheKey)) {
+            return Future.succeededFuture(true);
+        }
+        if (!tryAcquire(remoteHost)) {
+            return Future.failedFuture(new RejectedExecutionException("Too many auth attempts from " + remoteHost));
+        }
+
+        Promise<Boolean> promise = Promise.promise();
+        try {
+            executor.execute(() -> {
+                // 重连风暴中同一 token 的请求会一起排队，排在后面的请求可能已被前面的校验写入缓存
+                if (cached(cacheKey)) {
+                    context.runOnContext(v -> promise.complete(true));
+                    return;
+                }
+                boolean result;
+                try {
+                    result = tunnel.verifyToken(token);
+                } catch (RuntimeException ex) {
+                    context.runOnContext(v -> promise.fail(ex));
+                    return;
+                }
+                if (result && cacheKey != null) {
+                    remember(cacheKey);
+                }
+                context.runOnContext(v -> promise.complete(result));
+            });
+        } catch (RejectedExecutionException ex) {
+            return Future.failedFuture(new RejectedExecutionException("Auth queue is full"));
+        }
+        return promise.future();
+    }
+
+    /**
+     * 停止校验线程，之后的校验请求都会被拒绝
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private boolean cached(String key) {
+        if (key == null) {
+            return false;
+        }
+        Long expiresAt = verified.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt - System.nanoTime() > 0) {
+            return true;
+        }
+        verified.remove(key, expiresAt);
+        return false;
+    }
+
+    private void remember(String key) {
+        long now = System.nanoTime();
+        if (verified.size() >= MAX_CACHE_ENTRIES) {
+            verified.values().removeIf(expiresAt -> expiresAt - now <= 0);
+            if (verified.size() >= MAX_CACHE_ENTRIES) {
+                return;
+            }
+        }
+        verified.put(key, now + cacheTtlNanos);
+    }
+
+    private boolean tryAcquire(String remoteHost) {
+        if (ratePerIp <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (limiters.size() >= MAX_TRACKED_HOSTS) {
+            // 令牌已经补满的来源地址与新建的状态相同，可以丢弃
+            limiters.values().removeIf(limiter -> limiter.full(now));
+        }
+        return limiters.computeIfAbsent(remoteHost == null ? "" : remoteHost, host -> new RateLimiter(now))
+                .tryAcquire(now);
+    }
+
+    private String cacheKey(Tunnel tunnel, String token) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            mac.update(tunnel.name().getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(String.valueOf(tunnel.tokenHash().hash()).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to derive auth cache key", ex);
+        }
+    }
+
+    /**
+     * 令牌桶，每秒补充 ratePerIp 个，最多 burstPerIp 个
+     */
+    private final class RateLimiter {
+        private double tokens;
+        private long updatedAt;
+
+        RateLimiter(long now) {
+            this.tokens = burstPerIp;
+            this.updatedAt = now;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean full(long now) {
+            refill(now);
+            return tokens >= burstPerIp;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burstPerIp, tokens + (now - updatedAt) * ratePerIp / 1_000_000_000.0);
+            updatedAt = now;
+        }
+    }
+}
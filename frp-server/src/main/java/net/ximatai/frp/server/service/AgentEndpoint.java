@@ -0,0 +1,248 @@
+package net.ximatai.frp.server.service;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import net.ximatai.frp.common.FrameAssembler;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.MessageUtil;
+import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.SocketTuning;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 所有 tunnel 共用的 agent 端口。
+ * <p>
+ * agent 在 AUTH 的 tunnel 字段中指明要接入的 tunnel，端口读取首个 AUTH 后把 WebSocket 连同该 AUTH 转交给对应 tunnel，
+ * 鉴权与之后的协议处理都由 tunnel 完成。未知 tunnel 与鉴权失败的应答相同，不暴露 tunnel 是否存在。
+ * <p>
+ * AUTH 携带 tunnels 列表时，一条链路同时接入多个 tunnel，由 {@link AgentMux} 按 requestId 中的 scope 分发。
+ */
+public class AgentEndpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentEndpoint.class);
+
+    private final Vertx vertx;
+    private final int port;
+    private final SocketTuning socketTuning;
+    private final Heartbeat heartbeat;
+    private final Map<String, Acceptor> acceptors = new ConcurrentHashMap<>();
+    private String deploymentId;
+
+    private AgentEndpoint(Vertx vertx, int port, SocketTuning socketTuning, Heartbeat heartbeat) {
+        this.vertx = vertx;
+        this.port = port;
+        this.socketTuning = socketTuning;
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * 多 tunnel 链路的心跳，单 tunnel 链路仍按 tunnel 自己的 heartbeatInterval / heartbeatMisses
+     *
+     * @param interval 发送 PING 的间隔秒数
+     * @param misses   连续多少个间隔收不到 agent 的 PING/PONG 即关闭链路
+     */
+    public record Heartbeat(int interval, int misses) {
+        public static final Heartbeat DEFAULT = new Heartbeat(30, 3);
+    }
+
+    /**
+     * @param instances 监听端口的 event loop 数，经该端口接入的 agent 链路都在这些 event loop 上收发
+     */
+    public static Future<AgentEndpoint> deploy(Vertx vertx, int port, int instances, SocketTuning socketTuning,
+                                               Heartbeat heartbeat) {
+        AgentEndpoint endpoint = new AgentEndpoint(vertx, port, socketTuning, heartbeat);
+        return vertx.deployVerticle(() -> endpoint.new Listener(), new DeploymentOptions().setInstances(instances))
+                .map(id -> {
+                    endpoint.deploymentId = id;
+                    LOGGER.info("Shared agent endpoint listening on port {}, instances {}", port, instances);
+                    return endpoint;
+                });
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public Future<Void> close() {
+        acceptors.clear();
+        return deploymentId == null ? Future.succeededFuture() : vertx.undeploy(deploymentId);
+    }
+
+    void register(String tunnelName, Acceptor acceptor) {
+        acceptors.put(tunnelName, acceptor);
+    }
+
+    /**
+     * 只在仍是该 acceptor 时移除，tunnel 重启时新实例可能已先完成注册
+     */
+    void unregister(String tunnelName, Acceptor acceptor) {
+        acceptors.remove(tunnelName, acceptor);
+    }
+
+    /**
+     * 接收转交来的 agent 链路，在端口所在的 event loop 上同步调用
+     */
+    interface Acceptor {
+        /**
+         * @param auth 已从该连接读取的完整 AUTH 消息
+         */
+        void accept(ServerWebSocket webSocket, Buffer auth);
+
+        /**
+         * 作为多 tunnel 链路的一员接入，WebSocket 的事件由 mux 分发
+         *
+         * @param auth 只包含本 tunnel 的 AUTH 消息
+         */
+        void attach(AgentMux mux, int scope, Buffer auth);
+    }
+
+    private static JsonObject authPayload(Buffer message) {
+        if (message.length() < MessageUtil.CONTROL_WIDTH
+                || MessageUtil.getOperationType(message) != OperationType.AUTH) {
+            return null;
+        }
+        return MessageUtil.getControlPayload(message);
+    }
+
+    // tunnels 列表之前的 tunnel / token 为 scope 0，列表中的第 i 项为 scope i + 1
+    private void acceptMultiplexed(ServerWebSocket webSocket, JsonObject payload, JsonArray tunnels) {
+        List<JsonObject> entries = new ArrayList<>();
+        entries.add(new JsonObject().put("tunnel", payload.getValue("tunnel")).put("token", payload.getValue("token")));
+        for (int i = 0; i < tunnels.size(); i++) {
+            entries.add(tunnels.getJsonObject(i));
+        }
+        if (entries.size() > AgentMux.MAX_SCOPES) {
+            LOGGER.warn("FRP Agent requested {} tunnels on one link, limit is {}", entries.size(), AgentMux.MAX_SCOPES);
+            reject(webSocket, null);
+            return;
+        }
+
+        AgentMux mux = new AgentMux(vertx, webSocket, entries.size(), heartbeat);
+        int attached = 0;
+        for (int scope = 0; scope < entries.size(); scope++) {
+            String tunnelName = entries.get(scope).getString("tunnel");
+            Acceptor acceptor = tunnelName == null ? null : acceptors.get(tunnelName);
+            if (acceptor == null) {
+                LOGGER.warn("FRP Agent named unknown tunnel {} on shared endpoint: {}", tunnelName,
+                        webSocket.remoteAddress());
+                webSocket.writeBinaryMessage(authFail(tunnelName));
+                continue;
+            }
+            JsonObject memberAuth = payload.copy()
+                    .put("tunnel", tunnelName)
+                    .put("token", entries.get(scope).getValue("token"));
+            memberAuth.remove("tunnels");
+            memberAuth.remove("resume");
+            memberAuth.remove("resumeTicket");
+            memberAuth.remove("resumeLink");
+            memberAuth.remove("resumeStreams");
+            acceptor.attach(mux, scope, MessageUtil.buildControlMessage(OperationType.AUTH, memberAuth));
+            attached++;
+        }
+        if (attached == 0) {
+            webSocket.close();
+            return;
+        }
+        mux.start();
+    }
+
+    private static Buffer authFail(String tunnelName) {
+        JsonObject payload = new JsonObject()
+                .put("version", TunnelLinkerVerticle.PROTOCOL_VERSION)
+                .put("message", "auth failed");
+        if (tunnelName != null) {
+            payload.put("tunnel", tunnelName);
+        }
+        return MessageUtil.buildControlMessage(OperationType.AUTH_FAIL, payload);
+    }
+
+    private static void reject(ServerWebSocket webSocket, String tunnelName) {
+        webSocket.writeBinaryMessage(authFail(tunnelName)).onComplete(ar -> webSocket.close());
+    }
+
+    private class Listener extends AbstractVerticle {
+
+        @Override
+        public void start(Promise<Void> startPromise) {
+            // 各 tunnel 的帧大小上限不同，这里按协议上限接收，由 tunnel 按自己的配置校验
+            HttpServerOptions options = socketTuning.apply(new HttpServerOptions())
+                    .setRegisterWebSocketWriteHandlers(true)
+                    .setMaxWebSocketFrameSize(FrameChunker.MAX_FRAME_SIZE)
+                    .setMaxWebSocketMessageSize(FrameChunker.MAX_FRAME_SIZE);
+            vertx.createHttpServer(options)
+                    .webSocketHandler(this::handshake)
+                    .invalidRequestHandler(request -> LOGGER.error("Invalid request: {}", request.uri()))
+                    .exceptionHandler(err -> LOGGER.error("Shared agent endpoint error", err))
+                    .listen(port)
+                    .<Void>mapEmpty()
+                    .onComplete(startPromise);
+        }
+
+        private void handshake(ServerWebSocket webSocket) {
+            FrameAssembler assembler = new FrameAssembler(FrameChunker.MAX_FRAME_SIZE);
+            long timerId = vertx.setTimer(TunnelLinkerVerticle.AUTH_TIMEOUT, id -> {
+                LOGGER.warn("FRP Agent auth timeout on shared endpoint: {}", webSocket.remoteAddress());
+                webSocket.close();
+            });
+            webSocket.closeHandler(v -> vertx.cancelTimer(timerId));
+            webSocket.exceptionHandler(ex -> {
+                LOGGER.error("WebSocket error on shared agent endpoint", ex);
+                webSocket.close();
+            });
+            webSocket.frameHandler(frame -> {
+                if (frame.isClose()) {
+                    webSocket.close();
+                    return;
+                }
+                if (frame.isPing() || frame.type() == WebSocketFrameType.PONG) {
+                    return;
+                }
+                Buffer auth;
+                try {
+                    auth = assembler.append(frame);
+                } catch (IllegalStateException ex) {
+                    LOGGER.error("Oversized message on shared agent endpoint", ex);
+                    webSocket.close();
+                    return;
+                }
+                if (auth == null) {
+                    return;
+                }
+                vertx.cancelTimer(timerId);
+                JsonObject payload;
+                try {
+                    payload = authPayload(auth);
+                } catch (Exception ex) {
+                    payload = null;
+                }
+                JsonArray tunnels = payload == null ? null : payload.getJsonArray("tunnels");
+                if (tunnels != null) {
+                    acceptMultiplexed(webSocket, payload, tunnels);
+                    return;
+                }
+                String tunnelName = payload == null ? null : payload.getString("tunnel");
+                Acceptor acceptor = tunnelName == null ? null : acceptors.get(tunnelName);
+                if (acceptor == null) {
+                    LOGGER.warn("FRP Agent named no known tunnel on shared endpoint: {}", webSocket.remoteAddress());
+                    reject(webSocket, null);
+                    return;
+                }
+                acceptor.accept(webSocket, auth);
+            });
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.ximatai.frp.server.service;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.LinkSocket;
+import net.ximatai.frp.common.MessageUtil;
+import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.WebSocketLink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 同时接入多个 tunnel 的一条 agent 链路，由共用 agent 端口创建。
+ * <p>
+ * 每个 tunnel 在 AUTH 的 tunnels 列表中的位置为其 scope，tunnel 分配的 requestId 最高 8 位即为 scope。
+ * 链路上的转发帧（包括批量帧中的各条记录）按 scope 交给对应 tunnel，心跳、写队列恢复可写和链路关闭通知所有 tunnel。
+ * 心跳由 mux 按共用端口的配置统一发送和判定，不随各 tunnel 的 heartbeatInterval 变化。
+ * 帧处理运行在共用端口的 event loop 上，各 tunnel 自行转到自己的实例处理。
+ */
+class AgentMux {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentMux.class);
+
+    /**
+     * 一条链路最多接入的 tunnel 数
+     */
+    static final int MAX_SCOPES = 256;
+
+    private final Vertx vertx;
+    private final LinkSocket link;
+    private final AtomicReferenceArray<Member> members;
+    private final AgentEndpoint.Heartbeat heartbeat;
+    // 以下字段只在共用端口的 event loop 上访问
+    private long heartbeatTimerId = -1;
+    private long lastSeenAt = System.nanoTime();
+    private long pingSentAt;
+    private boolean closed;
+
+    /**
+     * 接入该链路的一个 tunnel
+     */
+    interface Member {
+        void frame(OperationType operationType, long requestId, Buffer payload);
+
+        /**
+         * @param rttMicros 本次心跳测得的往返时延，收到 agent 的 PING 时为 -1
+         */
+        void heartbeat(long rttMicros);
+
+        /**
+         * 链路写队列恢复可写
+         */
+        void writable();
+
+        void closed();
+    }
+
+    AgentMux(Vertx vertx, ServerWebSocket webSocket, int scopes, AgentEndpoint.Heartbeat heartbeat) {
+        this.vertx = vertx;
+        this.link = new WebSocketLink(webSocket, FrameChunker.MAX_FRAME_SIZE);
+        this.members = new AtomicReferenceArray<>(scopes);
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * @return 各 tunnel 共用的写出端，事件处理器由 mux 设置
+     */
+    LinkSocket link() {
+        return link;
+    }
+
+    static int scope(long requestId) {
+        return (int) (requestId >>> 56);
+    }
+
+    void attach(int scope, Member member) {
+        members.set(scope, member);
+    }
+
+    /**
+     * 移除鉴权失败的 tunnel，全部 tunnel 都已移除时关闭链路
+     */
+    void detach(int scope) {
+        members.set(scope, null);
+        for (int i = 0; i < members.length(); i++) {
+            if (members.get(i) != null) {
+                return;
+            }
+        }
+        LOGGER.warn("No tunnel left on multiplexed agent link {}, closing", link.remoteAddress());
+        link.close();
+    }
+
+    /**
+     * 接管 WebSocket 的事件，在全部 tunnel 登记后调用
+     */
+    void start() {
+        link.messageHandler(this::handleMessage);
+        link.heartbeatHandler(this::handleHeartbeat);
+        link.drainHandler(v -> forEachMember(Member::writable));
+        link.closeHandler(v -> handleClosed());
+        link.exceptionHandler(ex -> {
+            LOGGER.error("Error on multiplexed agent link {}", link.remoteAddress(), ex);
+            link.close();
+        });
+        if (link.isClosed()) {
+            handleClosed();
+            return;
+        }
+        heartbeatTimerId = vertx.setPeriodic(TimeUnit.SECONDS.toMillis(heartbeat.interval()), id -> checkHeartbeat());
+    }
+
+    private void handleHeartbeat(boolean pong, Buffer payload) {
+        lastSeenAt = System.nanoTime();
+        long rttMicros = -1;
+        if (pong && pingSentAt != 0 && payload.length() == Long.BYTES && payload.getLong(0) == pingSentAt) {
+            rttMicros = TimeUnit.NANOSECONDS.toMicros(lastSeenAt - pingSentAt);
+            pingSentAt = 0;
+        }
+        long measured = rttMicros;
+        forEachMember(member -> member.heartbeat(measured));
+    }
+
+    // 静默断开的链路上关闭握手不会完成，判定失效后直接通知所有 tunnel
+    private void checkHeartbeat() {
+        long timeout = TimeUnit.SECONDS.toNanos((long) heartbeat.interval() * heartbeat.misses());
+        if (System.nanoTime() - lastSeenAt > timeout) {
+            LOGGER.warn("Multiplexed agent link {} missed heartbeats, closing", link.remoteAddress());
+            link.close();
+            handleClosed();
+            return;
+        }
+        pingSentAt = System.nanoTime();
+        link.writePing(Buffer.buffer(Long.BYTES).appendLong(pingSentAt));
+    }
+
+    private void handleClosed() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        vertx.cancelTimer(heartbeatTimerId);
+        forEachMember(Member::closed);
+    }
+
+    private void handleMessage(Buffer data) {
+        try {
+            if (data.length() < MessageUtil.CONTROL_WIDTH) {
+                LOGGER.error("Invalid frame length from multiplexed agent link: {}", data.length());
+                return;
+            }
+            OperationType operationType = MessageUtil.getOperationType(data);
+            if (MessageUtil.isControlOperation(operationType)) {
+                LOGGER.warn("Unexpected control frame {} from multiplexed agent link", operationType);
+                return;
+            }
+            if (operationType == OperationType.BATCH) {
+                MessageUtil.forEachBatchRecord(data, this::route);
+                return;
+            }
+            if (data.length() < MessageUtil.OPERATION_WIDTH) {
+                LOGGER.error("Invalid transfer frame length from multiplexed agent link: {}", data.length());
+                return;
+            }
+            route(operationType, MessageUtil.getRequestId(data), MessageUtil.getPayload(data));
+        } catch (Exception ex) {
+            LOGGER.error("Error processing multiplexed agent frame", ex);
+        }
+    }
+
+    private void route(OperationType operationType, long requestId, Buffer payload) {
+        int scope = scope(requestId);
+        Member member = scope < members.length() ? members.get(scope) : null;
+        if (member == null) {
+            LOGGER.debug("Dropping {} for request {} of unknown scope {}", operationType, requestId, scope);
+            return;
+        }
+        member.frame(operationType, requestId, payload);
+    }
+
+    private void forEachMember(Consumer<Member> action) {
+        for (int i = 0; i < members.length(); i++) {
+            Member member = members.get(i);
+            if (member != null) {
+                action.accept(member);
+            }
+        }
+    }
+}
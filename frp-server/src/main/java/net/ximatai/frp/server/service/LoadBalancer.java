@@ -0,0 +1,154 @@
+package net.ximatai.frp.server.service;
+
+import net.ximatai.frp.server.config.Tunnel;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多 agent 模式下新用户连接在活跃会话之间的分配策略。
+ * <p>
+ * 同一 tunnel 的各实例在各自 event loop 上并发调用 {@link #select}，实现需要线程安全。
+ * 新增策略时在 {@link Tunnel.TunnelOptions#BALANCE_STRATEGIES} 中登记名称，并在 {@link #of(String)} 中创建。
+ */
+interface LoadBalancer {
+
+    /**
+     * @param candidates 当前活跃的会话，不为空，调用期间不会被修改
+     * @param clientHost 用户连接的来源地址，可能为空字符串
+     */
+    <T extends Candidate> T select(List<T> candidates, String clientHost);
+
+    /**
+     * 参与分配的 agent 会话
+     */
+    interface Candidate {
+        /**
+         * @return 跨重连稳定的标识，一致性哈希据此定位
+         */
+        String key();
+
+        int weight();
+
+        int streams();
+    }
+
+    static LoadBalancer of(String name) {
+        return switch (name) {
+            case Tunnel.TunnelOptions.BALANCE_ROUND_ROBIN -> new RoundRobin();
+            case Tunnel.TunnelOptions.BALANCE_LEAST_STREAMS -> new LeastStreams();
+            case Tunnel.TunnelOptions.BALANCE_WEIGHTED -> new Weighted();
+            case Tunnel.TunnelOptions.BALANCE_IP_HASH -> new IpHash();
+            default -> throw new IllegalArgumentException("Unknown balance strategy: " + name);
+        };
+    }
+
+    final class RoundRobin implements LoadBalancer {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public <T extends Candidate> T select(List<T> candidates, String clientHost) {
+            return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    /**
+     * 选择承载连接最少的会话，从轮转的起点开始比较，短连接为主、各会话都为 0 时退化为轮询
+     */
+    final class LeastStreams implements LoadBalancer {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public <T extends Candidate> T select(List<T> candidates, String clientHost) {
+            int size = candidates.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            T selected = null;
+            for (int i = 0; i < size; i++) {
+                T candidate = candidates.get((start + i) % size);
+                if (selected == null || candidate.streams() < selected.streams()) {
+                    selected = candidate;
+                }
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * 按 agent 声明的权重随机分配
+     */
+    final class Weighted implements LoadBalancer {
+        @Override
+        public <T extends Candidate> T select(List<T> candidates, String clientHost) {
+            int total = 0;
+            for (T candidate : candidates) {
+                total += candidate.weight();
+            }
+            int point = ThreadLocalRandom.current().nextInt(total);
+            for (T candidate : candidates) {
+                point -= candidate.weight();
+                if (point < 0) {
+                    return candidate;
+                }
+            }
+            return candidates.getLast();
+        }
+    }
+
+    /**
+     * 按来源地址一致性哈希，同一客户端固定落到同一 agent；agent 增减时只有约 1/n 的客户端改变去向
+     */
+    final class IpHash implements LoadBalancer {
+        private static final int VIRTUAL_NODES = 64;
+
+        private volatile Ring<?> ring;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Candidate> T select(List<T> candidates, String clientHost) {
+            Ring<?> current = ring;
+            if (current == null || current.members != candidates) {
+                current = new Ring<>(candidates);
+                ring = current;
+            }
+            return ((Ring<T>) current).locate(hash(clientHost));
+        }
+
+        private static final class Ring<T extends Candidate> {
+            private final List<T> members;
+            private final TreeMap<Long, T> nodes = new TreeMap<>();
+
+            Ring(List<T> members) {
+                this.members = members;
+                for (T member : members) {
+                    for (int i = 0; i < VIRTUAL_NODES; i++) {
+                        nodes.put(hash(member.key() + "#" + i), member);
+                    }
+                }
+            }
+
+            T locate(long hash) {
+                var entry = nodes.ceilingEntry(hash);
+                return entry != null ? entry.getValue() : nodes.firstEntry().getValue();
+            }
+        }
+
+        /**
+         * FNV-1a 64 位哈希，再做一次 murmur3 fmix64 使分布均匀
+         */
+        static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.ximatai.frp.server.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 粗粒度哈希时间轮，用于跟踪大量用户连接的空闲超时。
+ * <p>
+ * 每个 {@link TunnelLinkerVerticle} 实例持有一个，由一个周期定时器推进，只在该实例的 event loop 上访问。
+ * 流量只刷新 entry 自己记录的活跃时间，不移动 entry；槽位到期时按最新截止时间判断，未到期的重新挂到对应槽位。
+ *
+ * @param <T> entry 类型
+ */
+final class TimingWheel<T extends TimingWheel.Entry> {
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long tickMillis;
+    private final Entry[] slots;
+    private final int mask;
+    // 下一个待处理的 tick
+    private long tick;
+    // 最近一次推进时的时间，作为连接活跃时间的粗粒度时钟
+    private long now;
+
+    /**
+     * @param tickMillis 每个槽位覆盖的毫秒数
+     * @param slotCount  槽位数，必须是 2 的幂
+     * @param now        当前时间（毫秒）
+     */
+    TimingWheel(long tickMillis, int slotCount, long now) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two: " + slotCount);
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new Entry[slotCount];
+        this.mask = slotCount - 1;
+        this.tick = now / tickMillis;
+        this.now = now;
+    }
+
+    long now() {
+        return now;
+    }
+
+    /**
+     * 按 entry 当前截止时间挂入槽位，已挂入的先移除；截止时间为 {@link #NO_DEADLINE} 时不跟踪
+     */
+    void schedule(T entry) {
+        cancel(entry);
+        long deadline = entry.deadline();
+        if (deadline == NO_DEADLINE) {
+            return;
+        }
+        long deadlineTick = Math.max(Math.ceilDiv(deadline, tickMillis), tick);
+        int slot = (int) (deadlineTick & mask);
+        Entry node = entry;
+        node.deadlineTick = deadlineTick;
+        node.slot = slot;
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+    }
+
+    void cancel(Entry entry) {
+        if (entry.slot < 0) {
+            return;
+        }
+        if (entry.prev == null) {
+            slots[entry.slot] = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+
+    /**
+     * 推进到 now，截止时间已过的 entry 移出时间轮后交给 expired 处理
+     */
+    @SuppressWarnings("unchecked")
+    void advance(long now, Consumer<T> expired) {
+        this.now = now;
+        List<T> expiredEntries = new ArrayList<>();
+        for (long target = now / tickMillis; tick <= target; tick++) {
+            Entry entry = slots[(int) (tick & mask)];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.deadlineTick <= tick) {
+                    T current = (T) entry;
+                    if (current.deadline() <= now) {
+                        cancel(current);
+                        expiredEntries.add(current);
+                    } else {
+                        schedule(current);
+                    }
+                }
+                entry = next;
+            }
+        }
+        expiredEntries.forEach(expired);
+    }
+
+    /**
+     * 时间轮中的元素，以侵入式链表挂在槽位上，取消为 O(1)
+     */
+    abstract static class Entry {
+        private Entry prev;
+        private Entry next;
+        private int slot = -1;
+        private long deadlineTick;
+
+        /**
+         * @return 当前截止时间（毫秒），{@link #NO_DEADLINE} 表示不超时
+         */
+        abstract long deadline();
+    }
+}
@@ -1,6 +1,8 @@
 package net.ximatai.frp.server.service;
 
+import io.netty.util.collection.LongObjectHashMap;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -8,66 +10,171 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.ServerWebSocket;
-import io.vertx.core.http.WebSocketFrame;
-import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
 import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
+import net.ximatai.frp.common.ConnectFailReason;
+import net.ximatai.frp.common.FrameBatcher;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.FrameScheduler;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.MessageUtil;
 import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.ReplayBuffer;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.common.StreamCompressor;
+import net.ximatai.frp.common.StreamWindow;
+import net.ximatai.frp.common.TcpLink;
+import net.ximatai.frp.common.WebSocketLink;
 import net.ximatai.frp.server.config.Tunnel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static net.ximatai.frp.common.MessageUtil.OPERATION_WIDTH;
 
+/**
+ * 一个 tunnel 可以部署多个实例，各实例共享监听端口，Vert.x 将新连接轮流分配到各实例的 event loop。
+ * <p>
+ * 会话与链路状态由同一 tunnel 的所有实例共享；用户连接（stream）归属接入它的实例，只在该实例的 event loop 上访问。
+ * agent 链路收到的转发帧按 requestId 中的实例序号交给所属实例处理。
+ */
 public class TunnelLinkerVerticle extends AbstractVerticle {
     private static final Logger LOGGER = LoggerFactory.getLogger(TunnelLinkerVerticle.class);
 
-    private static final long HEARTBEAT_INTERVAL = 30000;
     public static final long AUTH_TIMEOUT = Long.getLong("muyun.frp.auth.timeout", 5000L);
-    private static final int REQUEST_TIMEOUT = 60000 * 60;
-    private static final int MAX_WEBSOCKET_FRAME_SIZE = 65536;
-    private static final int PROTOCOL_VERSION = 1;
+    // 空闲超时时间轮的精度，超时最多延后一个 tick 触发
+    private static final long IDLE_WHEEL_TICK = 1000;
+    private static final int IDLE_WHEEL_SLOTS = 512;
+    static final int PROTOCOL_VERSION = 1;
+    private static final int MAX_WEIGHT = 1000;
+    private static final String COMPRESSION_DEFLATE = "deflate";
+    private static final String COMPRESSION_NONE = "none";
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     private final Vertx vertx;
     private final Tunnel tunnel;
     private final TunnelRuntimeRegistry runtimeRegistry;
+    private final SharedState shared;
+    private final SocketTuning socketTuning;
+    private final AgentAuthenticator authenticator;
+    // 共用 agent 端口，未开启时为 null
+    private final AgentEndpoint endpoint;
+    private final TunnelRuntimeRegistry.CompressionCounters compressionCounters;
+    private final TunnelRuntimeRegistry.ConnectCounters connectCounters;
 
-    private volatile AgentSession activeSession;
+    private int instanceIndex;
     private HttpServer agentServer;
+    private NetServer agentTcpServer;
     private NetServer publicServer;
     private volatile boolean stopping;
-    private final Map<String, AgentSession> agentSessions = new ConcurrentHashMap<>();
-    private final Map<String, RequestContext> pendingRequests = new ConcurrentHashMap<>();
+    // 本实例接入的用户连接，只在本实例的 event loop 上访问
+    private final LongObjectHashMap<RequestContext> pendingRequests = new LongObjectHashMap<>();
+    // 同一批用户连接按承载链路分组，链路或会话结束时只需处理其自身的连接
+    private final Map<AgentLink, LongObjectHashMap<RequestContext>> linkStreams = new HashMap<>();
+    private TimingWheel<RequestContext> idleWheel;
+    private long idleWheelTimerId = -1;
 
-    public TunnelLinkerVerticle(Vertx vertx, Tunnel tunnel) {
-        this(vertx, tunnel, new TunnelRuntimeRegistry());
+    public TunnelLinkerVerticle(Vertx vertx, Tunnel tunnel, AgentAuthenticator authenticator) {
+        this(vertx, tunnel, new TunnelRuntimeRegistry(), authenticator);
     }
 
-    public TunnelLinkerVerticle(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry) {
+    public TunnelLinkerVerticle(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry,
+                                AgentAuthenticator authenticator) {
+        this(vertx, tunnel, runtimeRegistry, new SharedState(tunnel.options()),
+                tunnel.options().socketTuning(SocketTuning.DEFAULT), authenticator, null);
+    }
+
+    private TunnelLinkerVerticle(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry, SharedState shared,
+                                 SocketTuning socketTuning, AgentAuthenticator authenticator, AgentEndpoint endpoint) {
         this.vertx = vertx;
         this.tunnel = tunnel;
         this.runtimeRegistry = runtimeRegistry;
+        this.shared = shared;
+        this.socketTuning = socketTuning;
+        this.authenticator = authenticator;
+        this.endpoint = endpoint;
         this.runtimeRegistry.registerTunnel(tunnel);
+        this.compressionCounters = runtimeRegistry.compressionCounters(tunnel);
+        this.connectCounters = runtimeRegistry.connectCounters(tunnel);
+    }
+
+    /**
+     * 按 tunnel 配置的实例数部署，所有实例共享同一份会话状态；authenticator 由调用方关闭
+     */
+    public static Future<String> deploy(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry,
+                                        AgentAuthenticator authenticator) {
+        return deploy(vertx, tunnel, runtimeRegistry, SocketTuning.DEFAULT, authenticator);
+    }
+
+    public static Future<String> deploy(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry,
+                                        SocketTuning socketTuning, AgentAuthenticator authenticator) {
+        return deploy(vertx, tunnel, runtimeRegistry, socketTuning, authenticator, null);
+    }
+
+    /**
+     * @param socketTuning 数据面缺省的 socket 参数，tunnel 的 options.socket 逐项覆盖
+     * @param endpoint     共用 agent 端口，为 null 时 tunnel 必须配置自己的 agentPort
+     */
+    public static Future<String> deploy(Vertx vertx, Tunnel tunnel, TunnelRuntimeRegistry runtimeRegistry,
+                                        SocketTuning socketTuning, AgentAuthenticator authenticator,
+                                        AgentEndpoint endpoint) {
+        SharedState shared = new SharedState(tunnel.options());
+        SocketTuning tunnelTuning = tunnel.options().socketTuning(socketTuning);
+        return vertx.deployVerticle(() -> new TunnelLinkerVerticle(vertx, tunnel, runtimeRegistry, shared, tunnelTuning,
+                        authenticator, endpoint),
+                new DeploymentOptions().setInstances(tunnel.options().instances()));
     }
 
     @Override
     public void start(Promise<Void> startPromise) {
-        LOGGER.info("Try To Link {}, OpenPort is {}, AgentPort is {}",
-                tunnel.name(), tunnel.openPort(), tunnel.agentPort());
+        instanceIndex = shared.register(this);
+        idleWheel = new TimingWheel<>(IDLE_WHEEL_TICK, IDLE_WHEEL_SLOTS, clock());
+        idleWheelTimerId = vertx.setPeriodic(IDLE_WHEEL_TICK, id -> idleWheel.advance(clock(), this::expireRequest));
+        LOGGER.info("Try To Link {}, OpenPort is {}, AgentPort is {}, instance {}",
+                tunnel.name(), tunnel.openPort(), tunnel.agentPort(), instanceIndex);
 
-        createAgentServer(tunnel.agentPort())
+        if (tunnel.agentPort() == 0 && endpoint == null) {
+            startPromise.fail("Tunnel " + tunnel.name() + " has no agentPort and the shared agent endpoint is disabled");
+            return;
+        }
+        // agentPort 为 0 时只通过共用 agent 端口接入
+        Future<Void> agentServerFuture = tunnel.agentPort() == 0
+                ? Future.succeededFuture()
+                : createAgentServer(tunnel.agentPort());
+        agentServerFuture
                 .compose(v -> createPublicServer(tunnel.openPort()))
                 .onSuccess(v -> {
-                    LOGGER.info("Link {} Success", tunnel.name());
+                    if (endpoint != null && instanceIndex == 0) {
+                        endpoint.register(tunnel.name(), shared.acceptor);
+                    }
+                    String transport = SocketTuning.transportName(vertx);
+                    SocketTuning effective = socketTuning.effective(vertx);
+                    if (instanceIndex == 0 && effective.tcpQuickAck() != socketTuning.tcpQuickAck()) {
+                        LOGGER.warn("Tunnel {} requests TCP_QUICKACK but it requires native transport, ignored on {}",
+                                tunnel.name(), transport);
+                    }
+                    runtimeRegistry.markDataPlane(tunnel, transport, effective);
+                    LOGGER.info("Link {} Success, transport={}, socket={}", tunnel.name(), transport, effective);
                     startPromise.complete();
                 })
                 .onFailure(throwable -> {
@@ -78,37 +185,31 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
 
     private Future<Void> createAgentServer(int port) {
         Promise<Void> promise = Promise.promise();
-        HttpServerOptions options = new HttpServerOptions()
-                .setRegisterWebSocketWriteHandlers(true)
-                .setMaxWebSocketFrameSize(MAX_WEBSOCKET_FRAME_SIZE);
-
-        HttpServer server = vertx.createHttpServer(options);
-        server.webSocketHandler(webSocket -> {
-                    AgentSession session = new AgentSession(UUID.randomUUID().toString(), webSocket);
-                    agentSessions.put(session.sessionId, session);
-                    LOGGER.info("FRP Agent connected before auth: {} @ {}", session.sessionId, webSocket.remoteAddress());
-
-                    session.authTimerId = vertx.setTimer(AUTH_TIMEOUT, id -> {
-                        if (!session.authenticated) {
-                            LOGGER.warn("FRP Agent auth timeout: {}", session.sessionId);
-                            closeWebSocket(webSocket);
-                        }
-                    });
-                    session.heartbeatTimerId = setupHeartbeat(session);
-
-                    webSocket.frameHandler(frame -> handleAgentFrame(session, frame));
-                    webSocket.closeHandler(v -> handleSessionClosed(session));
-                    webSocket.exceptionHandler(ex -> {
-                        LOGGER.error("WebSocket error for agent session {}", session.sessionId, ex);
-                        closeWebSocket(webSocket);
-                    });
-                })
-                .invalidRequestHandler(request -> LOGGER.error("Invalid request: {}", request.uri()))
-                .exceptionHandler(err -> LOGGER.error("Server error", err))
-                .listen(port)
+        int maxFrameSize = tunnel.options().maxFrameSize();
+        Future<?> listening;
+        if (LinkSocket.TRANSPORT_TCP.equals(tunnel.options().agentTransport())) {
+            NetServerOptions options = socketTuning.apply(new NetServerOptions());
+            listening = vertx.createNetServer(options)
+                    .connectHandler(socket -> acceptAgentLink(new TcpLink(socket, maxFrameSize), false))
+                    .exceptionHandler(err -> LOGGER.error("Server error", err))
+                    .listen(port)
+                    .onSuccess(s -> agentTcpServer = s);
+        } else {
+            HttpServerOptions options = socketTuning.apply(new HttpServerOptions())
+                    .setRegisterWebSocketWriteHandlers(true)
+                    .setMaxWebSocketFrameSize(maxFrameSize)
+                    .setMaxWebSocketMessageSize(maxFrameSize);
+            listening = vertx.createHttpServer(options)
+                    .webSocketHandler(webSocket -> acceptAgentLink(new WebSocketLink(webSocket, maxFrameSize), false))
+                    .invalidRequestHandler(request -> LOGGER.error("Invalid request: {}", request.uri()))
+                    .exceptionHandler(err -> LOGGER.error("Server error", err))
+                    .listen(port)
+                    .onSuccess(s -> agentServer = s);
+        }
+        listening
                 .onSuccess(s -> {
-                    agentServer = s;
-                    LOGGER.info("Agent server listening on port {}", port);
+                    LOGGER.info("Agent server listening on port {}, transport {}", port,
+                            tunnel.options().agentTransport());
                     promise.complete();
                 })
                 .onFailure(err -> {
@@ -119,51 +220,125 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
         return promise.future();
     }
 
+    // 经共用 agent 端口接入的链路运行在端口的 event loop 上，其事件逐个转到本实例处理
+    private AgentLink acceptAgentLink(LinkSocket socket, boolean dispatched) {
+        AgentLink link = new AgentLink(UUID.randomUUID().toString(), socket, this);
+        registerLink(link);
+
+        if (dispatched) {
+            socket.messageHandler(data -> context.runOnContext(v -> handleAgentMessage(link, data)));
+            socket.heartbeatHandler((pong, payload) -> context.runOnContext(v -> handleHeartbeat(link, pong, payload)));
+            socket.closeHandler(v -> context.runOnContext(v2 -> handleLinkClosed(link)));
+        } else {
+            socket.messageHandler(data -> handleAgentMessage(link, data));
+            socket.heartbeatHandler((pong, payload) -> handleHeartbeat(link, pong, payload));
+            socket.closeHandler(v -> handleLinkClosed(link));
+        }
+        socket.drainHandler(v -> link.onWritable());
+        socket.exceptionHandler(ex -> {
+            LOGGER.error("Error on agent link {}", link.linkId, ex);
+            closeLink(socket);
+        });
+        return link;
+    }
+
+    private void registerLink(AgentLink link) {
+        shared.agentLinks.put(link.linkId, link);
+        LOGGER.info("FRP Agent connected before auth: {} @ {}", link.linkId, link.socket.remoteAddress());
+
+        link.authTimerId = vertx.setTimer(AUTH_TIMEOUT, id -> {
+            if (!link.authenticated) {
+                LOGGER.warn("FRP Agent auth timeout: {}", link.linkId);
+                if (link.mux != null) {
+                    rejectAuth(link);
+                } else {
+                    closeLink(link.socket);
+                }
+            }
+        });
+        // 多 tunnel 链路的心跳由 mux 统一负责
+        if (link.mux == null) {
+            link.heartbeatTimerId = setupHeartbeat(link);
+        }
+    }
+
+    // 在共用 agent 端口的 event loop 上调用。先登记再返回，之后 mux 分发来的帧都排在接入之后执行
+    private void acceptMuxLink(AgentMux mux, int scope, Buffer auth) {
+        AgentLink link = new AgentLink(UUID.randomUUID().toString(), mux.link(), this, mux, scope);
+        mux.attach(scope, new MuxMember(link));
+        context.runOnContext(v -> {
+            if (stopping) {
+                mux.detach(scope);
+                return;
+            }
+            registerLink(link);
+            handleAgentMessage(link, auth);
+        });
+    }
+
+    // 在共用 agent 端口的 event loop 上调用。转到本实例前暂停读取，保证后续帧在 AUTH 之后按序交给本实例
+    private void acceptDispatchedLink(ServerWebSocket webSocket, Buffer auth) {
+        LinkSocket socket = new WebSocketLink(webSocket, tunnel.options().maxFrameSize());
+        socket.pause();
+        context.runOnContext(v -> {
+            if (stopping) {
+                closeLink(socket);
+                return;
+            }
+            AgentLink link = acceptAgentLink(socket, true);
+            if (socket.isClosed()) {
+                // 转交期间连接已断开，关闭事件不会再触发
+                handleLinkClosed(link);
+                return;
+            }
+            handleAgentMessage(link, auth);
+            socket.resume();
+        });
+    }
+
     private Future<Void> createPublicServer(int port) {
         Promise<Void> promise = Promise.promise();
-        vertx.createNetServer()
+        // 允许大帧时按帧长度读取用户连接，一次读取即可填满一个 DATA 帧
+        NetServerOptions options = socketTuning
+                .withMinReceiveBufferSize(FrameChunker.readBufferSize(tunnel.options().maxFrameSize()))
+                .apply(new NetServerOptions());
+        vertx.createNetServer(options)
                 .connectHandler(userSocket -> {
-                    AgentSession session = authenticatedSession();
-                    if (session == null) {
+                    SocketAddress remoteAddress = userSocket.remoteAddress();
+                    AgentSession session = shared.selectSession(remoteAddress == null ? "" : remoteAddress.host());
+                    AgentLink link = session == null ? null : session.selectLink(this);
+                    if (link == null) {
                         LOGGER.error("No authenticated agent for tunnel {}, closing user connection", tunnel.name());
                         userSocket.close();
                         return;
                     }
 
-                    String requestId = UUID.randomUUID().toString();
-                    LOGGER.debug("New user request: {}", requestId);
-
-                    RequestContext context = new RequestContext(requestId, session.sessionId, userSocket);
-                    pendingRequests.put(requestId, context);
-                    updateActiveConnections(session.sessionId);
-
-                    context.timeoutId = vertx.setTimer(REQUEST_TIMEOUT, tid -> {
-                        RequestContext removed = pendingRequests.remove(requestId);
-                        if (removed != null) {
-                            removed.closed = true;
-                            userSocket.close();
-                            sendCloseSignalToAgent(removed);
-                            updateActiveConnections(removed.sessionId);
-                            LOGGER.warn("Request timed out: {}", requestId);
-                        }
-                    });
+                    long requestId = nextRequestId(session);
+                    LOGGER.debug("New user request: {} on link {}", requestId, link.linkId);
 
-                    if (!forwardRequestToAgent(context)) {
-                        cleanupRequest(requestId, false);
-                        userSocket.close();
-                        LOGGER.error("No available authenticated agent for request: {}", requestId);
+                    RequestContext context = new RequestContext(requestId, session, link, userSocket,
+                            new StreamWindow(session.streamWindow), tunnel.options(), idleWheel.now());
+                    registerStream(context);
+                    updateActiveConnections(session);
+                    idleWheel.schedule(context);
+
+                    // 开启 earlyData 时 CONNECT 留到用户首次可读，随首包一起发出
+                    boolean holdConnect = link.connectAck && tunnel.options().earlyData();
+                    if (!holdConnect && !connectOrClose(context, null)) {
                         return;
                     }
 
-                    userSocket.handler(data -> {
-                        while ((data.length() + OPERATION_WIDTH) > MAX_WEBSOCKET_FRAME_SIZE) {
-                            handleUserData(requestId, data.slice(0, MAX_WEBSOCKET_FRAME_SIZE - OPERATION_WIDTH));
-                            data = data.slice(MAX_WEBSOCKET_FRAME_SIZE - OPERATION_WIDTH, data.length());
-                        }
-                        handleUserData(requestId, data);
-                    });
+                    userSocket.handler(data -> FrameChunker.forEachChunk(data, link.maxFrameSize,
+                            chunk -> handleUserData(requestId, chunk)));
+
+                    userSocket.drainHandler(v -> sendWindowUpdate(context, context.window.drained()));
 
                     userSocket.closeHandler(v -> {
+                        if (context.detached) {
+                            // 链路恢复后先重发已缓存的数据，再通知 agent 关闭
+                            context.userClosed = true;
+                            return;
+                        }
                         context.closed = true;
                         cleanupRequest(requestId, true);
                     });
@@ -188,64 +363,108 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
         return promise.future();
     }
 
-    private void handleAgentFrame(AgentSession session, WebSocketFrame frame) {
-        if (frame.isClose()) {
-            closeWebSocket(session.webSocket);
-            return;
-        }
-        if (frame.isPing()) {
-            session.lastSeenAt = Instant.now();
-            runtimeRegistry.touchAgent(tunnel, session.sessionId);
-            session.webSocket.writePong(Buffer.buffer("pong"));
-            return;
-        }
-        if (frame.type().equals(WebSocketFrameType.PONG)) {
-            session.lastSeenAt = Instant.now();
-            runtimeRegistry.touchAgent(tunnel, session.sessionId);
-            return;
-        }
-        if (!frame.isBinary()) {
-            return;
+    private void handleHeartbeat(AgentLink link, boolean pong, Buffer payload) {
+        if (pong) {
+            handlePong(link, payload);
+        } else {
+            touchLink(link, -1);
         }
+    }
 
-        Buffer data = frame.binaryData();
+    private void handleAgentMessage(AgentLink link, Buffer data) {
         if (data.length() < MessageUtil.CONTROL_WIDTH) {
-            LOGGER.error("Invalid frame length from agent session {}: {}", session.sessionId, data.length());
+            LOGGER.error("Invalid frame length from agent link {}: {}", link.linkId, data.length());
             return;
         }
 
         try {
             OperationType operationType = MessageUtil.getOperationType(data);
-            if (!session.authenticated) {
+            if (!link.authenticated) {
                 if (operationType == OperationType.AUTH) {
-                    handleAuth(session, data);
+                    handleAuth(link, data);
                 } else {
-                    LOGGER.warn("Ignoring unauthenticated {} frame from session {}", operationType, session.sessionId);
+                    LOGGER.warn("Ignoring unauthenticated {} frame from link {}", operationType, link.linkId);
                 }
                 return;
             }
 
             if (MessageUtil.isControlOperation(operationType)) {
-                LOGGER.warn("Unexpected control frame {} from authenticated session {}", operationType, session.sessionId);
+                LOGGER.warn("Unexpected control frame {} from authenticated link {}", operationType, link.linkId);
+                return;
+            }
+            if (operationType == OperationType.BATCH) {
+                MessageUtil.forEachBatchRecord(data, (type, requestId, payload) ->
+                        dispatchStreamFrame(link, type, requestId, payload));
                 return;
             }
             if (data.length() < OPERATION_WIDTH) {
-                LOGGER.error("Invalid transfer frame length from agent session {}: {}", session.sessionId, data.length());
+                LOGGER.error("Invalid transfer frame length from agent link {}: {}", link.linkId, data.length());
                 return;
             }
+            dispatchStreamFrame(link, operationType, MessageUtil.getRequestId(data), MessageUtil.getPayload(data));
+        } catch (Exception ex) {
+            LOGGER.error("Error processing agent frame", ex);
+        }
+    }
+
+    private void dispatchStreamFrame(AgentLink link, OperationType operationType, long requestId, Buffer payload) {
+        TunnelLinkerVerticle owner = shared.owner(requestId);
+        if (owner == null) {
+            LOGGER.warn("Request context not found, closed, or stale: {}", requestId);
+            return;
+        }
+        if (owner == this) {
+            handleStreamFrame(link, operationType, requestId, payload);
+        } else {
+            owner.context.runOnContext(v -> owner.handleStreamFrame(link, operationType, requestId, payload));
+        }
+    }
+
+    private void handleStreamFrame(AgentLink link, OperationType operationType, long requestId, Buffer payload) {
+        RequestContext context = pendingRequests.get(requestId);
+        if (context == null || context.closed || context.link != link || !link.session.active) {
+            LOGGER.warn("Request context not found, closed, or stale: {}", requestId);
+            return;
+        }
 
-            String requestId = MessageUtil.getRequestId(data);
-            Buffer payload = MessageUtil.getPayload(data);
-            RequestContext context = pendingRequests.get(requestId);
-            if (context == null || context.closed || !context.sessionId.equals(session.sessionId) || !session.active) {
-                LOGGER.warn("Request context not found, closed, or stale: {}", requestId);
+        if (operationType == OperationType.DATA_DEFLATE) {
+            long start = System.nanoTime();
+            Buffer inflated;
+            try {
+                inflated = MessageUtil.inflate(payload, link.maxFrameSize);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.error("Invalid compressed data from agent link {} for request {}", link.linkId, requestId, ex);
+                RequestContext removed = cleanupRequest(requestId, true);
+                if (removed != null) {
+                    removed.socket.close();
+                }
                 return;
             }
+            compressionCounters.recordCompressed(inflated.length(), payload.length(), System.nanoTime() - start);
+            payload = inflated;
+            operationType = OperationType.DATA;
+        }
 
+        try {
             switch (operationType) {
                 case DATA:
+                    context.lastActiveAt = idleWheel.now();
+                    context.receivedBytes += payload.length();
                     context.socket.write(payload);
                     LOGGER.debug("Forwarded {} bytes to user for request {}", payload.length(), requestId);
+                    sendWindowUpdate(context, context.window.received(payload.length(), !context.socket.writeQueueFull()));
+                    break;
+                case WINDOW_UPDATE:
+                    if (payload.length() < 4) {
+                        LOGGER.error("Invalid window update payload length from agent link {}: {}", link.linkId, payload.length());
+                        break;
+                    }
+                    if (context.replay != null) {
+                        context.replay.ack(payload.getInt(0));
+                    }
+                    if (context.window.grant(payload.getInt(0))) {
+                        context.socket.resume();
+                    }
                     break;
                 case CLOSE:
                     RequestContext removed = cleanupRequest(requestId, false);
@@ -254,94 +473,423 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
                         LOGGER.debug("Closed user connection: {}", requestId);
                     }
                     break;
+                case CONNECT_OK:
+                    connectCounters.recordSucceeded();
+                    LOGGER.debug("Agent connected target service for request {}", requestId);
+                    break;
+                case CONNECT_FAIL:
+                    ConnectFailReason reason = payload.length() < 1
+                            ? ConnectFailReason.UNKNOWN
+                            : ConnectFailReason.fromCode(payload.getByte(0));
+                    connectCounters.recordFailed(reason);
+                    context.closed = true;
+                    cleanupRequest(requestId, false);
+                    context.socket.close();
+                    LOGGER.warn("Agent failed to connect target service for request {}: {}", requestId, reason);
+                    break;
                 default:
-                    LOGGER.warn("Unknown op code {} from agent session {}", operationType, session.sessionId);
+                    LOGGER.warn("Unknown op code {} from agent link {}", operationType, link.linkId);
             }
         } catch (Exception ex) {
             LOGGER.error("Error processing agent frame", ex);
         }
     }
 
-    private void handleAuth(AgentSession session, Buffer data) {
+    // PING 的 payload 为发送时的 nanoTime，只有与最近一次 PING 匹配的 PONG 用于计算往返时延
+    private void handlePong(AgentLink link, Buffer payload) {
+        long rttMicros = -1;
+        if (link.pingSentAt != 0 && payload.length() == Long.BYTES && payload.getLong(0) == link.pingSentAt) {
+            rttMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - link.pingSentAt);
+            link.pingSentAt = 0;
+        }
+        touchLink(link, rttMicros);
+    }
+
+    private void touchLink(AgentLink link, long rttMicros) {
+        link.lastSeenAt = Instant.now();
+        if (link.session != null) {
+            link.session.lastSeenAt = link.lastSeenAt;
+            if (rttMicros >= 0) {
+                runtimeRegistry.recordHeartbeat(tunnel, link.session.sessionId, rttMicros);
+            } else {
+                runtimeRegistry.touchAgent(tunnel, link.session.sessionId);
+            }
+        }
+    }
+
+    private void handleAuth(AgentLink link, Buffer data) {
         JsonObject authPayload;
         try {
             authPayload = MessageUtil.getControlPayload(data);
         } catch (Exception ex) {
-            rejectAuth(session);
+            rejectAuth(link);
             return;
         }
         String token = authPayload.getString("token");
         String agentName = authPayload.getString("agentName");
         int version = authPayload.getInteger("version", -1);
+        int streamWindow = StreamWindow.negotiate(authPayload.getInteger("window", 0));
+        // 未携带 linkGroup 的 agent 每条连接各自成为一个会话
+        String linkGroup = authPayload.getString("linkGroup", link.linkId);
+        boolean batch = authPayload.getBoolean("batch", false);
+        int maxFrameSize = FrameChunker.negotiate(authPayload.getInteger("maxFrameSize", 0), tunnel.options().maxFrameSize());
+        boolean compression = tunnel.options().compression()
+                && authPayload.getJsonArray("compression", new JsonArray()).contains(COMPRESSION_DEFLATE);
+        boolean connectAck = authPayload.getBoolean("connectAck", false);
+        int weight = Math.clamp(authPayload.getInteger("weight", 1), 1, MAX_WEIGHT);
+        boolean standby = authPayload.getBoolean("standby", false);
+        boolean resume = authPayload.getBoolean("resume", false);
+        String resumeTicket = authPayload.getString("resumeTicket");
+        String resumeLink = authPayload.getString("resumeLink");
 
         if (version != PROTOCOL_VERSION || agentName == null || agentName.isBlank()) {
-            rejectAuth(session);
+            rejectAuth(link);
             return;
         }
 
-        vertx.executeBlocking(() -> tunnel.verifyToken(token), false)
+        link.batch = batch;
+        link.maxFrameSize = maxFrameSize;
+        link.compression = compression;
+        link.connectAck = connectAck;
+        SocketAddress remoteAddress = link.socket.remoteAddress();
+        String remoteHost = remoteAddress == null ? "" : remoteAddress.host();
+        Runnable verifyToken = () -> authenticator.verify(context, tunnel, token, remoteHost)
                 .onSuccess(verified -> {
-                    if (session.webSocket.isClosed() || session.authenticated) {
+                    if (link.socket.isClosed() || link.authenticated) {
                         return;
                     }
                     if (!verified) {
-                        rejectAuth(session);
+                        rejectAuth(link);
                         return;
                     }
-                    acceptAuth(session, agentName);
+                    acceptAuth(link, agentName, linkGroup, streamWindow, weight, standby, resume);
                 })
-                .onFailure(ex -> rejectAuth(session));
+                .onFailure(ex -> {
+                    LOGGER.warn("FRP Agent auth rejected for link {} from {}: {}", link.linkId, remoteHost, ex.getMessage());
+                    rejectAuth(link);
+                });
+        if (resumeTicket == null || resumeLink == null) {
+            verifyToken.run();
+            return;
+        }
+        tryResume(link, agentName, resumeTicket, resumeLink,
+                resumeOffsets(authPayload.getJsonArray("resumeStreams", new JsonArray())), verifyToken);
     }
 
-    private void acceptAuth(AgentSession session, String agentName) {
-        vertx.cancelTimer(session.authTimerId);
-        session.agentName = agentName;
-        session.authenticated = true;
-        session.active = true;
-        session.connectedAt = Instant.now();
-        session.lastSeenAt = session.connectedAt;
+    // 票据匹配且旧链路仍在等待恢复时跳过 token 校验，接管旧链路上的用户连接；否则按普通鉴权处理
+    private void tryResume(AgentLink link, String agentName, String ticket, String previousLinkId,
+                           Map<Long, Long> offsets, Runnable fallback) {
+        AgentLink previous = shared.agentLinks.get(previousLinkId);
+        if (previous != null && previous.session != null && previous.session.matchesTicket(ticket)) {
+            // agent 先于 server 发现旧链路断开：先在旧链路所属实例上按断开处理，再回到本实例恢复
+            previous.owner.context.runOnContext(v -> {
+                closeLink(previous.socket);
+                previous.owner.handleLinkClosed(previous);
+                context.runOnContext(x -> tryResume(link, agentName, ticket, previousLinkId, offsets, fallback));
+            });
+            return;
+        }
+        AgentLink detached = shared.detachedLinks.get(previousLinkId);
+        if (link.socket.isClosed() || link.authenticated) {
+            return;
+        }
+        if (detached == null || !detached.session.matchesTicket(ticket) || !detached.session.agentName.equals(agentName)
+                || !shared.detachedLinks.remove(previousLinkId, detached)) {
+            LOGGER.info("Resumption of agent link {} not possible, falling back to token auth", previousLinkId);
+            fallback.run();
+            return;
+        }
+        resumeLink(link, detached, offsets);
+    }
+
+    private static Map<Long, Long> resumeOffsets(JsonArray streams) {
+        Map<Long, Long> offsets = new HashMap<>();
+        for (int i = 0; i < streams.size(); i++) {
+            JsonArray stream = streams.getJsonArray(i);
+            offsets.put(stream.getLong(0), stream.getLong(1));
+        }
+        return offsets;
+    }
+
+    private void resumeLink(AgentLink link, AgentLink detached, Map<Long, Long> offsets) {
+        vertx.cancelTimer(link.authTimerId);
+        vertx.cancelTimer(detached.resumeTimerId);
+        link.authenticated = true;
+        link.lastSeenAt = Instant.now();
+
+        AgentSession session = detached.session;
+        boolean reactivated = false;
+        synchronized (shared) {
+            link.session = session;
+            session.links.add(link);
+            session.detachedLinks.remove(detached);
+            if (session.suspended) {
+                session.suspended = false;
+                reactivated = true;
+                if (session.standby) {
+                    shared.standbySessions = append(shared.standbySessions, session);
+                } else if (!session.draining && (shared.balancer != null || shared.activeSessions.isEmpty())) {
+                    shared.addSession(session);
+                } else {
+                    // 挂起期间已有其他 agent 接管，恢复的会话只服务原有连接
+                    session.draining = true;
+                }
+            }
+        }
+        session.lastSeenAt = link.lastSeenAt;
+        if (reactivated) {
+            runtimeRegistry.markAgentResumed(tunnel, session.sessionId, session.draining
+                    ? TunnelRuntimeRegistry.AgentState.DRAINING
+                    : session.standby ? TunnelRuntimeRegistry.AgentState.STANDBY : TunnelRuntimeRegistry.AgentState.ACTIVE);
+        }
+
+        sendAuthOk(link, session, true);
+        shared.forEachInstance(instance -> instance.resumeRequests(detached, link, offsets));
+        LOGGER.info("FRP Agent link {} resumed session {} as link {} with {} streams",
+                detached.linkId, session.sessionId, link.linkId, offsets.size());
+    }
+
+    private void resumeRequests(AgentLink detached, AgentLink link, Map<Long, Long> offsets) {
+        LongObjectHashMap<RequestContext> streams = linkStreams.remove(detached);
+        if (streams != null) {
+            LongObjectHashMap<RequestContext> lost = new LongObjectHashMap<>();
+            for (RequestContext context : streams.values()) {
+                Long offset = offsets.get(context.requestId);
+                if (offset == null || !context.replay.ackTo(offset)) {
+                    lost.put(context.requestId, context);
+                } else {
+                    reattachRequest(context, detached, link);
+                }
+            }
+            closeRequests(lost);
+        }
+        // agent 仍持有但 server 侧已经关闭的连接
+        for (long requestId : offsets.keySet()) {
+            if (shared.owner(requestId) == this && !pendingRequests.containsKey(requestId)) {
+                batcher(link).operation(requestId, OperationType.CLOSE);
+            }
+        }
+        updateActiveConnections(link.session);
+        AgentSession session = link.session;
+        if (session.draining && session.streams.get() <= 0) {
+            endSession(session);
+        }
+    }
+
+    private void reattachRequest(RequestContext context, AgentLink detached, AgentLink link) {
+        long requestId = context.requestId;
+        context.link = link;
+        context.detached = false;
+        context.lastActiveAt = idleWheel.now();
+        detached.streams.decrementAndGet();
+        link.streams.incrementAndGet();
+        linkStreams.computeIfAbsent(link, key -> new LongObjectHashMap<>()).put(requestId, context);
+
+        FrameBatcher batcher = batcher(link);
+        // 本端的接收偏移同时归还了此前挂起的信用
+        batcher.resume(requestId, context.receivedBytes);
+        context.window.discardPendingAck();
+        context.replay.forEachUnacked(data -> FrameChunker.forEachChunk(data, link.maxFrameSize,
+                chunk -> batcher.data(requestId, chunk)));
+        if (context.userClosed) {
+            context.closed = true;
+            cleanupRequest(requestId, true);
+            return;
+        }
+        if (context.window.resume(context.replay.unacked())) {
+            context.socket.resume();
+        }
+    }
+
+    private void acceptAuth(AgentLink link, String agentName, String linkGroup, int streamWindow, int weight,
+                            boolean standby, boolean resume) {
+        vertx.cancelTimer(link.authTimerId);
+        link.authenticated = true;
+        link.lastSeenAt = Instant.now();
+
+        AgentSession session;
+        AgentSession replaced = null;
+        boolean created = false;
+        // 不同实例上的链路可能同时完成鉴权，会话的创建、替换和加入需要互斥
+        synchronized (shared) {
+            session = shared.joinableSession(agentName, linkGroup);
+            if (session == null && standby && !shared.activeSessions.isEmpty()) {
+                replaced = shared.standbySession(agentName);
+                if (replaced != null) {
+                    shared.removeSession(replaced);
+                    replaced.active = false;
+                    shared.releaseOrdinal(replaced);
+                }
+                session = shared.newSession(agentName, linkGroup, streamWindow, weight, link.scope);
+                session.standby = true;
+                shared.standbySessions = append(shared.standbySessions, session);
+                created = true;
+            } else if (session == null) {
+                replaced = shared.replaceableSession(agentName);
+                if (replaced != null) {
+                    shared.removeSession(replaced);
+                    // 排空期间旧会话仍服务已有连接，只是不再接收新连接
+                    if (tunnel.options().drainTimeout() > 0 && replaced.streams.get() > 0) {
+                        replaced.draining = true;
+                    } else {
+                        replaced.active = false;
+                        shared.releaseOrdinal(replaced);
+                    }
+                }
+                session = shared.newSession(agentName, linkGroup, streamWindow, weight, link.scope);
+                shared.addSession(session);
+                created = true;
+            }
+            link.session = session;
+            session.links.add(link);
+        }
+        session.lastSeenAt = link.lastSeenAt;
+        // 重发依赖流控确认来限制缓冲，未协商窗口的会话不支持恢复
+        if (created && resume && tunnel.options().resumeTimeout() > 0 && streamWindow > 0) {
+            session.resumeTicket = newResumeTicket();
+        }
+
+        if (replaced != null) {
+            replaceOldSession(replaced, session);
+        }
+        if (created) {
+            runtimeRegistry.markAgentOnline(tunnel, agentName, session.sessionId, session.weight,
+                    session.standby ? TunnelRuntimeRegistry.AgentState.STANDBY : TunnelRuntimeRegistry.AgentState.ACTIVE);
+        }
+
+        sendAuthOk(link, session, false);
+        LOGGER.info("FRP Agent authenticated for tunnel {}: agentName={}, sessionId={}, linkId={}, links={}, sessions={}, standby={}",
+                tunnel.name(), agentName, session.sessionId, link.linkId, session.links.size(), shared.activeSessions.size(),
+                session.standby);
+    }
 
-        AgentSession oldSession = activeSession;
-        if (oldSession != null && oldSession != session) {
-            replaceOldSession(oldSession, session);
+    private void sendAuthOk(AgentLink link, AgentSession session, boolean resumed) {
+        JsonObject payload = new JsonObject()
+                .put("version", PROTOCOL_VERSION)
+                .put("sessionId", session.sessionId)
+                .put("linkId", link.linkId)
+                .put("window", session.streamWindow)
+                .put("batch", link.batch)
+                .put("maxFrameSize", link.maxFrameSize)
+                .put("compression", link.compression ? COMPRESSION_DEFLATE : COMPRESSION_NONE)
+                .put("connectAck", link.connectAck)
+                .put("priority", tunnel.options().priority())
+                .put("standby", session.standby);
+        if (link.mux != null) {
+            payload.put("tunnel", tunnel.name());
         }
+        if (session.resumeTicket != null) {
+            payload.put("resumeTicket", session.resumeTicket)
+                    .put("resumeTimeout", tunnel.options().resumeTimeout())
+                    .put("resumed", resumed);
+        }
+        link.socket.writeMessage(MessageUtil.buildControlMessage(OperationType.AUTH_OK,
+                payload.put("message", "ok")));
+    }
 
-        activeSession = session;
-        runtimeRegistry.markAgentOnline(tunnel, agentName, session.sessionId);
-        session.webSocket.writeBinaryMessage(MessageUtil.buildControlMessage(
-                OperationType.AUTH_OK,
-                new JsonObject()
-                        .put("version", PROTOCOL_VERSION)
-                        .put("sessionId", session.sessionId)
-                        .put("message", "ok")
-        ));
-        LOGGER.info("FRP Agent authenticated for tunnel {}: agentName={}, sessionId={}",
-                tunnel.name(), agentName, session.sessionId);
+    private static String newResumeTicket() {
+        byte[] ticket = new byte[32];
+        RANDOM.nextBytes(ticket);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ticket);
     }
 
-    private void rejectAuth(AgentSession session) {
-        LOGGER.warn("FRP Agent auth failed for tunnel {} session {}", tunnel.name(), session.sessionId);
-        session.webSocket.writeBinaryMessage(MessageUtil.buildControlMessage(
-                OperationType.AUTH_FAIL,
-                new JsonObject().put("version", PROTOCOL_VERSION).put("message", "auth failed")
-        )).onComplete(v -> closeWebSocket(session.webSocket));
+    private void rejectAuth(AgentLink link) {
+        LOGGER.warn("FRP Agent auth failed for tunnel {} link {}", tunnel.name(), link.linkId);
+        JsonObject payload = new JsonObject().put("version", PROTOCOL_VERSION).put("message", "auth failed");
+        if (link.mux != null) {
+            // 多 tunnel 链路上只移除本 tunnel，其余 tunnel 不受影响
+            link.socket.writeMessage(MessageUtil.buildControlMessage(OperationType.AUTH_FAIL,
+                    payload.put("tunnel", tunnel.name())));
+            link.mux.detach(link.scope);
+            handleLinkClosed(link);
+            return;
+        }
+        link.socket.writeMessage(MessageUtil.buildControlMessage(OperationType.AUTH_FAIL, payload))
+                .onComplete(v -> closeLink(link.socket));
     }
 
     private void replaceOldSession(AgentSession oldSession, AgentSession newSession) {
+        if (oldSession.draining) {
+            LOGGER.warn("Draining tunnel {} agent session old={} with {} streams for up to {}s, new={}",
+                    tunnel.name(), oldSession.sessionId, oldSession.streams.get(),
+                    tunnel.options().drainTimeout(), newSession.sessionId);
+            runtimeRegistry.markAgentDraining(tunnel, oldSession.sessionId);
+            oldSession.drainTimerId = vertx.setTimer(tunnel.options().drainTimeout() * 1000L, id -> {
+                LOGGER.warn("Drain deadline reached for agent session {}, {} streams left",
+                        oldSession.sessionId, oldSession.streams.get());
+                endSession(oldSession);
+            });
+            // 旧连接可能在设置排空前已全部结束
+            if (oldSession.streams.get() <= 0) {
+                endSession(oldSession);
+            }
+            return;
+        }
         LOGGER.warn("Replacing tunnel {} agent session old={}, new={}",
                 tunnel.name(), oldSession.sessionId, newSession.sessionId);
-        oldSession.active = false;
-        closeRequestsForSession(oldSession.sessionId);
-        closeWebSocket(oldSession.webSocket);
+        endSession(oldSession);
+    }
+
+    // 排空结束时可能在多个实例上同时触发，只执行一次
+    private void endSession(AgentSession session) {
+        if (!session.ended.compareAndSet(false, true)) {
+            return;
+        }
+        vertx.cancelTimer(session.drainTimerId);
+        session.active = false;
+        shared.releaseOrdinal(session);
+        for (AgentLink detached : session.detachedLinks) {
+            shared.detachedLinks.remove(detached.linkId, detached);
+        }
+        shared.forEachInstance(instance -> instance.closeRequestsForSession(session));
+        for (AgentLink link : session.links) {
+            closeLink(link.socket);
+        }
+        runtimeRegistry.markAgentOffline(tunnel, session.sessionId);
+    }
+
+    private void releaseSessionStream(AgentSession session) {
+        if (session.streams.decrementAndGet() <= 0) {
+            if (session.draining) {
+                LOGGER.info("Agent session {} drained", session.sessionId);
+                endSession(session);
+            }
+            shared.releaseOrdinal(session);
+        }
     }
 
-    private void handleUserData(String requestId, Buffer data) {
+    // 返回 null 表示按原样发送
+    private Buffer compress(RequestContext context, Buffer data) {
+        if (!context.compressor.enabled()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Buffer compressed = context.compressor.compress(data);
+        long nanos = System.nanoTime() - start;
+        if (compressed == null) {
+            compressionCounters.recordSkipped(data.length(), nanos);
+        } else {
+            compressionCounters.recordCompressed(data.length(), compressed.length(), nanos);
+        }
+        return compressed;
+    }
+
+    private void handleUserData(long requestId, Buffer data) {
         RequestContext context = pendingRequests.get(requestId);
         if (context == null || context.closed) {
             return;
         }
-        AgentSession session = authenticatedSession(context.sessionId);
-        if (session == null) {
+        context.lastActiveAt = idleWheel.now();
+        if (context.detached) {
+            // 链路恢复后随重发一起发出
+            context.replay.append(data);
+            if (!context.window.consume(data.length())) {
+                context.socket.pause();
+            }
+            return;
+        }
+        AgentLink link = activeLink(context);
+        if (link == null) {
             cleanupRequest(requestId, false);
             context.socket.close();
             LOGGER.error("No active agent while forwarding data for {}", requestId);
@@ -349,21 +897,65 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
         }
 
         try {
-            session.webSocket.writeBinaryMessage(MessageUtil.buildDataMessage(requestId, data));
-            LOGGER.debug("Forwarded {} bytes to agent {} for request {}",
-                    data.length(), session.sessionId, requestId);
+            if (!context.connectSent) {
+                if (!connectOrClose(context, data)) {
+                    return;
+                }
+            } else {
+                Buffer compressed = compress(context, data);
+                if (compressed != null) {
+                    batcher(link).deflatedData(requestId, compressed);
+                } else {
+                    batcher(link).data(requestId, data);
+                }
+            }
+            if (context.replay != null) {
+                context.replay.append(data);
+            }
+            LOGGER.debug("Forwarded {} bytes to agent link {} for request {}",
+                    data.length(), link.linkId, requestId);
+            if (!context.window.consume(data.length())) {
+                context.socket.pause();
+                LOGGER.debug("Paused user connection {} until agent grants more window", requestId);
+            }
         } catch (Exception ex) {
-            LOGGER.error("Failed to forward data to agent {}", session.sessionId, ex);
+            LOGGER.error("Failed to forward data to agent link {}", link.linkId, ex);
         }
     }
 
-    private boolean forwardRequestToAgent(RequestContext context) {
-        AgentSession session = authenticatedSession(context.sessionId);
-        if (session == null) {
+    private void sendWindowUpdate(RequestContext context, int increment) {
+        if (increment <= 0 || context.closed) {
+            return;
+        }
+        AgentLink link = activeLink(context);
+        if (link == null) {
+            return;
+        }
+        try {
+            batcher(link).windowUpdate(context.requestId, increment);
+        } catch (Exception ex) {
+            LOGGER.error("Failed to send window update to agent link {}", link.linkId, ex);
+        }
+    }
+
+    private boolean connectOrClose(RequestContext context, Buffer earlyData) {
+        if (forwardRequestToAgent(context, earlyData)) {
+            return true;
+        }
+        cleanupRequest(context.requestId, false);
+        context.socket.close();
+        LOGGER.error("No available authenticated agent for request: {}", context.requestId);
+        return false;
+    }
+
+    private boolean forwardRequestToAgent(RequestContext context, Buffer earlyData) {
+        AgentLink link = activeLink(context);
+        if (link == null) {
             return false;
         }
         try {
-            session.webSocket.writeBinaryMessage(MessageUtil.buildOperationMessage(context.requestId, OperationType.CONNECT));
+            context.connectSent = true;
+            batcher(link).connect(context.requestId, earlyData);
             return true;
         } catch (Exception ex) {
             LOGGER.error("Failed to notify agent about new request", ex);
@@ -372,105 +964,307 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
     }
 
     private void sendCloseSignalToAgent(RequestContext context) {
-        AgentSession session = authenticatedSession(context.sessionId);
-        if (session == null) {
+        AgentLink link = activeLink(context);
+        if (link == null || !context.connectSent) {
             return;
         }
         try {
-            session.webSocket.writeBinaryMessage(MessageUtil.buildOperationMessage(context.requestId, OperationType.CLOSE));
-            LOGGER.debug("Sent CLOSE signal to agent {} for request {}", session.sessionId, context.requestId);
+            batcher(link).operation(context.requestId, OperationType.CLOSE);
+            LOGGER.debug("Sent CLOSE signal to agent link {} for request {}", link.linkId, context.requestId);
         } catch (Exception ex) {
-            LOGGER.error("Failed to send close signal to agent {}", session.sessionId, ex);
+            LOGGER.error("Failed to send close signal to agent link {}", link.linkId, ex);
         }
     }
 
-    private RequestContext cleanupRequest(String requestId, boolean notifyAgent) {
+    private RequestContext cleanupRequest(long requestId, boolean notifyAgent) {
         RequestContext context = pendingRequests.remove(requestId);
         if (context == null) {
             return null;
         }
-        vertx.cancelTimer(context.timeoutId);
+        idleWheel.cancel(context);
+        releaseStream(context);
         if (notifyAgent) {
             sendCloseSignalToAgent(context);
         }
-        updateActiveConnections(context.sessionId);
+        updateActiveConnections(context.session);
         return context;
     }
 
-    private void closeRequestsForSession(String sessionId) {
-        pendingRequests.entrySet().removeIf(entry -> {
-            RequestContext context = entry.getValue();
-            if (!context.sessionId.equals(sessionId)) {
+    private void expireRequest(RequestContext context) {
+        if (cleanupRequest(context.requestId, true) == null) {
+            return;
+        }
+        context.closed = true;
+        context.socket.close();
+        LOGGER.info("Request {} closed by {}", context.requestId,
+                context.lifetimeDeadline() <= idleWheel.now() ? "max lifetime" : "idle timeout");
+    }
+
+    private static long clock() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    // 序列回绕后跳过本实例上仍在使用的 requestId
+    private long nextRequestId(AgentSession session) {
+        long requestId;
+        do {
+            requestId = session.nextRequestId(instanceIndex);
+        } while (pendingRequests.containsKey(requestId));
+        return requestId;
+    }
+
+    private void registerStream(RequestContext context) {
+        if (pendingRequests.containsKey(context.requestId)) {
+            throw new IllegalStateException("requestId " + context.requestId + " is already in use");
+        }
+        pendingRequests.put(context.requestId, context);
+        linkStreams.computeIfAbsent(context.link, link -> new LongObjectHashMap<>()).put(context.requestId, context);
+        context.link.streams.incrementAndGet();
+        context.session.streams.incrementAndGet();
+    }
+
+    // 调用方负责从 pendingRequests 中移除
+    private void releaseStream(RequestContext context) {
+        LongObjectHashMap<RequestContext> streams = linkStreams.get(context.link);
+        if (streams != null && streams.remove(context.requestId) != null && streams.isEmpty()) {
+            linkStreams.remove(context.link);
+        }
+        context.link.streams.decrementAndGet();
+        releaseSessionStream(context.session);
+    }
+
+    private void closeRequestsForSession(AgentSession session) {
+        List<LongObjectHashMap<RequestContext>> tables = new ArrayList<>();
+        linkStreams.entrySet().removeIf(entry -> {
+            if (entry.getKey().session != session) {
                 return false;
             }
-            vertx.cancelTimer(context.timeoutId);
-            context.closed = true;
-            context.socket.close();
+            tables.add(entry.getValue());
             return true;
         });
-        updateActiveConnections(sessionId);
+        tables.forEach(this::closeRequests);
     }
 
-    private AgentSession authenticatedSession() {
-        AgentSession session = activeSession;
-        if (session == null || !session.authenticated || !session.active || session.webSocket.isClosed()) {
-            return null;
+    private void closeRequestsForLink(AgentLink link) {
+        LongObjectHashMap<RequestContext> streams = linkStreams.remove(link);
+        if (streams != null) {
+            closeRequests(streams);
+        }
+        if (link.session != null) {
+            updateActiveConnections(link.session);
+        }
+    }
+
+    private void detachRequestsForLink(AgentLink link) {
+        LongObjectHashMap<RequestContext> streams = linkStreams.get(link);
+        if (streams == null) {
+            return;
+        }
+        LongObjectHashMap<RequestContext> unsent = new LongObjectHashMap<>();
+        for (RequestContext context : streams.values()) {
+            if (context.connectSent) {
+                context.detached = true;
+                context.socket.pause();
+            } else {
+                unsent.put(context.requestId, context);
+            }
+        }
+        for (long requestId : unsent.keySet()) {
+            streams.remove(requestId);
+        }
+        if (streams.isEmpty()) {
+            linkStreams.remove(link);
+        }
+        closeRequests(unsent);
+        updateActiveConnections(link.session);
+    }
+
+    private void closeRequests(LongObjectHashMap<RequestContext> streams) {
+        for (RequestContext context : streams.values()) {
+            pendingRequests.remove(context.requestId);
+            idleWheel.cancel(context);
+            context.closed = true;
+            context.link.streams.decrementAndGet();
+            releaseSessionStream(context.session);
+            context.socket.close();
         }
-        return session;
     }
 
-    private AgentSession authenticatedSession(String sessionId) {
-        AgentSession session = authenticatedSession();
-        if (session == null || !session.sessionId.equals(sessionId)) {
+    private AgentLink activeLink(RequestContext context) {
+        AgentLink link = context.link;
+        if (context.detached || !context.session.active || link.socket.isClosed()) {
             return null;
         }
-        return session;
+        return link;
+    }
+
+    // 每个实例一个出口，只在本实例的 event loop 上使用
+    private FrameBatcher batcher(AgentLink link) {
+        FrameBatcher batcher = link.batchers[instanceIndex];
+        if (batcher == null) {
+            LinkSocket socket = link.socket;
+            int priorityClass = FrameScheduler.priorityClass(tunnel.options().priority());
+            batcher = new FrameBatcher(context, frame -> {
+                if (!socket.isClosed()) {
+                    socket.writeMessage(frame);
+                }
+            }, link.batch, FrameBatcher.writable(socket), requestId -> priorityClass);
+            link.batchers[instanceIndex] = batcher;
+        }
+        return batcher;
     }
 
-    private long setupHeartbeat(AgentSession session) {
-        return vertx.setPeriodic(HEARTBEAT_INTERVAL, id -> {
-            if (session.webSocket.isClosed()) {
+    // 静默断开的链路上关闭握手或 FIN 不会到达，心跳超时直接按链路断开处理
+    private long setupHeartbeat(AgentLink link) {
+        long interval = TimeUnit.SECONDS.toMillis(tunnel.options().heartbeatInterval());
+        long timeout = interval * tunnel.options().heartbeatMisses();
+        return vertx.setPeriodic(interval, id -> {
+            if (link.socket.isClosed()) {
+                vertx.cancelTimer(id);
+                return;
+            }
+            Instant lastSeenAt = link.lastSeenAt;
+            if (lastSeenAt != null && lastSeenAt.plusMillis(timeout).isBefore(Instant.now())) {
+                LOGGER.warn("Agent link {} missed heartbeats since {}, closing", link.linkId, lastSeenAt);
                 vertx.cancelTimer(id);
+                closeLink(link.socket);
+                handleLinkClosed(link);
                 return;
             }
             try {
-                session.webSocket.writePing(Buffer.buffer("ping-" + System.currentTimeMillis()));
-                LOGGER.trace("Sent PING to agent session {}", session.sessionId);
+                link.pingSentAt = System.nanoTime();
+                link.socket.writePing(Buffer.buffer().appendLong(link.pingSentAt));
+                LOGGER.trace("Sent PING to agent link {}", link.linkId);
             } catch (Exception ex) {
-                LOGGER.error("Heartbeat failed for agent session {}", session.sessionId, ex);
-                closeWebSocket(session.webSocket);
+                LOGGER.error("Heartbeat failed for agent link {}", link.linkId, ex);
+                closeLink(link.socket);
             }
         });
     }
 
-    private void handleSessionClosed(AgentSession session) {
-        vertx.cancelTimer(session.authTimerId);
-        vertx.cancelTimer(session.heartbeatTimerId);
-        session.active = false;
-        agentSessions.remove(session.sessionId);
-        if (activeSession == session) {
-            activeSession = null;
-            closeRequestsForSession(session.sessionId);
+    private void handleLinkClosed(AgentLink link) {
+        if (link.closed) {
+            return;
+        }
+        link.closed = true;
+        vertx.cancelTimer(link.authTimerId);
+        vertx.cancelTimer(link.heartbeatTimerId);
+        shared.agentLinks.remove(link.linkId);
+        AgentSession session = link.session;
+        if (session == null) {
+            LOGGER.warn("FRP Agent disconnected before auth: {}", link.linkId);
+            return;
+        }
+
+        // 已结束的会话和停止中的 tunnel 不再等待恢复
+        boolean resumable = session.resumeTicket != null && session.active && !stopping;
+        boolean sessionEnded = false;
+        boolean suspended = false;
+        synchronized (shared) {
+            session.links.remove(link);
+            if (resumable) {
+                session.detachedLinks.add(link);
+            }
+            if (session.links.isEmpty()) {
+                shared.removeSession(session);
+                if (resumable) {
+                    suspended = !session.suspended;
+                    session.suspended = true;
+                } else {
+                    session.active = false;
+                    shared.releaseOrdinal(session);
+                    sessionEnded = true;
+                }
+            }
+        }
+        if (resumable) {
+            shared.detachedLinks.put(link.linkId, link);
+            shared.forEachInstance(instance -> instance.detachRequestsForLink(link));
+            link.resumeTimerId = vertx.setTimer(TimeUnit.SECONDS.toMillis(tunnel.options().resumeTimeout()),
+                    id -> expireDetachedLink(link));
+        } else {
+            shared.forEachInstance(instance -> instance.closeRequestsForLink(link));
+        }
+
+        if (sessionEnded) {
+            vertx.cancelTimer(session.drainTimerId);
+            runtimeRegistry.markAgentOffline(tunnel, session.sessionId);
+            promoteStandby();
+        }
+        if (suspended) {
+            runtimeRegistry.markAgentSuspended(tunnel, session.sessionId);
+            promoteStandby();
+        }
+        if (resumable) {
+            LOGGER.warn("FRP Agent link {} of session {} disconnected, waiting up to {}s for resumption",
+                    link.linkId, session.sessionId, tunnel.options().resumeTimeout());
+        } else if (session.links.isEmpty()) {
+            LOGGER.warn("FRP Agent disconnected: {}", session.sessionId);
+        } else {
+            LOGGER.warn("FRP Agent link {} of session {} disconnected, {} links left",
+                    link.linkId, session.sessionId, session.links.size());
+        }
+    }
+
+    private void expireDetachedLink(AgentLink link) {
+        if (!shared.detachedLinks.remove(link.linkId, link)) {
+            return;
+        }
+        shared.forEachInstance(instance -> instance.closeRequestsForLink(link));
+        AgentSession session = link.session;
+        boolean sessionEnded = false;
+        synchronized (shared) {
+            session.detachedLinks.remove(link);
+            if (session.suspended && session.links.isEmpty() && session.detachedLinks.isEmpty()) {
+                session.suspended = false;
+                session.active = false;
+                shared.releaseOrdinal(session);
+                sessionEnded = true;
+            }
+        }
+        LOGGER.warn("FRP Agent link {} of session {} was not resumed within {}s",
+                link.linkId, session.sessionId, tunnel.options().resumeTimeout());
+        if (sessionEnded) {
+            vertx.cancelTimer(session.drainTimerId);
             runtimeRegistry.markAgentOffline(tunnel, session.sessionId);
         }
-        LOGGER.warn("FRP Agent disconnected: {}", session.sessionId);
     }
 
-    private void updateActiveConnections(String sessionId) {
-        AgentSession session = activeSession;
-        if (session == null || !session.sessionId.equals(sessionId)) {
+    private void promoteStandby() {
+        AgentSession promoted = null;
+        synchronized (shared) {
+            if (!shared.activeSessions.isEmpty()) {
+                return;
+            }
+            for (AgentSession session : shared.standbySessions) {
+                if (session.active && !session.links.isEmpty()) {
+                    promoted = session;
+                    break;
+                }
+            }
+            if (promoted == null) {
+                return;
+            }
+            shared.removeSession(promoted);
+            promoted.standby = false;
+            shared.addSession(promoted);
+        }
+        runtimeRegistry.markAgentPromoted(tunnel, promoted.sessionId);
+        LOGGER.warn("Promoted standby agent session {} ({}) for tunnel {}",
+                promoted.sessionId, promoted.agentName, tunnel.name());
+    }
+
+    private void updateActiveConnections(AgentSession session) {
+        if (!session.active) {
             return;
         }
-        int count = (int) pendingRequests.values().stream()
-                .filter(context -> context.sessionId.equals(sessionId))
-                .count();
-        runtimeRegistry.updateActiveConnections(tunnel, sessionId, count);
+        runtimeRegistry.updateActiveConnections(tunnel, session.sessionId, Math.max(0, session.streams.get()));
     }
 
-    private void closeWebSocket(ServerWebSocket webSocket) {
+    private void closeLink(LinkSocket socket) {
         try {
-            if (!webSocket.isClosed()) {
-                webSocket.close();
+            if (!socket.isClosed()) {
+                socket.close();
             }
         } catch (Exception ignore) {
         }
@@ -479,22 +1273,34 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
     @Override
     public void stop(Promise<Void> stopPromise) {
         stopping = true;
-        AgentSession session = activeSession;
-        activeSession = null;
-        if (session != null) {
+        if (endpoint != null) {
+            endpoint.unregister(tunnel.name(), shared.acceptor);
+        }
+        List<AgentSession> sessions = new ArrayList<>();
+        synchronized (shared) {
+            sessions.addAll(shared.activeSessions);
+            sessions.addAll(shared.standbySessions);
+            shared.activeSessions = List.of();
+            shared.standbySessions = List.of();
+        }
+        shared.detachedLinks.clear();
+        for (AgentSession session : sessions) {
+            session.active = false;
             runtimeRegistry.markAgentOffline(tunnel, session.sessionId);
         }
-        for (AgentSession agentSession : new ArrayList<>(agentSessions.values())) {
-            agentSession.active = false;
-            closeWebSocket(agentSession.webSocket);
+        for (AgentLink link : new ArrayList<>(shared.agentLinks.values())) {
+            if (link.owner == this) {
+                shared.agentLinks.remove(link.linkId);
+                closeLink(link.socket);
+            }
         }
-        agentSessions.clear();
+        vertx.cancelTimer(idleWheelTimerId);
         for (RequestContext context : new ArrayList<>(pendingRequests.values())) {
-            vertx.cancelTimer(context.timeoutId);
             context.closed = true;
             context.socket.close();
         }
         pendingRequests.clear();
+        linkStreams.clear();
         updateActiveConnectionsAfterStop();
 
         stopOpenedServers().onComplete(ar -> {
@@ -523,40 +1329,401 @@ public class TunnelLinkerVerticle extends AbstractVerticle {
             futures.add(agentServer.close());
             agentServer = null;
         }
+        if (agentTcpServer != null) {
+            futures.add(agentTcpServer.close());
+            agentTcpServer = null;
+        }
         if (futures.isEmpty()) {
             return Future.succeededFuture();
         }
         return Future.all(futures).mapEmpty();
     }
 
-    private static class AgentSession {
+    private final class MuxMember implements AgentMux.Member {
+        private final AgentLink link;
+
+        MuxMember(AgentLink link) {
+            this.link = link;
+        }
+
+        @Override
+        public void frame(OperationType operationType, long requestId, Buffer payload) {
+            context.runOnContext(v -> {
+                if (link.authenticated) {
+                    dispatchStreamFrame(link, operationType, requestId, payload);
+                }
+            });
+        }
+
+        @Override
+        public void heartbeat(long rttMicros) {
+            context.runOnContext(v -> touchLink(link, rttMicros));
+        }
+
+        @Override
+        public void writable() {
+            link.onWritable();
+        }
+
+        @Override
+        public void closed() {
+            context.runOnContext(v -> handleLinkClosed(link));
+        }
+    }
+
+    /**
+     * 同一 tunnel 各实例共享的状态
+     */
+    private static class SharedState {
+        private final List<TunnelLinkerVerticle> instances = new CopyOnWriteArrayList<>();
+        private final Map<String, AgentLink> agentLinks = new ConcurrentHashMap<>();
+        // 已断开、在 resumeTimeout 内等待 agent 凭票据恢复的链路
+        private final Map<String, AgentLink> detachedLinks = new ConcurrentHashMap<>();
+        // 仍可能持有用户连接的会话，按 session 序号索引，只在 synchronized (this) 中访问
+        private final Map<Integer, AgentSession> ordinals = new HashMap<>();
+        private int lastOrdinal;
+        // 共用 agent 端口转交来的链路轮流分配给各实例
+        private final AtomicInteger nextDispatch = new AtomicInteger();
+        private final AgentEndpoint.Acceptor acceptor = new AgentEndpoint.Acceptor() {
+            @Override
+            public void accept(ServerWebSocket webSocket, Buffer auth) {
+                nextInstance().acceptDispatchedLink(webSocket, auth);
+            }
+
+            @Override
+            public void attach(AgentMux mux, int scope, Buffer auth) {
+                nextInstance().acceptMuxLink(mux, scope, auth);
+            }
+        };
+        // 单 agent 模式下为 null
+        private final LoadBalancer balancer;
+        // 接收新用户连接的会话，不可变快照，在 synchronized (this) 中整体替换
+        private volatile List<AgentSession> activeSessions = List.of();
+        // 已鉴权但不接收流量的备用会话，按接入顺序排列
+        private volatile List<AgentSession> standbySessions = List.of();
+
+        SharedState(Tunnel.TunnelOptions options) {
+            this.balancer = options.multiAgent() ? LoadBalancer.of(options.balance()) : null;
+        }
+
+        TunnelLinkerVerticle nextInstance() {
+            return instances.get(Math.floorMod(nextDispatch.getAndIncrement(), instances.size()));
+        }
+
+        synchronized int register(TunnelLinkerVerticle instance) {
+            instances.add(instance);
+            return instances.size() - 1;
+        }
+
+        TunnelLinkerVerticle owner(long requestId) {
+            int index = AgentSession.instanceIndex(requestId);
+            return index < instances.size() ? instances.get(index) : null;
+        }
+
+        void forEachInstance(Consumer<TunnelLinkerVerticle> action) {
+            for (TunnelLinkerVerticle instance : instances) {
+                if (instance.context == Vertx.currentContext()) {
+                    action.accept(instance);
+                } else {
+                    instance.context.runOnContext(v -> action.accept(instance));
+                }
+            }
+        }
+
+        AgentSession selectSession(String clientHost) {
+            List<AgentSession> sessions = activeSessions;
+            if (sessions.isEmpty()) {
+                return null;
+            }
+            AgentSession session = select(sessions, clientHost);
+            if (usable(session)) {
+                return session;
+            }
+            // 选中的会话刚失效，在其余可用会话中重新选择
+            List<AgentSession> candidates = new ArrayList<>(sessions.size());
+            for (AgentSession candidate : sessions) {
+                if (usable(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+            return candidates.isEmpty() ? null : select(candidates, clientHost);
+        }
+
+        private AgentSession select(List<AgentSession> sessions, String clientHost) {
+            return sessions.size() == 1 || balancer == null ? sessions.getFirst() : balancer.select(sessions, clientHost);
+        }
+
+        private static boolean usable(AgentSession session) {
+            return session.active && !session.links.isEmpty();
+        }
+
+        AgentSession joinableSession(String agentName, String linkGroup) {
+            for (List<AgentSession> sessions : List.of(activeSessions, standbySessions)) {
+                for (AgentSession session : sessions) {
+                    if (session.active && session.joinable(agentName, linkGroup)) {
+                        return session;
+                    }
+                }
+            }
+            return null;
+        }
+
+        AgentSession standbySession(String agentName) {
+            for (AgentSession session : standbySessions) {
+                if (session.agentName.equals(agentName)) {
+                    return session;
+                }
+            }
+            return null;
+        }
+
+        AgentSession replaceableSession(String agentName) {
+            for (AgentSession session : activeSessions) {
+                if (balancer == null || session.agentName.equals(agentName)) {
+                    return session;
+                }
+            }
+            return null;
+        }
+
+        void addSession(AgentSession session) {
+            activeSessions = append(activeSessions, session);
+        }
+
+        // 仍可能持有用户连接的会话的序号不会被复用，否则新旧会话的 requestId 会冲突
+        synchronized AgentSession newSession(String agentName, String linkGroup, int streamWindow, int weight,
+                                             int scope) {
+            int ordinal = lastOrdinal;
+            do {
+                ordinal = (ordinal + 1) & AgentSession.MAX_ORDINAL;
+                if (ordinal == lastOrdinal) {
+                    throw new IllegalStateException("No free session ordinal for tunnel agents");
+                }
+            } while (ordinals.containsKey(ordinal));
+            lastOrdinal = ordinal;
+            AgentSession session = new AgentSession(UUID.randomUUID().toString(), ordinal, agentName, linkGroup,
+                    streamWindow, weight, scope);
+            ordinals.put(ordinal, session);
+            return session;
+        }
+
+        // 两个条件分别由不同线程达成，双方各自检查一次
+        void releaseOrdinal(AgentSession session) {
+            if (session.active || session.streams.get() > 0) {
+                return;
+            }
+            synchronized (this) {
+                ordinals.remove(session.ordinal, session);
+            }
+        }
+
+        boolean removeSession(AgentSession session) {
+            if (activeSessions.contains(session)) {
+                activeSessions = activeSessions.stream().filter(s -> s != session).toList();
+                return true;
+            }
+            if (standbySessions.contains(session)) {
+                standbySessions = standbySessions.stream().filter(s -> s != session).toList();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static List<AgentSession> append(List<AgentSession> sessions, AgentSession session) {
+        List<AgentSession> appended = new ArrayList<>(sessions);
+        appended.add(session);
+        return List.copyOf(appended);
+    }
+
+    /**
+     * 一个已认证的 agent 逻辑会话，可由多条携带相同 linkGroup 的链路组成
+     */
+    private static class AgentSession implements LoadBalancer.Candidate {
+        private static final int MAX_ORDINAL = (1 << 18) - 1;
+
         private final String sessionId;
-        private final ServerWebSocket webSocket;
-        private String agentName;
+        private final int ordinal;
+        // 多 tunnel 链路上本 tunnel 的序号，普通链路为 0
+        private final int scope;
+        private final String agentName;
+        private final String linkGroup;
+        private final int streamWindow;
+        private final int weight;
+        private final List<AgentLink> links = new CopyOnWriteArrayList<>();
+        private final List<AgentLink> detachedLinks = new CopyOnWriteArrayList<>();
+        private final AtomicInteger streams = new AtomicInteger();
+        // 每个实例一个序列，只由对应实例的 event loop 递增
+        private final long[] requestSequences = new long[Tunnel.TunnelOptions.MAX_INSTANCES];
+        private final Instant connectedAt = Instant.now();
+        // 仍服务已有用户连接；排空中的会话已不在 activeSessions 中，但在排空结束前保持 active
+        private volatile boolean active = true;
+        private volatile boolean draining;
+        private volatile boolean standby;
+        // 全部链路已断开，等待 agent 恢复；挂起的会话不在 activeSessions 中，但仍保持 active
+        private volatile boolean suspended;
+        // 未协商恢复时为 null
+        private volatile String resumeTicket;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile long drainTimerId = -1;
+        private volatile Instant lastSeenAt = connectedAt;
+
+        AgentSession(String sessionId, int ordinal, String agentName, String linkGroup, int streamWindow, int weight,
+                     int scope) {
+            this.sessionId = sessionId;
+            this.ordinal = ordinal;
+            this.scope = scope;
+            this.agentName = agentName;
+            this.linkGroup = linkGroup;
+            this.streamWindow = streamWindow;
+            this.weight = weight;
+        }
+
+        @Override
+        public String key() {
+            return agentName;
+        }
+
+        @Override
+        public int weight() {
+            return weight;
+        }
+
+        @Override
+        public int streams() {
+            return streams.get();
+        }
+
+        boolean joinable(String agentName, String linkGroup) {
+            return this.agentName.equals(agentName) && this.linkGroup.equals(linkGroup);
+        }
+
+        boolean matchesTicket(String ticket) {
+            String expected = resumeTicket;
+            return expected != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                    ticket.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * 分配下一个 requestId：最高 8 位为 scope，随后 18 位为 session 序号，再 6 位为接入该请求的实例序号，
+         * 低 32 位为该实例在本 session 内的递增序列。session 序号在仍持有连接的会话之间不重复，
+         * 同一 tunnel 下不同 session、不同实例分配的 requestId 因此不会冲突；多 tunnel 链路据 scope 区分各 tunnel 的请求
+         */
+        long nextRequestId(int instanceIndex) {
+            long sequence = ++requestSequences[instanceIndex];
+            return ((long) scope << 56) | ((long) ordinal << 38) | ((long) instanceIndex << 32)
+                    | (sequence & 0xFFFFFFFFL);
+        }
+
+        static int instanceIndex(long requestId) {
+            return (int) ((requestId >>> 32) & 0x3F);
+        }
+
+        // 优先选择与调用方在同一 event loop 上的链路以免跨线程转发，其次选择承载请求数最少的
+        AgentLink selectLink(TunnelLinkerVerticle local) {
+            AgentLink selected = null;
+            boolean selectedLocal = false;
+            for (AgentLink link : links) {
+                boolean isLocal = link.owner == local;
+                if (selected == null
+                        || (isLocal && !selectedLocal)
+                        || (isLocal == selectedLocal && link.streams.get() < selected.streams.get())) {
+                    selected = link;
+                    selectedLocal = isLocal;
+                }
+            }
+            return selected;
+        }
+    }
+
+    private static class AgentLink {
+        private final String linkId;
+        private final LinkSocket socket;
+        // 接入该链路的实例，链路的帧处理器运行在该实例的 event loop 上
+        private final TunnelLinkerVerticle owner;
+        private final AtomicInteger streams = new AtomicInteger();
+        private final FrameBatcher[] batchers = new FrameBatcher[Tunnel.TunnelOptions.MAX_INSTANCES];
+        private volatile AgentSession session;
+        private volatile boolean batch;
+        private volatile int maxFrameSize = FrameChunker.DEFAULT_MAX_FRAME_SIZE;
+        private volatile boolean compression;
+        private volatile boolean connectAck;
         private boolean authenticated;
-        private boolean active;
-        private Instant connectedAt;
-        private Instant lastSeenAt;
+        private volatile Instant lastSeenAt;
         private long authTimerId;
-        private long heartbeatTimerId;
+        private long heartbeatTimerId = -1;
+        private long resumeTimerId = -1;
+        // 最近一次未收到回复的心跳 PING 的 nanoTime，0 表示没有
+        private long pingSentAt;
+        // 心跳判定失效后已提前按断开处理，之后的 closeHandler 不再重复处理
+        private boolean closed;
+        // 同时接入多个 tunnel 的链路，普通链路为 null
+        private final AgentMux mux;
+        private final int scope;
 
-        AgentSession(String sessionId, ServerWebSocket webSocket) {
-            this.sessionId = sessionId;
-            this.webSocket = webSocket;
+        AgentLink(String linkId, LinkSocket socket, TunnelLinkerVerticle owner) {
+            this(linkId, socket, owner, null, 0);
+        }
+
+        AgentLink(String linkId, LinkSocket socket, TunnelLinkerVerticle owner, AgentMux mux, int scope) {
+            this.linkId = linkId;
+            this.socket = socket;
+            this.owner = owner;
+            this.mux = mux;
+            this.scope = scope;
+        }
+
+        void onWritable() {
+            for (FrameBatcher batcher : batchers) {
+                if (batcher != null) {
+                    batcher.onWritable();
+                }
+            }
         }
     }
 
-    private static class RequestContext {
-        private final String requestId;
-        private final String sessionId;
+    private static class RequestContext extends TimingWheel.Entry {
+        private final long requestId;
+        private final AgentSession session;
+        // 链路恢复后改为接管的新链路
+        private AgentLink link;
         private final NetSocket socket;
-        private long timeoutId;
+        private final StreamWindow window;
+        private final StreamCompressor compressor;
+        // 会话支持恢复时记录已发给 agent 但未确认的数据，否则为 null
+        private final ReplayBuffer replay;
+        private long receivedBytes;
+        private boolean detached;
+        private boolean userClosed;
+        private final long idleTimeoutMillis;
+        private final long lifetimeDeadline;
+        private long lastActiveAt;
+        // CONNECT 是否已发给 agent，开启 earlyData 时 CONNECT 会等待用户首包
+        private boolean connectSent;
         private boolean closed;
 
-        RequestContext(String requestId, String sessionId, NetSocket socket) {
+        RequestContext(long requestId, AgentSession session, AgentLink link, NetSocket socket, StreamWindow window,
+                       Tunnel.TunnelOptions options, long now) {
             this.requestId = requestId;
-            this.sessionId = sessionId;
+            this.session = session;
+            this.link = link;
             this.socket = socket;
+            this.window = window;
+            this.compressor = new StreamCompressor(link.compression);
+            this.replay = session.resumeTicket != null ? new ReplayBuffer() : null;
+            this.idleTimeoutMillis = options.idleTimeout() > 0 ? options.idleTimeout() * 1000L : 0;
+            this.lifetimeDeadline = options.maxLifetime() > 0 ? now + options.maxLifetime() * 1000L : TimingWheel.NO_DEADLINE;
+            this.lastActiveAt = now;
+        }
+
+        long lifetimeDeadline() {
+            return lifetimeDeadline;
+        }
+
+        @Override
+        long deadline() {
+            long idleDeadline = idleTimeoutMillis > 0 ? lastActiveAt + idleTimeoutMillis : TimingWheel.NO_DEADLINE;
+            return Math.min(idleDeadline, lifetimeDeadline);
         }
     }
 }
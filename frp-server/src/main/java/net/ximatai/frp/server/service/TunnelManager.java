@@ -1,9 +1,12 @@
 package net.ximatai.frp.server.service;
 
 import io.vertx.core.Vertx;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.server.config.AgentEndpointConfig;
 import net.ximatai.frp.server.config.FrpServerConfig;
 import net.ximatai.frp.server.config.TokenHash;
 import net.ximatai.frp.server.config.Tunnel;
@@ -21,6 +24,10 @@ public class TunnelManager {
     private final Object lock = new Object();
     private final Map<String, Tunnel.TunnelConfig> tunnels = new LinkedHashMap<>();
     private final Map<String, String> deployments = new LinkedHashMap<>();
+    // 所有 tunnel 共用的 agent 鉴权线程池与缓存，首次部署时创建，应用关闭时释放
+    private AgentAuthenticator authenticator;
+    // 所有 tunnel 共用的 agent 端口，配置开启时在首次部署前启动
+    private AgentEndpoint agentEndpoint;
 
     @Inject
     Vertx vertx;
@@ -37,6 +44,16 @@ public class TunnelManager {
     @Inject
     TunnelTokenService tokenService;
 
+    @PreDestroy
+    void shutdown() {
+        synchronized (lock) {
+            if (authenticator != null) {
+                authenticator.close();
+                authenticator = null;
+            }
+        }
+    }
+
     public void startAll() {
         synchronized (lock) {
             List<Tunnel.TunnelConfig> loaded = tunnelStore.load();
@@ -85,7 +102,8 @@ public class TunnelManager {
                     request.agentPort(),
                     TokenHash.create(token),
                     now,
-                    now
+                    now,
+                    request.options()
             );
             validateNewTunnel(tunnel);
             deployBlocking(tunnel);
@@ -168,7 +186,8 @@ public class TunnelManager {
                     existing.agentPort(),
                     TokenHash.create(token),
                     existing.createdAt(),
-                    Instant.now().toString()
+                    Instant.now().toString(),
+                    existing.options()
             );
             runtimeRegistry.markStatus(existing, TunnelStatus.STOPPING);
             try {
@@ -226,9 +245,12 @@ public class TunnelManager {
     private void deployBlocking(Tunnel.TunnelConfig tunnel) {
         runtimeRegistry.registerTunnel(tunnel);
         runtimeRegistry.markStatus(tunnel, TunnelStatus.STARTING);
-        TunnelLinkerVerticle linker = new TunnelLinkerVerticle(vertx, tunnel, runtimeRegistry);
         try {
-            String deploymentId = vertx.deployVerticle(linker)
+            if (authenticator == null) {
+                authenticator = AgentAuthenticator.create(serverConfig.auth());
+            }
+            String deploymentId = TunnelLinkerVerticle.deploy(vertx, tunnel, runtimeRegistry,
+                            serverConfig.dataPlane().socketTuning(), authenticator, agentEndpoint())
                     .toCompletionStage()
                     .toCompletableFuture()
                     .join();
@@ -240,6 +262,22 @@ public class TunnelManager {
         }
     }
 
+    /**
+     * 共用 agent 端口启动失败时不记录，下次部署 tunnel 时重试
+     */
+    private AgentEndpoint agentEndpoint() {
+        AgentEndpointConfig config = serverConfig.agentEndpoint();
+        if (agentEndpoint == null && config.port() > 0) {
+            int instances = config.instances() > 0 ? config.instances() : Runtime.getRuntime().availableProcessors();
+            agentEndpoint = AgentEndpoint.deploy(vertx, config.port(), instances, serverConfig.dataPlane().socketTuning(),
+                            new AgentEndpoint.Heartbeat(config.heartbeatInterval(), config.heartbeatMisses()))
+                    .toCompletionStage()
+                    .toCompletableFuture()
+                    .join();
+        }
+        return agentEndpoint;
+    }
+
     private void undeployBlocking(String tunnelName) {
         String deploymentId = deployments.get(tunnelName);
         if (deploymentId == null) {
@@ -266,8 +304,11 @@ public class TunnelManager {
         if (request.type() != ProxyType.tcp) {
             throw new TunnelOperationException("UNSUPPORTED_TUNNEL_TYPE", "Only tcp tunnels are supported", 400);
         }
+        int endpointPort = serverConfig.agentEndpoint().port();
+        // 开启共用 agent 端口后 agentPort 可以为 0
+        boolean sharedAgentPort = request.agentPort() == 0 && endpointPort > 0;
         if (request.openPort() < 1 || request.openPort() > 65535
-                || request.agentPort() < 1 || request.agentPort() > 65535
+                || !sharedAgentPort && (request.agentPort() < 1 || request.agentPort() > 65535)
                 || request.openPort() == request.agentPort()) {
             throw new TunnelOperationException("INVALID_PORT", "Invalid tunnel ports", 400);
         }
@@ -275,6 +316,19 @@ public class TunnelManager {
                 || request.agentPort() == serverConfig.management().port()) {
             throw new TunnelOperationException("PORT_CONFLICT", "Tunnel ports must not conflict with management port", 409);
         }
+        if (endpointPort > 0 && (request.openPort() == endpointPort || request.agentPort() == endpointPort)) {
+            throw new TunnelOperationException("PORT_CONFLICT",
+                    "Tunnel ports must not conflict with shared agent endpoint port", 409);
+        }
+        String optionsError = request.options() == null ? null : request.options().validationError();
+        if (optionsError != null) {
+            throw new TunnelOperationException("INVALID_OPTIONS", optionsError, 400);
+        }
+        // 共用 agent 端口只支持 websocket
+        if (sharedAgentPort && request.options() != null
+                && LinkSocket.TRANSPORT_TCP.equals(request.options().agentTransport())) {
+            throw new TunnelOperationException("INVALID_OPTIONS", "agentTransport tcp requires a dedicated agentPort", 400);
+        }
     }
 
     private void validateNewTunnel(Tunnel.TunnelConfig tunnel) {
@@ -282,10 +336,11 @@ public class TunnelManager {
             throw new TunnelOperationException("TUNNEL_ALREADY_EXISTS", "Tunnel already exists: " + tunnel.name(), 409);
         }
         for (Tunnel.TunnelConfig existing : tunnels.values()) {
+            // agentPort 为 0 的 tunnel 共用 agent 端口，彼此不冲突
             if (existing.openPort() == tunnel.openPort()
                     || existing.openPort() == tunnel.agentPort()
-                    || existing.agentPort() == tunnel.openPort()
-                    || existing.agentPort() == tunnel.agentPort()) {
+                    || existing.agentPort() != 0 && existing.agentPort() == tunnel.openPort()
+                    || existing.agentPort() != 0 && existing.agentPort() == tunnel.agentPort()) {
                 throw new TunnelOperationException("PORT_CONFLICT", "Tunnel port conflicts with " + existing.name(), 409);
             }
         }
@@ -300,7 +355,11 @@ public class TunnelManager {
         return current.getMessage();
     }
 
-    public record CreateTunnelRequest(String name, ProxyType type, int openPort, int agentPort) {
+    public record CreateTunnelRequest(String name, ProxyType type, int openPort, int agentPort,
+                                      Tunnel.TunnelOptions options) {
+        public CreateTunnelRequest(String name, ProxyType type, int openPort, int agentPort) {
+            this(name, type, openPort, agentPort, null);
+        }
     }
 
     public record CreateTunnelResult(TunnelRuntimeRegistry.TunnelRuntime tunnel, String agentToken) {
@@ -1,18 +1,27 @@
 package net.ximatai.frp.server.service;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import net.ximatai.frp.common.ConnectFailReason;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
 import net.ximatai.frp.server.config.Tunnel;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 @ApplicationScoped
 public class TunnelRuntimeRegistry {
     private final Map<String, TunnelRuntime> runtimes = new ConcurrentHashMap<>();
+    private final Map<String, CompressionCounters> compressionCounters = new ConcurrentHashMap<>();
+    private final Map<String, ConnectCounters> connectCounters = new ConcurrentHashMap<>();
 
     public void registerTunnel(Tunnel tunnel) {
         runtimes.putIfAbsent(tunnel.name(), TunnelRuntime.from(tunnel, TunnelStatus.STOPPED, null));
@@ -20,6 +29,22 @@ public class TunnelRuntimeRegistry {
 
     public void removeTunnel(String tunnelName) {
         runtimes.remove(tunnelName);
+        compressionCounters.remove(tunnelName);
+        connectCounters.remove(tunnelName);
+    }
+
+    /**
+     * tunnel 的压缩计数器，数据面在 event loop 上直接累加，查询时汇总为 {@link CompressionStats}
+     */
+    public CompressionCounters compressionCounters(Tunnel tunnel) {
+        return compressionCounters.computeIfAbsent(tunnel.name(), name -> new CompressionCounters());
+    }
+
+    /**
+     * tunnel 的 CONNECT 应答计数器，只统计协商了 connectAck 的链路
+     */
+    public ConnectCounters connectCounters(Tunnel tunnel) {
+        return connectCounters.computeIfAbsent(tunnel.name(), name -> new ConnectCounters());
     }
 
     public void markStatus(Tunnel tunnel, TunnelStatus status) {
@@ -34,47 +59,120 @@ public class TunnelRuntimeRegistry {
     }
 
     public void markAgentOnline(Tunnel tunnel, String agentName, String sessionId) {
+        markAgentOnline(tunnel, agentName, sessionId, 1);
+    }
+
+    /**
+     * 登记一个已鉴权的 agent 会话，多 agent 模式下一个 tunnel 可以同时有多个
+     */
+    public void markAgentOnline(Tunnel tunnel, String agentName, String sessionId, int weight) {
+        markAgentOnline(tunnel, agentName, sessionId, weight, AgentState.ACTIVE);
+    }
+
+    public void markAgentOnline(Tunnel tunnel, String agentName, String sessionId, int weight, AgentState state) {
+        Instant now = Instant.now();
+        AgentRuntime agent = new AgentRuntime(sessionId, agentName, weight, state, 0, now, now, -1);
         runtimes.compute(tunnel.name(), (name, current) -> {
             TunnelRuntime base = current == null ? TunnelRuntime.from(tunnel, TunnelStatus.LISTENING, null) : current;
-            return base.withTunnel(tunnel).withAgentOnline(agentName, sessionId);
+            List<AgentRuntime> agents = new ArrayList<>(base.agents());
+            agents.removeIf(existing -> existing.sessionId().equals(sessionId));
+            agents.add(agent);
+            return base.withTunnel(tunnel).withAgents(agents);
         });
     }
 
     public void markAgentOffline(Tunnel tunnel, String sessionId) {
-        runtimes.compute(tunnel.name(), (name, current) -> {
-            if (current == null || (current.sessionId() != null && !current.sessionId().equals(sessionId))) {
-                return current;
-            }
-            return current.withAgentOffline();
-        });
+        runtimes.computeIfPresent(tunnel.name(), (name, current) -> current.withAgents(current.agents().stream()
+                .filter(agent -> !agent.sessionId().equals(sessionId))
+                .toList()));
+    }
+
+    /**
+     * 会话已被新 agent 替换，只继续服务已有连接
+     */
+    public void markAgentDraining(Tunnel tunnel, String sessionId) {
+        updateAgent(tunnel, sessionId, agent -> agent.withState(AgentState.DRAINING));
+    }
+
+    /**
+     * 备用会话在活跃会话全部断开后开始接收连接
+     */
+    public void markAgentPromoted(Tunnel tunnel, String sessionId) {
+        updateAgent(tunnel, sessionId, agent -> agent.withState(AgentState.ACTIVE));
+    }
+
+    /**
+     * 会话的全部链路已断开，在 resumeTimeout 内等待 agent 恢复
+     */
+    public void markAgentSuspended(Tunnel tunnel, String sessionId) {
+        updateAgent(tunnel, sessionId, agent -> agent.withState(AgentState.SUSPENDED));
+    }
+
+    /**
+     * 挂起的会话被 agent 恢复
+     *
+     * @param state 恢复后的状态
+     */
+    public void markAgentResumed(Tunnel tunnel, String sessionId, AgentState state) {
+        updateAgent(tunnel, sessionId, agent -> agent.withState(state));
     }
 
     public void updateActiveConnections(Tunnel tunnel, String sessionId, int activeConnections) {
-        runtimes.computeIfPresent(tunnel.name(), (name, current) -> {
-            if (current.sessionId() == null || !current.sessionId().equals(sessionId)) {
-                return current;
-            }
-            return current.withActiveConnections(activeConnections);
+        updateAgent(tunnel, sessionId, agent -> agent.withActiveConnections(activeConnections));
+    }
+
+    /**
+     * 记录 tunnel 实际使用的 transport 和 socket 参数
+     */
+    public void markDataPlane(Tunnel tunnel, String transport, SocketTuning socket) {
+        runtimes.compute(tunnel.name(), (name, current) -> {
+            TunnelRuntime base = current == null ? TunnelRuntime.from(tunnel, TunnelStatus.STARTING, null) : current;
+            return base.withDataPlane(transport, socket);
         });
     }
 
     public void touchAgent(Tunnel tunnel, String sessionId) {
+        Instant now = Instant.now();
+        updateAgent(tunnel, sessionId, agent -> agent.withLastSeenAt(now));
+    }
+
+    /**
+     * 收到 agent 对心跳的回复
+     */
+    public void recordHeartbeat(Tunnel tunnel, String sessionId, long rttMicros) {
+        Instant now = Instant.now();
+        updateAgent(tunnel, sessionId, agent -> agent.withRtt(now, rttMicros));
+    }
+
+    private void updateAgent(Tunnel tunnel, String sessionId, UnaryOperator<AgentRuntime> update) {
         runtimes.computeIfPresent(tunnel.name(), (name, current) -> {
-            if (current.sessionId() == null || !current.sessionId().equals(sessionId)) {
-                return current;
+            List<AgentRuntime> agents = current.agents();
+            for (int i = 0; i < agents.size(); i++) {
+                if (agents.get(i).sessionId().equals(sessionId)) {
+                    List<AgentRuntime> updated = new ArrayList<>(agents);
+                    updated.set(i, update.apply(agents.get(i)));
+                    return current.withAgents(updated);
+                }
             }
-            return current.withLastSeenAt(Instant.now());
+            return current;
         });
     }
 
     public List<TunnelRuntime> list(Collection<? extends Tunnel> tunnels) {
         return tunnels.stream()
-                .map(tunnel -> runtimes.getOrDefault(tunnel.name(), TunnelRuntime.from(tunnel, TunnelStatus.STOPPED, null)))
+                .map(this::get)
                 .toList();
     }
 
     public TunnelRuntime get(Tunnel tunnel) {
-        return runtimes.getOrDefault(tunnel.name(), TunnelRuntime.from(tunnel, TunnelStatus.STOPPED, null));
+        TunnelRuntime runtime = runtimes.getOrDefault(tunnel.name(), TunnelRuntime.from(tunnel, TunnelStatus.STOPPED, null));
+        CompressionCounters counters = compressionCounters.get(tunnel.name());
+        ConnectCounters connects = connectCounters.get(tunnel.name());
+        return runtime.withStats(
+                counters == null
+                        ? CompressionStats.empty(tunnel.options().compression())
+                        : counters.snapshot(tunnel.options().compression()),
+                connects == null ? ConnectStats.EMPTY : connects.snapshot());
     }
 
     public record TunnelRuntime(
@@ -90,7 +188,12 @@ public class TunnelRuntimeRegistry {
             String sessionId,
             int activeConnections,
             Instant connectedAt,
-            Instant lastSeenAt
+            Instant lastSeenAt,
+            String transport,
+            SocketTuning socket,
+            CompressionStats compression,
+            ConnectStats connects,
+            List<AgentRuntime> agents
     ) {
         static TunnelRuntime from(Tunnel tunnel, TunnelStatus status, String failureReason) {
             return new TunnelRuntime(
@@ -106,7 +209,12 @@ public class TunnelRuntimeRegistry {
                     null,
                     0,
                     null,
-                    null
+                    null,
+                    null,
+                    null,
+                    CompressionStats.empty(tunnel.options().compression()),
+                    ConnectStats.EMPTY,
+                    List.of()
             );
         }
 
@@ -124,7 +232,12 @@ public class TunnelRuntimeRegistry {
                     sessionId,
                     activeConnections,
                     connectedAt,
-                    lastSeenAt
+                    lastSeenAt,
+                    transport,
+                    socket,
+                    compression,
+                    connects,
+                    agents
             );
         }
 
@@ -142,12 +255,16 @@ public class TunnelRuntimeRegistry {
                     sessionId,
                     activeConnections,
                     connectedAt,
-                    lastSeenAt
+                    lastSeenAt,
+                    transport,
+                    socket,
+                    compression,
+                    connects,
+                    agents
             );
         }
 
-        TunnelRuntime withAgentOnline(String agentName, String sessionId) {
-            Instant now = Instant.now();
+        TunnelRuntime withDataPlane(String transport, SocketTuning socket) {
             return new TunnelRuntime(
                     name,
                     type,
@@ -156,16 +273,21 @@ public class TunnelRuntimeRegistry {
                     tokenConfigured,
                     status,
                     failureReason,
-                    true,
+                    agentOnline,
                     agentName,
                     sessionId,
                     activeConnections,
-                    now,
-                    now
+                    connectedAt,
+                    lastSeenAt,
+                    transport,
+                    socket,
+                    compression,
+                    connects,
+                    agents
             );
         }
 
-        TunnelRuntime withAgentOffline() {
+        TunnelRuntime withStats(CompressionStats compression, ConnectStats connects) {
             return new TunnelRuntime(
                     name,
                     type,
@@ -174,24 +296,33 @@ public class TunnelRuntimeRegistry {
                     tokenConfigured,
                     status,
                     failureReason,
-                    false,
-                    null,
-                    null,
-                    0,
-                    null,
-                    null
+                    agentOnline,
+                    agentName,
+                    sessionId,
+                    activeConnections,
+                    connectedAt,
+                    lastSeenAt,
+                    transport,
+                    socket,
+                    compression,
+                    connects,
+                    agents
             );
         }
 
-        TunnelRuntime withActiveConnections(int activeConnections) {
-            return with(activeConnections, Instant.now());
-        }
-
-        TunnelRuntime withLastSeenAt(Instant lastSeenAt) {
-            return with(activeConnections, lastSeenAt);
-        }
-
-        private TunnelRuntime with(int activeConnections, Instant lastSeenAt) {
+        /**
+         * 顶层的 agent 字段取最近接入的会话，activeConnections 为所有会话之和，兼容单 agent 时的返回结构
+         */
+        TunnelRuntime withAgents(List<AgentRuntime> agents) {
+            // 顶层字段优先反映最近接入的活跃会话
+            AgentRuntime latest = agents.stream()
+                    .filter(agent -> agent.state() == AgentState.ACTIVE)
+                    .reduce((first, second) -> second)
+                    .orElse(agents.isEmpty() ? null : agents.getLast());
+            Instant lastSeen = agents.stream()
+                    .map(AgentRuntime::lastSeenAt)
+                    .max(Instant::compareTo)
+                    .orElse(null);
             return new TunnelRuntime(
                     name,
                     type,
@@ -200,12 +331,171 @@ public class TunnelRuntimeRegistry {
                     tokenConfigured,
                     status,
                     failureReason,
-                    agentOnline,
-                    agentName,
-                    sessionId,
-                    activeConnections,
-                    connectedAt,
-                    lastSeenAt
+                    latest != null,
+                    latest == null ? null : latest.agentName(),
+                    latest == null ? null : latest.sessionId(),
+                    agents.stream().mapToInt(AgentRuntime::activeConnections).sum(),
+                    latest == null ? null : latest.connectedAt(),
+                    lastSeen,
+                    transport,
+                    socket,
+                    compression,
+                    connects,
+                    List.copyOf(agents)
+            );
+        }
+    }
+
+    public enum AgentState {
+        /**
+         * 接收新连接
+         */
+        ACTIVE,
+        /**
+         * 已被替换，只服务已有连接直到结束或排空超时
+         */
+        DRAINING,
+        /**
+         * 备用会话，保持连接但不接收流量，活跃会话全部断开时被提升
+         */
+        STANDBY,
+        /**
+         * 链路全部断开，保留已有连接等待 agent 凭恢复票据重连
+         */
+        SUSPENDED
+    }
+
+    /**
+     * 单个 agent 会话的运行态
+     *
+     * @param weight            agent 声明的权重，只用于 weighted 策略
+     * @param activeConnections 该会话当前承载的用户连接数
+     * @param rttMicros         最近一次心跳 PING/PONG 的往返时延（微秒），尚未测得时为 -1
+     */
+    public record AgentRuntime(
+            String sessionId,
+            String agentName,
+            int weight,
+            AgentState state,
+            int activeConnections,
+            Instant connectedAt,
+            Instant lastSeenAt,
+            long rttMicros
+    ) {
+        AgentRuntime withActiveConnections(int activeConnections) {
+            return new AgentRuntime(sessionId, agentName, weight, state, activeConnections, connectedAt, Instant.now(),
+                    rttMicros);
+        }
+
+        AgentRuntime withLastSeenAt(Instant lastSeenAt) {
+            return new AgentRuntime(sessionId, agentName, weight, state, activeConnections, connectedAt, lastSeenAt,
+                    rttMicros);
+        }
+
+        AgentRuntime withRtt(Instant lastSeenAt, long rttMicros) {
+            return new AgentRuntime(sessionId, agentName, weight, state, activeConnections, connectedAt, lastSeenAt,
+                    rttMicros);
+        }
+
+        AgentRuntime withState(AgentState state) {
+            return new AgentRuntime(sessionId, agentName, weight, state, activeConnections, connectedAt, lastSeenAt,
+                    rttMicros);
+        }
+    }
+
+    /**
+     * 压缩统计快照，字节数包含两个方向，CPU 时间只统计 server 侧的压缩与解压
+     *
+     * @param enabled         tunnel 是否允许压缩
+     * @param rawBytes        以压缩形式传输的 payload 原始字节数
+     * @param compressedBytes 上述 payload 压缩后的字节数
+     * @param skippedBytes    已协商压缩但因收益不足或数据已压缩而原样发送的字节数
+     * @param ratio           compressedBytes / rawBytes，没有压缩数据时为 1
+     * @param cpuMillis       server 侧压缩与解压累计耗时
+     */
+    public record CompressionStats(
+            boolean enabled,
+            long rawBytes,
+            long compressedBytes,
+            long skippedBytes,
+            double ratio,
+            long cpuMillis
+    ) {
+        static CompressionStats empty(boolean enabled) {
+            return new CompressionStats(enabled, 0, 0, 0, 1, 0);
+        }
+    }
+
+    /**
+     * CONNECT 应答统计快照
+     *
+     * @param succeeded agent 回复 CONNECT_OK 的连接数
+     * @param failed    agent 回复 CONNECT_FAIL 的连接数
+     * @param failures  按原因统计的失败数
+     */
+    public record ConnectStats(long succeeded, long failed, Map<String, Long> failures) {
+        static final ConnectStats EMPTY = new ConnectStats(0, 0, Map.of());
+    }
+
+    public static class ConnectCounters {
+        private final LongAdder succeeded = new LongAdder();
+        private final Map<ConnectFailReason, LongAdder> failures = new EnumMap<>(ConnectFailReason.class);
+
+        ConnectCounters() {
+            for (ConnectFailReason reason : ConnectFailReason.values()) {
+                failures.put(reason, new LongAdder());
+            }
+        }
+
+        public void recordSucceeded() {
+            succeeded.increment();
+        }
+
+        public void recordFailed(ConnectFailReason reason) {
+            failures.get(reason).increment();
+        }
+
+        ConnectStats snapshot() {
+            Map<String, Long> byReason = new LinkedHashMap<>();
+            long failed = 0;
+            for (Map.Entry<ConnectFailReason, LongAdder> entry : failures.entrySet()) {
+                long count = entry.getValue().sum();
+                failed += count;
+                if (count > 0) {
+                    byReason.put(entry.getKey().name(), count);
+                }
+            }
+            return new ConnectStats(succeeded.sum(), failed, byReason);
+        }
+    }
+
+    public static class CompressionCounters {
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder skippedBytes = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+
+        public void recordCompressed(int rawLength, int compressedLength, long nanos) {
+            rawBytes.add(rawLength);
+            compressedBytes.add(compressedLength);
+            cpuNanos.add(nanos);
+        }
+
+        public void recordSkipped(int rawLength, long nanos) {
+            skippedBytes.add(rawLength);
+            cpuNanos.add(nanos);
+        }
+
+        CompressionStats snapshot(boolean enabled) {
+            long raw = rawBytes.sum();
+            long compressed = compressedBytes.sum();
+            return new CompressionStats(
+                    enabled,
+                    raw,
+                    compressed,
+                    skippedBytes.sum(),
+                    raw == 0 ? 1 : (double) compressed / raw,
+                    cpuNanos.sum() / 1_000_000
             );
         }
     }
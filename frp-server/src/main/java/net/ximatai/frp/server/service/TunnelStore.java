@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.ProxyType;
 import net.ximatai.frp.server.config.FrpServerConfig;
 import net.ximatai.frp.server.config.Tunnel;
@@ -69,13 +70,19 @@ public class TunnelStore {
     public void validate(List<Tunnel.TunnelConfig> tunnels, int managementPort) {
         Map<String, Tunnel.TunnelConfig> byName = new LinkedHashMap<>();
         Map<Integer, String> usedPorts = new LinkedHashMap<>();
+        int endpointPort = serverConfig.agentEndpoint().port();
+        if (endpointPort > 0) {
+            usedPorts.put(endpointPort, "shared agent endpoint");
+        }
         for (Tunnel.TunnelConfig tunnel : tunnels) {
             validateTunnel(tunnel, managementPort);
             if (byName.putIfAbsent(tunnel.name(), tunnel) != null) {
                 throw new TunnelValidationException("Duplicate tunnel name: " + tunnel.name());
             }
             claimPort(usedPorts, tunnel.openPort(), tunnel.name());
-            claimPort(usedPorts, tunnel.agentPort(), tunnel.name());
+            if (tunnel.agentPort() != 0) {
+                claimPort(usedPorts, tunnel.agentPort(), tunnel.name());
+            }
         }
     }
 
@@ -87,16 +94,30 @@ public class TunnelStore {
             throw new TunnelValidationException("Unsupported tunnel type: " + tunnel.type());
         }
         validatePort(tunnel.openPort(), "openPort");
-        validatePort(tunnel.agentPort(), "agentPort");
+        int endpointPort = serverConfig.agentEndpoint().port();
+        // 开启共用 agent 端口后 agentPort 可以为 0，agent 只经共用端口接入
+        if (tunnel.agentPort() != 0 || endpointPort == 0) {
+            validatePort(tunnel.agentPort(), "agentPort");
+        }
+        if (tunnel.agentPort() == 0 && LinkSocket.TRANSPORT_TCP.equals(tunnel.options().agentTransport())) {
+            throw new TunnelValidationException("agentTransport tcp requires a dedicated agentPort");
+        }
         if (tunnel.openPort() == tunnel.agentPort()) {
             throw new TunnelValidationException("openPort and agentPort must be different");
         }
         if (tunnel.openPort() == managementPort || tunnel.agentPort() == managementPort) {
             throw new TunnelValidationException("Tunnel ports must not conflict with management port");
         }
+        if (endpointPort > 0 && (tunnel.openPort() == endpointPort || tunnel.agentPort() == endpointPort)) {
+            throw new TunnelValidationException("Tunnel ports must not conflict with shared agent endpoint port");
+        }
         if (tunnel.tokenHash() == null || !tunnel.tokenHash().isValid()) {
             throw new TunnelValidationException("Invalid tokenHash for tunnel: " + tunnel.name());
         }
+        String optionsError = tunnel.options().validationError();
+        if (optionsError != null) {
+            throw new TunnelValidationException(optionsError);
+        }
     }
 
     public Path storePath() {
@@ -10,6 +10,7 @@ import jakarta.inject.Inject;
 import net.ximatai.frp.common.MessageUtil;
 import net.ximatai.frp.common.OperationType;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.server.config.Tunnel;
 import net.ximatai.frp.server.service.TunnelManager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -100,6 +101,8 @@ class TunnelResourcesTest {
                 .then()
                 .statusCode(200)
                 .body("name", is("api_create"))
+                .body("transport", notNullValue())
+                .body("socket.tcpNoDelay", is(true))
                 .body("", not(hasKey("tokenHash")));
     }
 
@@ -184,6 +187,35 @@ class TunnelResourcesTest {
                 .body("error", is("TUNNEL_NOT_FOUND"));
     }
 
+    @Test
+    void shouldCreateMultiInstanceTunnelAndRejectInvalidInstances() throws Exception {
+        String agentToken = given()
+                .auth().preemptive().basic("admin", "password")
+                .contentType("application/json")
+                .body(new TunnelManager.CreateTunnelRequest("api_instances", ProxyType.tcp, 19582, 19583,
+                        Tunnel.TunnelOptions.DEFAULT.withInstances(4)))
+                .when()
+                .post("/api/tunnels")
+                .then()
+                .statusCode(201)
+                .body("status", is("LISTENING"))
+                .extract()
+                .path("agentToken");
+
+        Assertions.assertEquals(OperationType.AUTH_OK, authenticateAgent(19583, agentToken, "instances-agent"));
+
+        given()
+                .auth().preemptive().basic("admin", "password")
+                .contentType("application/json")
+                .body(new TunnelManager.CreateTunnelRequest("api_bad_instances", ProxyType.tcp, 19592, 19593,
+                        Tunnel.TunnelOptions.DEFAULT.withInstances(-1)))
+                .when()
+                .post("/api/tunnels")
+                .then()
+                .statusCode(400)
+                .body("error", is("INVALID_OPTIONS"));
+    }
+
     @Test
     void shouldNotExposeOldSingularApi() {
         given()
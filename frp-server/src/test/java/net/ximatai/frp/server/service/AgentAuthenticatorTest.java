@@ -0,0 +1,149 @@
+package net.ximatai.frp.server.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.server.config.TokenHash;
+import net.ximatai.frp.server.config.Tunnel;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AgentAuthenticatorTest {
+    private static Vertx vertx;
+
+    @BeforeAll
+    static void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void shouldSkipPbkdf2ForCachedToken() throws Exception {
+        CountingTunnel tunnel = new CountingTunnel(Tunnel.createRecord("auth-cache", ProxyType.tcp, 1, 2, "token"));
+        AgentAuthenticator authenticator = new AgentAuthenticator(1, 4, 0, 1, 60);
+
+        Assertions.assertTrue(verify(authenticator, tunnel, "token", "10.0.0.1"));
+        Assertions.assertTrue(verify(authenticator, tunnel, "token", "10.0.0.2"));
+        Assertions.assertEquals(1, tunnel.verifications.get());
+
+        // 校验失败不缓存
+        Assertions.assertFalse(verify(authenticator, tunnel, "wrong", "10.0.0.1"));
+        Assertions.assertFalse(verify(authenticator, tunnel, "wrong", "10.0.0.1"));
+        Assertions.assertEquals(3, tunnel.verifications.get());
+        authenticator.close();
+    }
+
+    @Test
+    void shouldSkipPbkdf2ForQueuedRequestsWithSameToken() throws Exception {
+        CountingTunnel tunnel = new CountingTunnel(Tunnel.createRecord("auth-queued", ProxyType.tcp, 1, 2, "token"));
+        AgentAuthenticator authenticator = new AgentAuthenticator(1, 8, 0, 1, 60);
+
+        // 单线程校验，后面的请求在第一个校验完成前入队
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(authenticator.verify(vertx.getOrCreateContext(), tunnel, "token", "10.0.0." + i));
+        }
+        for (Future<Boolean> result : results) {
+            Assertions.assertTrue(result.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, tunnel.verifications.get());
+        authenticator.close();
+    }
+
+    @Test
+    void shouldNotReuseCacheAfterTokenChanges() throws Exception {
+        AgentAuthenticator authenticator = new AgentAuthenticator(1, 4, 0, 1, 60);
+        Tunnel before = Tunnel.createRecord("auth-rotate", ProxyType.tcp, 1, 2, "token");
+        Tunnel after = Tunnel.createRecord("auth-rotate", ProxyType.tcp, 1, 2, "rotated");
+
+        Assertions.assertTrue(verify(authenticator, before, "token", "10.0.0.1"));
+        Assertions.assertFalse(verify(authenticator, after, "token", "10.0.0.1"));
+        authenticator.close();
+    }
+
+    @Test
+    void shouldRateLimitUncachedAttemptsPerHost() throws Exception {
+        Tunnel tunnel = Tunnel.createRecord("auth-rate", ProxyType.tcp, 1, 2, "token");
+        AgentAuthenticator authenticator = new AgentAuthenticator(1, 4, 1, 2, 60);
+
+        Assertions.assertFalse(verify(authenticator, tunnel, "wrong", "10.0.0.1"));
+        Assertions.assertFalse(verify(authenticator, tunnel, "wrong", "10.0.0.1"));
+        ExecutionException limited = Assertions.assertThrows(ExecutionException.class,
+                () -> verify(authenticator, tunnel, "wrong", "10.0.0.1"));
+        Assertions.assertTrue(limited.getCause() instanceof RejectedExecutionException);
+
+        // 其他来源地址不受影响
+        Assertions.assertTrue(verify(authenticator, tunnel, "token", "10.0.0.2"));
+        authenticator.close();
+    }
+
+    private boolean verify(AgentAuthenticator authenticator, Tunnel tunnel, String token, String host) throws Exception {
+        return authenticator.verify(vertx.getOrCreateContext(), tunnel, token, host)
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private record CountingTunnel(Tunnel delegate, AtomicInteger verifications) implements Tunnel {
+        CountingTunnel(Tunnel delegate) {
+            this(delegate, new AtomicInteger());
+        }
+
+        @Override
+        public String name() {
+            return delegate.name();
+        }
+
+        @Override
+        public ProxyType type() {
+            return delegate.type();
+        }
+
+        @Override
+        public int openPort() {
+            return delegate.openPort();
+        }
+
+        @Override
+        public int agentPort() {
+            return delegate.agentPort();
+        }
+
+        @Override
+        public TokenHash tokenHash() {
+            return delegate.tokenHash();
+        }
+
+        @Override
+        public String createdAt() {
+            return delegate.createdAt();
+        }
+
+        @Override
+        public String updatedAt() {
+            return delegate.updatedAt();
+        }
+
+        @Override
+        public TunnelOptions options() {
+            return delegate.options();
+        }
+
+        @Override
+        public boolean verifyToken(String token) {
+            verifications.incrementAndGet();
+            return delegate.verifyToken(token);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package net.ximatai.frp.server.service;
+
+import net.ximatai.frp.server.config.Tunnel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class LoadBalancerTest {
+
+    @Test
+    void shouldRotateCandidates() {
+        LoadBalancer balancer = LoadBalancer.of(Tunnel.TunnelOptions.BALANCE_ROUND_ROBIN);
+        List<TestCandidate> candidates = List.of(new TestCandidate("a", 1, 0), new TestCandidate("b", 1, 0));
+
+        Assertions.assertEquals("a", balancer.select(candidates, "").key());
+        Assertions.assertEquals("b", balancer.select(candidates, "").key());
+        Assertions.assertEquals("a", balancer.select(candidates, "").key());
+    }
+
+    @Test
+    void shouldPreferLeastStreams() {
+        LoadBalancer balancer = LoadBalancer.of(Tunnel.TunnelOptions.BALANCE_LEAST_STREAMS);
+        List<TestCandidate> candidates = List.of(
+                new TestCandidate("a", 1, 5), new TestCandidate("b", 1, 2), new TestCandidate("c", 1, 9));
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("b", balancer.select(candidates, "").key());
+        }
+    }
+
+    @Test
+    void shouldFollowWeights() {
+        LoadBalancer balancer = LoadBalancer.of(Tunnel.TunnelOptions.BALANCE_WEIGHTED);
+        List<TestCandidate> candidates = List.of(new TestCandidate("a", 1, 0), new TestCandidate("b", 3, 0));
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < 40_000; i++) {
+            counts.merge(balancer.select(candidates, "").key(), 1, Integer::sum);
+        }
+
+        double ratio = counts.get("b") / (double) counts.get("a");
+        Assertions.assertTrue(ratio > 2.7 && ratio < 3.3, "ratio " + ratio);
+    }
+
+    @Test
+    void shouldKeepClientsStickyWhenAgentLeaves() {
+        LoadBalancer balancer = LoadBalancer.of(Tunnel.TunnelOptions.BALANCE_IP_HASH);
+        TestCandidate a = new TestCandidate("a", 1, 0);
+        TestCandidate b = new TestCandidate("b", 1, 0);
+        TestCandidate c = new TestCandidate("c", 1, 0);
+        List<TestCandidate> all = List.of(a, b, c);
+        List<TestCandidate> withoutC = List.of(a, b);
+
+        for (int i = 0; i < 1000; i++) {
+            String client = "10.0." + (i / 256) + "." + (i % 256);
+            TestCandidate selected = balancer.select(all, client);
+            Assertions.assertSame(selected, balancer.select(all, client));
+            if (selected != c) {
+                Assertions.assertSame(selected, balancer.select(withoutC, client));
+            }
+        }
+    }
+
+    private record TestCandidate(String key, int weight, int streams) implements LoadBalancer.Candidate {
+    }
+}
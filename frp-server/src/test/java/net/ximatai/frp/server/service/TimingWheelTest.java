@@ -0,0 +1,71 @@
+package net.ximatai.frp.server.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TimingWheelTest {
+
+    @Test
+    void shouldExpireIdleEntries() {
+        TimingWheel<IdleEntry> wheel = new TimingWheel<>(100, 8, 0);
+        IdleEntry entry = new IdleEntry(0, 250);
+        wheel.schedule(entry);
+        List<IdleEntry> expired = new ArrayList<>();
+
+        wheel.advance(200, expired::add);
+        Assertions.assertTrue(expired.isEmpty());
+
+        wheel.advance(300, expired::add);
+        Assertions.assertEquals(List.of(entry), expired);
+    }
+
+    @Test
+    void shouldRescheduleTouchedEntries() {
+        TimingWheel<IdleEntry> wheel = new TimingWheel<>(100, 8, 0);
+        IdleEntry entry = new IdleEntry(0, 250);
+        wheel.schedule(entry);
+        List<IdleEntry> expired = new ArrayList<>();
+
+        // 超过一整圈仍持续活跃，不会被关闭
+        for (long now = 100; now <= 2000; now += 100) {
+            entry.lastActiveAt = now;
+            wheel.advance(now, expired::add);
+        }
+        Assertions.assertTrue(expired.isEmpty());
+
+        wheel.advance(2300, expired::add);
+        Assertions.assertEquals(List.of(entry), expired);
+    }
+
+    @Test
+    void shouldNotExpireCancelledEntries() {
+        TimingWheel<IdleEntry> wheel = new TimingWheel<>(100, 8, 0);
+        IdleEntry first = new IdleEntry(0, 100);
+        IdleEntry second = new IdleEntry(0, 100);
+        wheel.schedule(first);
+        wheel.schedule(second);
+        wheel.cancel(first);
+        List<IdleEntry> expired = new ArrayList<>();
+
+        wheel.advance(1000, expired::add);
+        Assertions.assertEquals(List.of(second), expired);
+    }
+
+    private static class IdleEntry extends TimingWheel.Entry {
+        private final long idleTimeout;
+        private long lastActiveAt;
+
+        IdleEntry(long now, long idleTimeout) {
+            this.lastActiveAt = now;
+            this.idleTimeout = idleTimeout;
+        }
+
+        @Override
+        long deadline() {
+            return lastActiveAt + idleTimeout;
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package net.ximatai.frp.server.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.FrameScheduler;
+import net.ximatai.frp.common.LinkSocket;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.server.config.AgentEndpointConfig;
+import net.ximatai.frp.server.config.AuthConfig;
+import net.ximatai.frp.server.config.DataPlaneConfig;
 import net.ximatai.frp.server.config.FrpServerConfig;
 import net.ximatai.frp.server.config.ManagementConfig;
 import net.ximatai.frp.server.config.TokenHash;
@@ -52,6 +59,138 @@ class TunnelStoreTest {
         Assertions.assertNotNull(loaded.getFirst().tokenHash());
     }
 
+    @Test
+    void shouldDefaultOptionsForStoreWithoutOptions() throws Exception {
+        Path storePath = tempDir.resolve("tunnels.json");
+        TunnelStore store = store(storePath, 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("legacy", ProxyType.tcp, 18082, 18083, "token");
+        TokenHash hash = tunnel.tokenHash();
+        Files.writeString(storePath, """
+                [{"name":"legacy","type":"tcp","openPort":18082,"agentPort":18083,
+                  "tokenHash":{"algorithm":"%s","iterations":%d,"salt":"%s","hash":"%s"},
+                  "createdAt":"%s","updatedAt":"%s"}]
+                """.formatted(hash.algorithm(), hash.iterations(), hash.salt(), hash.hash(),
+                tunnel.createdAt(), tunnel.updatedAt()));
+
+        List<Tunnel.TunnelConfig> loaded = store.load();
+
+        Assertions.assertEquals(Tunnel.TunnelOptions.DEFAULT, loaded.getFirst().options());
+        Assertions.assertEquals(1, loaded.getFirst().options().instances());
+        Assertions.assertEquals(FrameChunker.DEFAULT_MAX_FRAME_SIZE, loaded.getFirst().options().maxFrameSize());
+        Assertions.assertEquals(Tunnel.TunnelOptions.DEFAULT_IDLE_TIMEOUT, loaded.getFirst().options().idleTimeout());
+        Assertions.assertEquals(Tunnel.TunnelOptions.DEFAULT_HEARTBEAT_INTERVAL, loaded.getFirst().options().heartbeatInterval());
+        Assertions.assertEquals(Tunnel.TunnelOptions.DEFAULT_HEARTBEAT_MISSES, loaded.getFirst().options().heartbeatMisses());
+        Assertions.assertEquals(0, loaded.getFirst().options().resumeTimeout());
+        Assertions.assertEquals(FrameScheduler.PRIORITY_NORMAL, loaded.getFirst().options().priority());
+        Assertions.assertEquals(LinkSocket.TRANSPORT_WEBSOCKET, loaded.getFirst().options().agentTransport());
+        Assertions.assertNull(loaded.getFirst().options().socket());
+        Assertions.assertEquals(SocketTuning.DEFAULT, loaded.getFirst().options().socketTuning(SocketTuning.DEFAULT));
+    }
+
+    @Test
+    void shouldKeepEachOptionThroughWithersAndStore() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        // 各整数项取不同的值，with 方法错位赋值时能被发现
+        Tunnel.TunnelOptions options = Tunnel.TunnelOptions.DEFAULT
+                .withInstances(2)
+                .withMaxFrameSize(FrameChunker.DEFAULT_MAX_FRAME_SIZE * 2)
+                .withCompression(true)
+                .withIdleTimeout(11)
+                .withMaxLifetime(12)
+                .withBalance(Tunnel.TunnelOptions.BALANCE_WEIGHTED)
+                .withDrainTimeout(13)
+                .withHeartbeatInterval(14)
+                .withHeartbeatMisses(15)
+                .withResumeTimeout(16)
+                .withPriority(FrameScheduler.PRIORITY_HIGH)
+                .withAgentTransport(LinkSocket.TRANSPORT_TCP)
+                .withEarlyData(true)
+                .withSocket(new Tunnel.SocketOptions(false, null, null, 262144, null));
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("options", ProxyType.tcp, 18082, 18083,
+                "token", options);
+
+        store.save(List.of(tunnel));
+        Tunnel.TunnelOptions loaded = store.load().getFirst().options();
+
+        Assertions.assertEquals(options, loaded);
+        Assertions.assertEquals(2, loaded.instances());
+        Assertions.assertEquals(FrameChunker.DEFAULT_MAX_FRAME_SIZE * 2, loaded.maxFrameSize());
+        Assertions.assertTrue(loaded.compression());
+        Assertions.assertEquals(11, loaded.idleTimeout());
+        Assertions.assertEquals(12, loaded.maxLifetime());
+        Assertions.assertEquals(Tunnel.TunnelOptions.BALANCE_WEIGHTED, loaded.balance());
+        Assertions.assertEquals(13, loaded.drainTimeout());
+        Assertions.assertEquals(14, loaded.heartbeatInterval());
+        Assertions.assertEquals(15, loaded.heartbeatMisses());
+        Assertions.assertEquals(16, loaded.resumeTimeout());
+        Assertions.assertEquals(FrameScheduler.PRIORITY_HIGH, loaded.priority());
+        Assertions.assertEquals(LinkSocket.TRANSPORT_TCP, loaded.agentTransport());
+        Assertions.assertTrue(loaded.earlyData());
+        // 未覆盖的项回退到数据面缺省值
+        Assertions.assertEquals(new SocketTuning(false, false, true, 262144, 4096),
+                loaded.socketTuning(new SocketTuning(true, false, true, -1, 4096)));
+    }
+
+    @Test
+    void shouldRejectInvalidSocketBufferSize() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("socket", ProxyType.tcp, 18082, 18083,
+                "token", Tunnel.TunnelOptions.DEFAULT.withSocket(new Tunnel.SocketOptions(null, null, null, null, 0)));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectInvalidInstances() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("instances", ProxyType.tcp, 18082, 18083,
+                "token", Tunnel.TunnelOptions.DEFAULT.withInstances(Tunnel.TunnelOptions.MAX_INSTANCES + 1));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectInvalidMaxFrameSize() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("frames", ProxyType.tcp, 18082, 18083,
+                "token", Tunnel.TunnelOptions.DEFAULT.withMaxFrameSize(FrameChunker.MAX_FRAME_SIZE + 1));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectUnknownPriority() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("priority", ProxyType.tcp, 18082, 18083,
+                "token", Tunnel.TunnelOptions.DEFAULT.withPriority("urgent"));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectInvalidIdleTimeout() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("idle", ProxyType.tcp, 18082, 18083,
+                "token", Tunnel.TunnelOptions.DEFAULT.withIdleTimeout(-2));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
     @Test
     void shouldRejectDuplicateTunnelNames() throws Exception {
         TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
@@ -86,7 +225,8 @@ class TunnelStoreTest {
                 18083,
                 new TokenHash(TokenHash.ALGORITHM, 1, "bad", "bad"),
                 now,
-                now
+                now,
+                Tunnel.TunnelOptions.DEFAULT
         );
 
         Assertions.assertThrows(
@@ -95,14 +235,63 @@ class TunnelStoreTest {
         );
     }
 
+    @Test
+    void shouldAllowTunnelsWithoutAgentPortOnSharedEndpoint() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089, 8090);
+        Tunnel.TunnelConfig first = (Tunnel.TunnelConfig) Tunnel.createRecord("shared_a", ProxyType.tcp, 18082, 0, "token");
+        Tunnel.TunnelConfig second = (Tunnel.TunnelConfig) Tunnel.createRecord("shared_b", ProxyType.tcp, 18084, 0, "token");
+
+        store.save(List.of(first, second));
+
+        Assertions.assertEquals(2, store.load().size());
+    }
+
+    @Test
+    void shouldRequireAgentPortWithoutSharedEndpoint() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("no_agent_port", ProxyType.tcp, 18082, 0, "token");
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectTcpTransportWithoutAgentPort() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089, 8090);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("tcp_shared", ProxyType.tcp, 18082, 0, "token",
+                Tunnel.TunnelOptions.DEFAULT.withAgentTransport(LinkSocket.TRANSPORT_TCP));
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
+    @Test
+    void shouldRejectSharedEndpointPortConflict() throws Exception {
+        TunnelStore store = store(tempDir.resolve("tunnels.json"), 8089, 8090);
+        Tunnel.TunnelConfig tunnel = (Tunnel.TunnelConfig) Tunnel.createRecord("conflict", ProxyType.tcp, 8090, 0, "token");
+
+        Assertions.assertThrows(
+                TunnelStore.TunnelValidationException.class,
+                () -> store.save(List.of(tunnel))
+        );
+    }
+
     private TunnelStore store(Path storePath, int managementPort) throws Exception {
+        return store(storePath, managementPort, 0);
+    }
+
+    private TunnelStore store(Path storePath, int managementPort, int agentEndpointPort) throws Exception {
         TunnelStore store = new TunnelStore();
         setField(store, "objectMapper", new ObjectMapper());
-        setField(store, "serverConfig", serverConfig(storePath, managementPort));
+        setField(store, "serverConfig", serverConfig(storePath, managementPort, agentEndpointPort));
         return store;
     }
 
-    private FrpServerConfig serverConfig(Path storePath, int managementPort) {
+    private FrpServerConfig serverConfig(Path storePath, int managementPort, int agentEndpointPort) {
         return new FrpServerConfig() {
             @Override
             public ManagementConfig management() {
@@ -128,6 +317,41 @@ class TunnelStoreTest {
             public TunnelStoreConfig tunnelStore() {
                 return () -> storePath.toString();
             }
+
+            @Override
+            public DataPlaneConfig dataPlane() {
+                return null;
+            }
+
+            @Override
+            public AuthConfig auth() {
+                return null;
+            }
+
+            @Override
+            public AgentEndpointConfig agentEndpoint() {
+                return new AgentEndpointConfig() {
+                    @Override
+                    public int port() {
+                        return agentEndpointPort;
+                    }
+
+                    @Override
+                    public int instances() {
+                        return 0;
+                    }
+
+                    @Override
+                    public int heartbeatInterval() {
+                        return 30;
+                    }
+
+                    @Override
+                    public int heartbeatMisses() {
+                        return 3;
+                    }
+                };
+            }
         };
     }
 
@@ -22,3 +22,8 @@ dependencies {
     testImplementation("io.quarkus:quarkus-junit5")
     testImplementation("io.rest-assured:rest-assured")
 }
+
+tasks.test {
+    // 基准测试默认跳过，通过 -Dmuyun.frp.benchmark=true 开启
+    systemProperty("muyun.frp.benchmark", System.getProperty("muyun.frp.benchmark", "false"))
+}
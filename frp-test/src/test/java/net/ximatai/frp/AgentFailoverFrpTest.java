@@ -0,0 +1,162 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockFaultProxyVerticle;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.ximatai.frp.FrpTestSupport.await;
+import static net.ximatai.frp.FrpTestSupport.awaitAgents;
+import static net.ximatai.frp.FrpTestSupport.awaitLinkState;
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+import static net.ximatai.frp.FrpTestSupport.tryEcho;
+
+/**
+ * agent 链路失效后的检测、重连与会话恢复
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AgentFailoverFrpTest {
+    private static final int mockServerPort = 17850;
+    private static final int heartbeatAgentPort = 18183;
+    private static final int heartbeatOpenPort = 18182;
+    private static final int heartbeatProxyPort = 18184;
+    private static final int reconnectAgentPort = 18193;
+    private static final int reconnectOpenPort = 18192;
+    private static final int resumeAgentPort = 18203;
+    private static final int resumeOpenPort = 18202;
+    private static final int resumeProxyPort = 18204;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testHeartbeatDetectsSilentlyDeadLink() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel heartbeatTunnel = Tunnel.createRecord("心跳", ProxyType.tcp, heartbeatOpenPort, heartbeatAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withHeartbeatInterval(1).withHeartbeatMisses(2));
+        TunnelLinkerVerticle.deploy(vertx, heartbeatTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        MockFaultProxyVerticle proxy = new MockFaultProxyVerticle(heartbeatProxyPort, heartbeatAgentPort);
+        vertx.deployVerticle(proxy).toCompletionStage().toCompletableFuture().join();
+
+        // agent 侧阈值更宽，保证先由 server 判定失效并切换到备用 agent
+        Agent primary = new MockAgent(ProxyType.tcp, "heartbeat-primary", heartbeatProxyPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withHeartbeat(1, 5));
+        vertx.deployVerticle(new AgentLinkerVerticle(primary)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, heartbeatTunnel, 1);
+        Agent backup = new MockAgent(ProxyType.tcp, "heartbeat-backup", heartbeatAgentPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withStandby(true));
+        vertx.deployVerticle(new AgentLinkerVerticle(backup)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, heartbeatTunnel, 2);
+        Assertions.assertTrue(tryEcho(vertx, heartbeatOpenPort, "primary"));
+
+        await("heartbeat round trip", () -> registry.get(heartbeatTunnel).agents().getFirst().rttMicros() >= 0);
+        String primarySessionId = registry.get(heartbeatTunnel).agents().getFirst().sessionId();
+
+        // 链路静默断开：不发 FIN/RST，只能靠心跳发现
+        proxy.blackhole();
+        await("heartbeat to close the silent link", () -> registry.get(heartbeatTunnel).agents().stream()
+                .noneMatch(agent -> agent.sessionId().equals(primarySessionId)));
+        await("standby agent to serve new connections", () -> tryEcho(vertx, heartbeatOpenPort, "backup"));
+        TunnelRuntimeRegistry.AgentRuntime promoted = registry.get(heartbeatTunnel).agents().stream()
+                .filter(agent -> agent.agentName().equals("heartbeat-backup"))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, promoted.state());
+
+        // agent 侧也判定失效并经代理重新接入
+        await("primary agent to reconnect", () -> registry.get(heartbeatTunnel).agents().stream()
+                .anyMatch(agent -> agent.agentName().equals("heartbeat-primary")));
+    }
+
+    @Test
+    void testAgentReconnectsWithBackoffAfterServerRestart() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel reconnectTunnel = Tunnel.createRecord("重连", ProxyType.tcp, reconnectOpenPort, reconnectAgentPort);
+        String serverId = TunnelLinkerVerticle.deploy(vertx, reconnectTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(
+                new MockAgent(ProxyType.tcp, "reconnect", reconnectAgentPort, mockServerPort, "test-token",
+                        MockAgent.Options.DEFAULT.withReconnectDelay(100, 1000)));
+        vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, reconnectTunnel, 1);
+        Assertions.assertEquals(AgentLinkerVerticle.LinkState.CONNECTED, linker.state());
+
+        // server 不可用期间立即重试一次后进入退避
+        vertx.undeploy(serverId).toCompletionStage().toCompletableFuture().join();
+        awaitLinkState(linker, AgentLinkerVerticle.LinkState.BACKING_OFF);
+
+        TunnelLinkerVerticle.deploy(vertx, reconnectTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        awaitLinkState(linker, AgentLinkerVerticle.LinkState.CONNECTED);
+        awaitAgents(registry, reconnectTunnel, 1);
+        Assertions.assertTrue(tryEcho(vertx, reconnectOpenPort, "reconnected"));
+    }
+
+    @Test
+    void testResumedAgentKeepsUserConnection() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel resumeTunnel = Tunnel.createRecord("恢复", ProxyType.tcp, resumeOpenPort, resumeAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withResumeTimeout(10));
+        TunnelLinkerVerticle.deploy(vertx, resumeTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        MockFaultProxyVerticle proxy = new MockFaultProxyVerticle(resumeProxyPort, resumeAgentPort);
+        vertx.deployVerticle(proxy).toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "resume", resumeProxyPort, mockServerPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, resumeTunnel, 1);
+        String sessionId = registry.get(resumeTunnel).agents().getFirst().sessionId();
+
+        NetSocket socket = connect(vertx, resumeOpenPort);
+        AtomicBoolean closed = new AtomicBoolean();
+        socket.closeHandler(v -> closed.set(true));
+        Assertions.assertEquals("before", echo(socket, "before"));
+
+        // agent 链路被重置，用户连接不断开，agent 立即重连并凭票据接管原有连接
+        proxy.sever();
+        Assertions.assertEquals("after", echo(socket, "after"));
+        Buffer large = Buffer.buffer(new byte[512 * 1024]);
+        Assertions.assertEquals(large, echo(socket, large));
+        Assertions.assertFalse(closed.get());
+
+        List<TunnelRuntimeRegistry.AgentRuntime> agents = registry.get(resumeTunnel).agents();
+        Assertions.assertEquals(1, agents.size());
+        Assertions.assertEquals(sessionId, agents.getFirst().sessionId());
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, agents.getFirst().state());
+        socket.close();
+    }
+}
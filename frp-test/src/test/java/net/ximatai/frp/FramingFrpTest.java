@@ -0,0 +1,158 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+import static net.ximatai.frp.FrpTestSupport.testLargeTransfer;
+
+/**
+ * 流控、帧长协商、批量帧与压缩
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FramingFrpTest {
+    private static final int mockServerPort = 17810;
+    private static final int frpTunnelAgentPort = 18253;
+    private static final int frpTunnelOpenPort = 18252;
+    private static final int largeFrameAgentPort = 18113;
+    private static final int largeFrameOpenPort = 18112;
+    private static final int compressionAgentPort = 18123;
+    private static final int compressionOpenPort = 18122;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+
+        Tunnel tunnel = Tunnel.createRecord("分帧", ProxyType.tcp, frpTunnelOpenPort, frpTunnelAgentPort);
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "framing-agent", frpTunnelAgentPort, mockServerPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testLargeTransferWithFlowControl() throws InterruptedException {
+        testLargeTransfer(vertx, frpTunnelOpenPort);
+    }
+
+    @Test
+    void testLargeTransferWithNegotiatedFrameSize() throws InterruptedException {
+        int maxFrameSize = 1024 * 1024;
+        Tunnel largeFrameTunnel = Tunnel.createRecord("大帧", ProxyType.tcp, largeFrameOpenPort, largeFrameAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withMaxFrameSize(maxFrameSize));
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, largeFrameTunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+
+        Agent agent = new MockAgent(ProxyType.tcp, "large-frame-agent", largeFrameAgentPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withMaxFrameSize(maxFrameSize));
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+
+        testLargeTransfer(vertx, largeFrameOpenPort);
+    }
+
+    @Test
+    void testConcurrentSmallMessagesKeepStreamOrder() throws Exception {
+        // 默认 agent 启用批量帧，多个 stream 的小帧会被合并到同一个 WebSocket 消息中
+        int streams = 32;
+        List<NetSocket> sockets = new ArrayList<>();
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            NetSocket socket = connect(vertx, frpTunnelOpenPort);
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                text.append("s").append(i).append("-m").append(j).append(";");
+            }
+            CompletableFuture<String> reply = new CompletableFuture<>();
+            Buffer received = Buffer.buffer();
+            socket.handler(buffer -> {
+                received.appendBuffer(buffer);
+                if (received.length() >= text.length()) {
+                    reply.complete(received.toString());
+                }
+            });
+            sockets.add(socket);
+            replies.add(reply);
+            expected.add(text.toString());
+        }
+
+        for (int j = 0; j < 20; j++) {
+            for (int i = 0; i < streams; i++) {
+                sockets.get(i).write("s" + i + "-m" + j + ";");
+            }
+        }
+
+        for (int i = 0; i < streams; i++) {
+            Assertions.assertEquals(expected.get(i), replies.get(i).get(5, TimeUnit.SECONDS));
+            sockets.get(i).close();
+        }
+    }
+
+    @Test
+    void testCompressedTunnel() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel compressedTunnel = Tunnel.createRecord("压缩", ProxyType.tcp, compressionOpenPort, compressionAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withCompression(true));
+        TunnelLinkerVerticle.deploy(vertx, compressedTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "compression-agent", compressionAgentPort, mockServerPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+
+        StringBuilder json = new StringBuilder();
+        while (json.length() < 256 * 1024) {
+            json.append("{\"id\":").append(json.length()).append(",\"status\":\"ok\",\"message\":\"hello frp\"}\n");
+        }
+        NetSocket socket = connect(vertx, compressionOpenPort);
+        Assertions.assertEquals(json.toString(), echo(socket, json.toString()));
+        socket.close();
+
+        // 随机数据没有压缩收益，按原样传输
+        byte[] random = new byte[64 * 1024];
+        new Random(7).nextBytes(random);
+        NetSocket randomSocket = connect(vertx, compressionOpenPort);
+        Assertions.assertEquals(Buffer.buffer(random), echo(randomSocket, Buffer.buffer(random)));
+        randomSocket.close();
+
+        TunnelRuntimeRegistry.CompressionStats stats = registry.get(compressedTunnel).compression();
+        Assertions.assertTrue(stats.enabled());
+        Assertions.assertTrue(stats.rawBytes() > 0);
+        Assertions.assertTrue(stats.ratio() < 0.5, "ratio " + stats.ratio());
+        Assertions.assertTrue(stats.skippedBytes() > 0);
+    }
+}
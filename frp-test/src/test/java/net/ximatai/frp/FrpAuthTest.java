@@ -11,7 +11,9 @@ import net.ximatai.frp.common.MessageUtil;
 import net.ximatai.frp.common.OperationType;
 import net.ximatai.frp.common.ProxyType;
 import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
 import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +23,12 @@ import java.util.concurrent.TimeUnit;
 
 @ExtendWith(VertxExtension.class)
 class FrpAuthTest {
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
 
     @Test
     void shouldRejectAgentWithWrongToken(Vertx vertx, VertxTestContext testContext) {
@@ -28,7 +36,7 @@ class FrpAuthTest {
         int agentPort = 19083;
         Tunnel tunnel = Tunnel.createRecord("auth-fail-test", ProxyType.tcp, openPort, agentPort, "right-token");
 
-        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel))
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
                 .compose(id -> vertx.createWebSocketClient(new WebSocketClientOptions()
                                 .setDefaultHost("127.0.0.1")
                                 .setDefaultPort(agentPort))
@@ -58,7 +66,7 @@ class FrpAuthTest {
         int agentPort = 19183;
         Tunnel tunnel = Tunnel.createRecord("no-agent-test", ProxyType.tcp, openPort, agentPort, "token");
 
-        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel))
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
                 .compose(id -> vertx.createNetClient().connect(openPort, "127.0.0.1"))
                 .onSuccess(socket -> {
                     socket.closeHandler(v -> testContext.completeNow());
@@ -73,13 +81,13 @@ class FrpAuthTest {
         int agentPort = 19283;
         Tunnel tunnel = Tunnel.createRecord("unauth-frame-test", ProxyType.tcp, openPort, agentPort, "token");
 
-        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel))
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
                 .compose(id -> vertx.createWebSocketClient(new WebSocketClientOptions()
                                 .setDefaultHost("127.0.0.1")
                                 .setDefaultPort(agentPort))
                         .connect("/"))
                 .onSuccess(ws -> {
-                    ws.writeBinaryMessage(MessageUtil.buildDataMessage(UUID.randomUUID().toString(), Buffer.buffer("bad")));
+                    ws.writeBinaryMessage(MessageUtil.buildDataMessage(1L, Buffer.buffer("bad")));
                     vertx.setTimer(100, ignored -> vertx.createNetClient()
                             .connect(openPort, "127.0.0.1")
                             .onSuccess(socket -> {
@@ -102,7 +110,7 @@ class FrpAuthTest {
         int agentPort = 19383;
         Tunnel tunnel = Tunnel.createRecord("malformed-auth-test", ProxyType.tcp, openPort, agentPort, "token");
 
-        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel))
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
                 .compose(id -> vertx.createWebSocketClient(new WebSocketClientOptions()
                                 .setDefaultHost("127.0.0.1")
                                 .setDefaultPort(agentPort))
@@ -129,7 +137,7 @@ class FrpAuthTest {
                 .setDefaultHost("127.0.0.1")
                 .setDefaultPort(agentPort);
 
-        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel))
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
                 .compose(id -> vertx.createWebSocketClient(options).connect("/"))
                 .onSuccess(first -> {
                     first.frameHandler(frame -> {
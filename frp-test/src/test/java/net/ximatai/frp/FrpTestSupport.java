@@ -0,0 +1,151 @@
+package net.ximatai.frp;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.junit5.VertxTestContext;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 端到端测试共用的收发与等待工具
+ */
+final class FrpTestSupport {
+    private static final long AWAIT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private FrpTestSupport() {
+    }
+
+    /**
+     * 轮询直到条件成立。超时只用来防止测试挂起，不衡量快慢
+     */
+    static void await(String description, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assertions.fail("Timed out waiting for " + description);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    static void awaitAgents(TunnelRuntimeRegistry registry, Tunnel tunnel, int count) throws Exception {
+        await(count + " agents", () -> registry.get(tunnel).agents().size() == count);
+    }
+
+    static void awaitLinkState(AgentLinkerVerticle linker, AgentLinkerVerticle.LinkState state) throws Exception {
+        await("link state " + state, () -> linker.state() == state);
+    }
+
+    static NetSocket connect(Vertx vertx, int port) throws Exception {
+        return vertx.createNetClient().connect(port, "127.0.0.1")
+                .toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    static String echo(NetSocket socket, String text) throws Exception {
+        return echo(socket, Buffer.buffer(text)).toString();
+    }
+
+    static Buffer echo(NetSocket socket, Buffer data) throws Exception {
+        CompletableFuture<Buffer> reply = new CompletableFuture<>();
+        Buffer received = Buffer.buffer();
+        socket.handler(buffer -> {
+            received.appendBuffer(buffer);
+            if (received.length() >= data.length()) {
+                reply.complete(received);
+            }
+        });
+        socket.write(data);
+        return reply.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 新建一个用户连接并回显一次，连接被关闭或超时返回 false
+     */
+    static boolean tryEcho(Vertx vertx, int port, String text) throws Exception {
+        NetSocket socket = connect(vertx, port);
+        CompletableFuture<Boolean> reply = new CompletableFuture<>();
+        Buffer received = Buffer.buffer();
+        socket.handler(buffer -> {
+            received.appendBuffer(buffer);
+            if (received.length() >= text.length()) {
+                reply.complete(text.equals(received.toString()));
+            }
+        });
+        socket.closeHandler(v -> reply.complete(false));
+        socket.write(text);
+        try {
+            return reply.get(1, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } finally {
+            socket.close();
+        }
+    }
+
+    static void testWithPort(Vertx vertx, int port) throws InterruptedException {
+        VertxTestContext testContext = new VertxTestContext();
+
+        String text = "hello world!";
+
+        vertx.createNetClient()
+                .connect(port, "127.0.0.1")
+                .onSuccess(socket -> {
+                    socket.write(text);
+
+                    socket.handler(buffer -> {
+                        testContext.verify(() -> {
+                            Assertions.assertEquals(text, buffer.toString());
+                            testContext.completeNow();
+                        });
+                    });
+                })
+                .onFailure(testContext::failNow);
+
+        testContext.awaitCompletion(10, TimeUnit.SECONDS);
+
+        if (testContext.failed()) {
+            throw new AssertionError(testContext.causeOfFailure());
+        }
+    }
+
+    static void testLargeTransfer(Vertx vertx, int port) throws InterruptedException {
+        VertxTestContext testContext = new VertxTestContext();
+
+        int total = 8 * 1024 * 1024;
+        byte[] bytes = new byte[total];
+        for (int i = 0; i < total; i++) {
+            bytes[i] = (byte) (i % 251);
+        }
+        Buffer payload = Buffer.buffer(bytes);
+        Buffer received = Buffer.buffer(total);
+
+        vertx.createNetClient()
+                .connect(port, "127.0.0.1")
+                .onSuccess(socket -> {
+                    socket.handler(buffer -> {
+                        received.appendBuffer(buffer);
+                        if (received.length() >= total) {
+                            testContext.verify(() -> {
+                                Assertions.assertEquals(payload, received);
+                                testContext.completeNow();
+                            });
+                        }
+                    });
+                    socket.write(payload);
+                })
+                .onFailure(testContext::failNow);
+
+        Assertions.assertTrue(testContext.awaitCompletion(30, TimeUnit.SECONDS));
+        if (testContext.failed()) {
+            throw new AssertionError(testContext.causeOfFailure());
+        }
+    }
+}
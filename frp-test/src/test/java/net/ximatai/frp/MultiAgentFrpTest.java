@@ -0,0 +1,179 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockFaultProxyVerticle;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.ximatai.frp.FrpTestSupport.await;
+import static net.ximatai.frp.FrpTestSupport.awaitAgents;
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+import static net.ximatai.frp.FrpTestSupport.tryEcho;
+
+/**
+ * 同一 tunnel 下多个 agent 的负载均衡、替换排空与热备
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MultiAgentFrpTest {
+    private static final int mockServerPort = 17840;
+    private static final int multiAgentAgentPort = 18153;
+    private static final int multiAgentOpenPort = 18152;
+    private static final int namedUpstreamPort = 17801;
+    private static final int drainAgentPort = 18163;
+    private static final int drainOpenPort = 18162;
+    private static final int drainProxyPort = 18164;
+    private static final int standbyAgentPort = 18173;
+    private static final int standbyOpenPort = 18172;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testMultiAgentRoundRobin() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel multiTunnel = Tunnel.createRecord("多agent", ProxyType.tcp, multiAgentOpenPort, multiAgentAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withBalance(Tunnel.TunnelOptions.BALANCE_ROUND_ROBIN));
+        TunnelLinkerVerticle.deploy(vertx, multiTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        // 两个上游分别在回显内容前加上自己的名字，用来区分连接落到了哪个 agent
+        for (String name : List.of("a", "b")) {
+            int upstreamPort = namedUpstreamPort + ("a".equals(name) ? 0 : 1);
+            vertx.createNetServer()
+                    .connectHandler(socket -> socket.handler(buffer -> socket.write(Buffer.buffer(name).appendBuffer(buffer))))
+                    .listen(upstreamPort)
+                    .toCompletionStage().toCompletableFuture().join();
+            Agent agent = new MockAgent(ProxyType.tcp, "multi-agent-" + name, multiAgentAgentPort, upstreamPort, "test-token");
+            vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+        }
+        awaitAgents(registry, multiTunnel, 2);
+
+        List<String> served = new ArrayList<>();
+        List<NetSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            NetSocket socket = connect(vertx, multiAgentOpenPort);
+            served.add(echo(socket, Buffer.buffer("xx")).getString(0, 1));
+            sockets.add(socket);
+        }
+        Assertions.assertEquals(2, served.stream().filter("a"::equals).count());
+        Assertions.assertEquals(2, served.stream().filter("b"::equals).count());
+
+        // 每个 agent 的连接数单独统计
+        await("4 active connections", () -> registry.get(multiTunnel).activeConnections() == 4);
+        for (TunnelRuntimeRegistry.AgentRuntime agent : registry.get(multiTunnel).agents()) {
+            Assertions.assertEquals(2, agent.activeConnections());
+        }
+        sockets.forEach(NetSocket::close);
+    }
+
+    @Test
+    void testReplacedAgentDrainsExistingStreams() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel drainTunnel = Tunnel.createRecord("排空", ProxyType.tcp, drainOpenPort, drainAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withDrainTimeout(30));
+        TunnelLinkerVerticle.deploy(vertx, drainTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        // 旧 agent 经代理接入，排空结束后拒绝它重连，否则它会立即重连并替换新 agent
+        MockFaultProxyVerticle proxy = new MockFaultProxyVerticle(drainProxyPort, drainAgentPort);
+        vertx.deployVerticle(proxy).toCompletionStage().toCompletableFuture().join();
+        Agent oldAgent = new MockAgent(ProxyType.tcp, "drain-old", drainProxyPort, mockServerPort, "test-token");
+        String oldAgentId = vertx.deployVerticle(new AgentLinkerVerticle(oldAgent))
+                .toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, drainTunnel, 1);
+        String oldSessionId = registry.get(drainTunnel).agents().getFirst().sessionId();
+
+        NetSocket oldStream = connect(vertx, drainOpenPort);
+        Assertions.assertEquals("before", echo(oldStream, "before"));
+
+        Agent newAgent = new MockAgent(ProxyType.tcp, "drain-new", drainAgentPort, mockServerPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(newAgent)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, drainTunnel, 2);
+
+        // 替换期间两个会话同时可见，旧会话继续服务已有连接
+        List<TunnelRuntimeRegistry.AgentRuntime> agents = registry.get(drainTunnel).agents();
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.DRAINING, agents.get(0).state());
+        Assertions.assertEquals(1, agents.get(0).activeConnections());
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, agents.get(1).state());
+        Assertions.assertEquals("during", echo(oldStream, "during"));
+
+        NetSocket newStream = connect(vertx, drainOpenPort);
+        Assertions.assertEquals("new", echo(newStream, "new"));
+
+        // 旧连接结束后旧会话随即关闭，新会话和它的连接不受影响
+        proxy.refuse();
+        oldStream.close();
+        await("old session to close", () -> registry.get(drainTunnel).agents().stream()
+                .noneMatch(agent -> agent.sessionId().equals(oldSessionId)));
+        TunnelRuntimeRegistry.AgentRuntime remaining = registry.get(drainTunnel).agents().getFirst();
+        Assertions.assertEquals("drain-new", remaining.agentName());
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, remaining.state());
+        Assertions.assertEquals("still", echo(newStream, "still"));
+        newStream.close();
+        vertx.undeploy(oldAgentId).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void testStandbyAgentTakesOverImmediately() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel standbyTunnel = Tunnel.createRecord("备用", ProxyType.tcp, standbyOpenPort, standbyAgentPort);
+        TunnelLinkerVerticle.deploy(vertx, standbyTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        Agent primary = new MockAgent(ProxyType.tcp, "standby-primary", standbyAgentPort, mockServerPort, "test-token");
+        String primaryId = vertx.deployVerticle(new AgentLinkerVerticle(primary))
+                .toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, standbyTunnel, 1);
+        Agent backup = new MockAgent(ProxyType.tcp, "standby-backup", standbyAgentPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withStandby(true));
+        vertx.deployVerticle(new AgentLinkerVerticle(backup)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, standbyTunnel, 2);
+
+        List<TunnelRuntimeRegistry.AgentRuntime> agents = registry.get(standbyTunnel).agents();
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, agents.get(0).state());
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.STANDBY, agents.get(1).state());
+        Assertions.assertEquals("standby-primary", registry.get(standbyTunnel).agentName());
+        Assertions.assertTrue(tryEcho(vertx, standbyOpenPort, "primary"));
+        String backupSessionId = agents.get(1).sessionId();
+
+        // 活跃 agent 断开后，备用 agent 的原会话直接提升，无需重新建连和鉴权
+        vertx.undeploy(primaryId).toCompletionStage().toCompletableFuture().join();
+        await("standby agent to serve new connections", () -> tryEcho(vertx, standbyOpenPort, "backup"));
+        awaitAgents(registry, standbyTunnel, 1);
+        TunnelRuntimeRegistry.AgentRuntime promoted = registry.get(standbyTunnel).agents().getFirst();
+        Assertions.assertEquals("standby-backup", promoted.agentName());
+        Assertions.assertEquals(backupSessionId, promoted.sessionId());
+        Assertions.assertEquals(TunnelRuntimeRegistry.AgentState.ACTIVE, promoted.state());
+    }
+}
@@ -0,0 +1,120 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+
+/**
+ * 一个 agent 的多条链路与一个 tunnel 的多个实例
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MultiLinkFrpTest {
+    private static final int mockServerPort = 17820;
+    private static final int stripedAgentPort = 18093;
+    private static final int stripedOpenPort = 18092;
+    private static final int multiInstanceAgentPort = 18103;
+    private static final int multiInstanceOpenPort = 18102;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testLinkLossOnlyAffectsItsStreams() throws Exception {
+        Tunnel stripedTunnel = Tunnel.createRecord("多链路", ProxyType.tcp, stripedOpenPort, stripedAgentPort);
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, stripedTunnel, authenticator)).toCompletionStage().toCompletableFuture().join();
+
+        Agent stripedAgent = new MockAgent(ProxyType.tcp, "striped-agent", stripedAgentPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withLinks(3));
+        List<String> deploymentIds = new ArrayList<>();
+        for (int i = 0; i < stripedAgent.links(); i++) {
+            deploymentIds.add(vertx.deployVerticle(new AgentLinkerVerticle(stripedAgent, "striped-group"))
+                    .toCompletionStage().toCompletableFuture().join());
+        }
+
+        // 三条链路各承载一个请求
+        List<NetSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            NetSocket socket = connect(vertx, stripedOpenPort);
+            Assertions.assertEquals("ping-" + i, echo(socket, "ping-" + i));
+            sockets.add(socket);
+        }
+
+        AtomicIntegerArray closed = new AtomicIntegerArray(sockets.size());
+        for (int i = 0; i < sockets.size(); i++) {
+            int index = i;
+            sockets.get(i).closeHandler(v -> closed.set(index, 1));
+        }
+
+        vertx.undeploy(deploymentIds.get(0)).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Thread.sleep(500);
+
+        int closedCount = 0;
+        for (int i = 0; i < sockets.size(); i++) {
+            if (closed.get(i) == 1) {
+                closedCount++;
+            } else {
+                Assertions.assertEquals("again-" + i, echo(sockets.get(i), "again-" + i));
+            }
+        }
+        Assertions.assertEquals(1, closedCount);
+    }
+
+    @Test
+    void testMultiInstanceTunnel() throws Exception {
+        Tunnel multiInstanceTunnel = Tunnel.createRecord("多实例", ProxyType.tcp, multiInstanceOpenPort, multiInstanceAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withInstances(4));
+        TunnelLinkerVerticle.deploy(vertx, multiInstanceTunnel, new TunnelRuntimeRegistry(), authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+
+        MockAgent agent = new MockAgent(ProxyType.tcp, "multi-instance-agent", multiInstanceAgentPort,
+                mockServerPort, "test-token", MockAgent.Options.DEFAULT.withLinks(2));
+        vertx.deployVerticle(() -> new AgentLinkerVerticle(agent, "multi-instance-group"),
+                        new DeploymentOptions().setInstances(agent.links()))
+                .toCompletionStage().toCompletableFuture().join();
+
+        // 用户连接轮流落在各实例上，其中一部分与承载它的链路不在同一 event loop
+        for (int i = 0; i < 16; i++) {
+            NetSocket socket = connect(vertx, multiInstanceOpenPort);
+            Assertions.assertEquals("multi-" + i, echo(socket, "multi-" + i));
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.AgentEndpoint;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+import static net.ximatai.frp.FrpTestSupport.await;
+import static net.ximatai.frp.FrpTestSupport.awaitAgents;
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+import static net.ximatai.frp.FrpTestSupport.tryEcho;
+
+/**
+ * 共用 agent 端口与单链路多 tunnel
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SharedEndpointFrpTest {
+    private static final int mockServerPort = 17860;
+    private static final int sharedEndpointPort = 18213;
+    private static final int sharedFirstOpenPort = 18212;
+    private static final int sharedSecondOpenPort = 18214;
+    private static final int muxEndpointPort = 18223;
+    private static final int muxFirstOpenPort = 18222;
+    private static final int muxSecondOpenPort = 18224;
+    private static final int muxThirdOpenPort = 18226;
+    private static final int muxUpstreamPort = 18225;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testSharedAgentEndpointRoutesByTunnelName() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        AgentEndpoint endpoint = AgentEndpoint.deploy(vertx, sharedEndpointPort, 2, SocketTuning.DEFAULT,
+                AgentEndpoint.Heartbeat.DEFAULT)
+                .toCompletionStage().toCompletableFuture().join();
+        // 两个 tunnel 都不监听自己的 agent 端口
+        Tunnel first = Tunnel.createRecord("共用端口一", ProxyType.tcp, sharedFirstOpenPort, 0, "first-token",
+                Tunnel.TunnelOptions.DEFAULT.withInstances(2));
+        Tunnel second = Tunnel.createRecord("共用端口二", ProxyType.tcp, sharedSecondOpenPort, 0, "second-token");
+        for (Tunnel tunnel : List.of(first, second)) {
+            TunnelLinkerVerticle.deploy(vertx, tunnel, registry, SocketTuning.DEFAULT, authenticator,
+                    endpoint).toCompletionStage().toCompletableFuture().join();
+        }
+
+        // 未知 tunnel 与 token 不匹配的 agent 都被拒绝，不影响其他 tunnel
+        MockAgent.Options options = MockAgent.Options.DEFAULT;
+        vertx.deployVerticle(new AgentLinkerVerticle(new MockAgent(ProxyType.tcp, "unknown", sharedEndpointPort,
+                mockServerPort, "first-token", options.withTunnelName("不存在"))));
+        vertx.deployVerticle(new AgentLinkerVerticle(new MockAgent(ProxyType.tcp, "wrong-token", sharedEndpointPort,
+                mockServerPort, "first-token", options.withTunnelName(second.name()))));
+        vertx.deployVerticle(new AgentLinkerVerticle(new MockAgent(ProxyType.tcp, "first", sharedEndpointPort,
+                        mockServerPort, "first-token", options.withTunnelName(first.name()).withLinks(2))))
+                .toCompletionStage().toCompletableFuture().join();
+        vertx.deployVerticle(new AgentLinkerVerticle(new MockAgent(ProxyType.tcp, "second", sharedEndpointPort,
+                        mockServerPort, "second-token", options.withTunnelName(second.name()))))
+                .toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, first, 1);
+        awaitAgents(registry, second, 1);
+        Assertions.assertEquals("first", registry.get(first).agents().getFirst().agentName());
+        Assertions.assertEquals("second", registry.get(second).agents().getFirst().agentName());
+
+        for (int port : List.of(sharedFirstOpenPort, sharedSecondOpenPort)) {
+            NetSocket socket = connect(vertx, port);
+            Assertions.assertEquals("shared " + port, echo(socket, "shared " + port));
+            Buffer large = Buffer.buffer(new byte[256 * 1024]);
+            Assertions.assertEquals(large, echo(socket, large));
+            socket.close();
+        }
+    }
+
+    @Test
+    void testOneAgentLinkServesSeveralTunnels() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        AgentEndpoint endpoint = AgentEndpoint.deploy(vertx, muxEndpointPort, 1, SocketTuning.DEFAULT,
+                new AgentEndpoint.Heartbeat(1, 3))
+                .toCompletionStage().toCompletableFuture().join();
+        Tunnel first = Tunnel.createRecord("多路一", ProxyType.tcp, muxFirstOpenPort, 0, "first-token",
+                Tunnel.TunnelOptions.DEFAULT.withInstances(2));
+        Tunnel second = Tunnel.createRecord("多路二", ProxyType.tcp, muxSecondOpenPort, 0, "second-token");
+        Tunnel third = Tunnel.createRecord("多路三", ProxyType.tcp, muxThirdOpenPort, 0, "third-token");
+        for (Tunnel tunnel : List.of(first, second, third)) {
+            TunnelLinkerVerticle.deploy(vertx, tunnel, registry, SocketTuning.DEFAULT, authenticator,
+                    endpoint).toCompletionStage().toCompletableFuture().join();
+        }
+        // 第二个 tunnel 的上游在回显内容前加上 b，用来区分连接落到了哪个上游
+        vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(buffer -> socket.write(Buffer.buffer("b").appendBuffer(buffer))))
+                .listen(muxUpstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        // 一条链路接入三个 tunnel，其中 token 错误的只拒绝该 tunnel
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(new MockAgent(ProxyType.tcp, "mux", muxEndpointPort,
+                mockServerPort, "first-token", MockAgent.Options.DEFAULT
+                .withTunnelName(first.name())
+                .withTunnel(second.name(), muxUpstreamPort, "second-token")
+                .withTunnel(third.name(), muxUpstreamPort, "wrong-token")));
+        vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, first, 1);
+        awaitAgents(registry, second, 1);
+        Assertions.assertEquals(AgentLinkerVerticle.LinkState.CONNECTED, linker.state());
+        Assertions.assertTrue(registry.get(third).agents().isEmpty());
+
+        NetSocket firstSocket = connect(vertx, muxFirstOpenPort);
+        NetSocket secondSocket = connect(vertx, muxSecondOpenPort);
+        Assertions.assertEquals("mux", echo(firstSocket, "mux"));
+        Assertions.assertEquals("b", echo(secondSocket, "xx").substring(0, 1));
+        Buffer large = Buffer.buffer(new byte[256 * 1024]);
+        Assertions.assertEquals(large, echo(firstSocket, large));
+        Assertions.assertFalse(tryEcho(vertx, muxThirdOpenPort, "unserved"));
+        firstSocket.close();
+        secondSocket.close();
+
+        // 链路只有一个心跳，往返时延记录到每个 tunnel
+        await("heartbeat round trip on both tunnels", () -> registry.get(first).agents().getFirst().rttMicros() >= 0
+                && registry.get(second).agents().getFirst().rttMicros() >= 0);
+    }
+}
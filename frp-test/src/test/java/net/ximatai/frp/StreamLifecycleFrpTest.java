@@ -0,0 +1,142 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static net.ximatai.frp.FrpTestSupport.connect;
+import static net.ximatai.frp.FrpTestSupport.echo;
+
+/**
+ * 用户连接的建立与超时
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StreamLifecycleFrpTest {
+    private static final int mockServerPort = 17830;
+    private static final int idleAgentPort = 18133;
+    private static final int idleOpenPort = 18132;
+    private static final int connectFailAgentPort = 18143;
+    private static final int connectFailOpenPort = 18142;
+    private static final int closedUpstreamPort = 17799;
+    private static final int earlyDataAgentPort = 18243;
+    private static final int earlyDataOpenPort = 18242;
+    private static final int greetingUpstreamPort = 17803;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testIdleTimeoutKeepsActiveStreams() throws Exception {
+        Tunnel idleTunnel = Tunnel.createRecord("空闲超时", ProxyType.tcp, idleOpenPort, idleAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withIdleTimeout(2));
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, idleTunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "idle-agent", idleAgentPort, mockServerPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+
+        NetSocket idle = connect(vertx, idleOpenPort);
+        CompletableFuture<Void> idleClosed = new CompletableFuture<>();
+        idle.closeHandler(v -> idleClosed.complete(null));
+        NetSocket active = connect(vertx, idleOpenPort);
+        CompletableFuture<Void> activeClosed = new CompletableFuture<>();
+        active.closeHandler(v -> activeClosed.complete(null));
+
+        // 持续有流量的连接超过空闲超时仍然保持，空闲连接被关闭
+        for (int i = 0; i < 6; i++) {
+            Assertions.assertEquals("ping-" + i, echo(active, "ping-" + i));
+            Thread.sleep(700);
+        }
+        idleClosed.get(2, TimeUnit.SECONDS);
+        Assertions.assertFalse(activeClosed.isDone());
+        active.close();
+    }
+
+    @Test
+    void testConnectAckAndUpstreamFailure() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel failTunnel = Tunnel.createRecord("连接失败", ProxyType.tcp, connectFailOpenPort, connectFailAgentPort);
+        TunnelLinkerVerticle.deploy(vertx, failTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "connect-fail-agent", connectFailAgentPort, closedUpstreamPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+
+        // 目标服务未监听，用户连接在发出首包后被明确关闭，而不是等待超时
+        NetSocket socket = connect(vertx, connectFailOpenPort);
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        socket.closeHandler(v -> closed.complete(null));
+        socket.write("GET / HTTP/1.0\r\n\r\n");
+        closed.get(5, TimeUnit.SECONDS);
+
+        TunnelRuntimeRegistry.ConnectStats stats = registry.get(failTunnel).connects();
+        Assertions.assertEquals(1, stats.failed());
+        Assertions.assertEquals(Long.valueOf(1), stats.failures().get("REFUSED"));
+    }
+
+    @Test
+    void testEarlyDataHoldsConnectUntilFirstRead() throws Exception {
+        // 上游在连接建立后先发问候语，再回显收到的数据
+        vertx.createNetServer()
+                .connectHandler(socket -> {
+                    socket.write("hello;");
+                    socket.handler(socket::write);
+                })
+                .listen(greetingUpstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+        Tunnel earlyTunnel = Tunnel.createRecord("首包", ProxyType.tcp, earlyDataOpenPort, earlyDataAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withEarlyData(true));
+        vertx.deployVerticle(new TunnelLinkerVerticle(vertx, earlyTunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "early-data-agent", earlyDataAgentPort, greetingUpstreamPort, "test-token");
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+
+        NetSocket socket = connect(vertx, earlyDataOpenPort);
+        Buffer received = Buffer.buffer();
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        socket.handler(buffer -> {
+            received.appendBuffer(buffer);
+            if (received.toString().endsWith("ping")) {
+                reply.complete(received.toString());
+            }
+        });
+
+        // CONNECT 等到用户发送数据才发出，此前上游连接尚未建立
+        Thread.sleep(300);
+        Assertions.assertEquals(0, received.length());
+        socket.write("ping");
+        Assertions.assertEquals("hello;ping", reply.get(5, TimeUnit.SECONDS));
+        socket.close();
+    }
+}
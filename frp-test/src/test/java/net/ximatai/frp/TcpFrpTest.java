@@ -2,25 +2,23 @@ package net.ximatai.frp;
 
 import io.quarkus.test.junit.QuarkusTest;
 import io.vertx.core.Vertx;
-import io.vertx.junit5.VertxTestContext;
 import jakarta.inject.Inject;
 import net.ximatai.frp.agent.config.Agent;
-import net.ximatai.frp.agent.config.Auth;
-import net.ximatai.frp.agent.config.FrpTunnel;
-import net.ximatai.frp.agent.config.ProxyServer;
 import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
 import net.ximatai.frp.mock.MockTcpServerVerticle;
 import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
 import net.ximatai.frp.server.service.TunnelLinkerVerticle;
-import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
+import static net.ximatai.frp.FrpTestSupport.testWithPort;
 
 @QuarkusTest
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -31,6 +29,8 @@ class TcpFrpTest {
     private static final int frpTunnelAgentPort = 18083;
     private static final int frpTunnelOpenPort = 18082;
 
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
     @Inject
     Vertx vertx;
 
@@ -46,58 +46,13 @@ class TcpFrpTest {
 
         Tunnel testTunnel = Tunnel.createRecord("测试", ProxyType.http, frpTunnelOpenPort, frpTunnelAgentPort);
 
-        TunnelLinkerVerticle tunnelLinkerVerticle = new TunnelLinkerVerticle(vertx, testTunnel);
+        TunnelLinkerVerticle tunnelLinkerVerticle = new TunnelLinkerVerticle(vertx, testTunnel, authenticator);
 
         vertx.deployVerticle(tunnelLinkerVerticle).toCompletionStage().toCompletableFuture().join();
 
         LOGGER.info("TunnelLinker success.");
 
-        Agent testAgent = new Agent() {
-            @Override
-            public ProxyType type() {
-                return ProxyType.tcp;
-            }
-
-            @Override
-            public String agentName() {
-                return "tcp-test-agent";
-            }
-
-            @Override
-            public FrpTunnel frpTunnel() {
-                return new FrpTunnel() {
-                    @Override
-                    public String host() {
-                        return "127.0.0.1";
-                    }
-
-                    @Override
-                    public int port() {
-                        return frpTunnelAgentPort;
-                    }
-                };
-            }
-
-            @Override
-            public Auth auth() {
-                return () -> "test-token";
-            }
-
-            @Override
-            public ProxyServer proxy() {
-                return new ProxyServer() {
-                    @Override
-                    public String host() {
-                        return "127.0.0.1";
-                    }
-
-                    @Override
-                    public int port() {
-                        return mockServerPort;
-                    }
-                };
-            }
-        };
+        Agent testAgent = new MockAgent(ProxyType.tcp, "tcp-test-agent", frpTunnelAgentPort, mockServerPort, "test-token");
 
         AgentLinkerVerticle agentLinkerVerticle = new AgentLinkerVerticle(testAgent);
 
@@ -107,40 +62,19 @@ class TcpFrpTest {
 
     }
 
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
     @Test
     void testMockServer() throws InterruptedException {
-        testWithPort(mockServerPort);
+        testWithPort(vertx, mockServerPort);
     }
 
     @Test
     void testFrpServer() throws InterruptedException {
-        testWithPort(frpTunnelOpenPort);
-    }
-
-    private void testWithPort(int port) throws InterruptedException {
-        VertxTestContext testContext = new VertxTestContext();
-
-        String text = "hello world!";
-
-        vertx.createNetClient()
-                .connect(port, "127.0.0.1")
-                .onSuccess(socket -> {
-                    socket.write(text);
-
-                    socket.handler(buffer -> {
-                        testContext.verify(() -> {
-                            Assertions.assertEquals(text, buffer.toString());
-                            testContext.completeNow();
-                        });
-                    });
-                })
-                .onFailure(testContext::failNow);
-
-        testContext.awaitCompletion(10, TimeUnit.SECONDS);
-
-        if (testContext.failed()) {
-            throw new AssertionError(testContext.causeOfFailure());
-        }
+        testWithPort(vertx, frpTunnelOpenPort);
     }
 
 }
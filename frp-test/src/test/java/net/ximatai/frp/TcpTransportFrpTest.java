@@ -0,0 +1,70 @@
+package net.ximatai.frp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import jakarta.inject.Inject;
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.LinkSocket;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.mock.MockTcpServerVerticle;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import static net.ximatai.frp.FrpTestSupport.await;
+import static net.ximatai.frp.FrpTestSupport.awaitAgents;
+import static net.ximatai.frp.FrpTestSupport.testLargeTransfer;
+import static net.ximatai.frp.FrpTestSupport.testWithPort;
+
+/**
+ * 原始 TCP agent 链路传输
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TcpTransportFrpTest {
+    private static final int mockServerPort = 17870;
+    private static final int tcpTransportAgentPort = 18233;
+    private static final int tcpTransportOpenPort = 18232;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @Inject
+    Vertx vertx;
+
+    @BeforeAll
+    void beforeAll() {
+        vertx.deployVerticle(new MockTcpServerVerticle(mockServerPort))
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
+    @Test
+    void testTcpAgentTransport() throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        Tunnel tcpTunnel = Tunnel.createRecord("TCP 传输", ProxyType.tcp, tcpTransportOpenPort, tcpTransportAgentPort,
+                Tunnel.TunnelOptions.DEFAULT.withHeartbeatInterval(1).withAgentTransport(LinkSocket.TRANSPORT_TCP));
+        TunnelLinkerVerticle.deploy(vertx, tcpTunnel, registry, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        Agent agent = new MockAgent(ProxyType.tcp, "tcp-transport-agent", tcpTransportAgentPort, mockServerPort, "test-token",
+                MockAgent.Options.DEFAULT.withTransport(LinkSocket.TRANSPORT_TCP).withHeartbeat(1, 3));
+        vertx.deployVerticle(new AgentLinkerVerticle(agent)).toCompletionStage().toCompletableFuture().join();
+        awaitAgents(registry, tcpTunnel, 1);
+
+        testWithPort(vertx, tcpTransportOpenPort);
+        testLargeTransfer(vertx, tcpTransportOpenPort);
+
+        // 心跳经长度前缀的 PING / PONG 往返
+        await("heartbeat round trip", () -> registry.get(tcpTunnel).agents().getFirst().rttMicros() >= 0);
+    }
+}
@@ -6,14 +6,14 @@ import io.restassured.config.HttpClientConfig;
 import io.vertx.core.Vertx;
 import jakarta.inject.Inject;
 import net.ximatai.frp.agent.config.Agent;
-import net.ximatai.frp.agent.config.Auth;
-import net.ximatai.frp.agent.config.FrpTunnel;
-import net.ximatai.frp.agent.config.ProxyServer;
 import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
 import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
 import net.ximatai.frp.mock.MockWebServerVerticle;
 import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
 import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -43,6 +43,8 @@ class WebFrpTest {
                 );
     }
 
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
     @Inject
     Vertx vertx;
 
@@ -60,58 +62,13 @@ class WebFrpTest {
 
         Tunnel testTunnel = Tunnel.createRecord("测试", ProxyType.http, frpTunnelOpenPort, frpTunnelAgentPort);
 
-        TunnelLinkerVerticle tunnelLinkerVerticle = new TunnelLinkerVerticle(vertx, testTunnel);
+        TunnelLinkerVerticle tunnelLinkerVerticle = new TunnelLinkerVerticle(vertx, testTunnel, authenticator);
 
         vertx.deployVerticle(tunnelLinkerVerticle).toCompletionStage().toCompletableFuture().join();
 
         LOGGER.info("TunnelLinker success.");
 
-        Agent testAgent = new Agent() {
-            @Override
-            public ProxyType type() {
-                return ProxyType.http;
-            }
-
-            @Override
-            public String agentName() {
-                return "web-test-agent";
-            }
-
-            @Override
-            public FrpTunnel frpTunnel() {
-                return new FrpTunnel() {
-                    @Override
-                    public String host() {
-                        return "127.0.0.1";
-                    }
-
-                    @Override
-                    public int port() {
-                        return frpTunnelAgentPort;
-                    }
-                };
-            }
-
-            @Override
-            public Auth auth() {
-                return () -> "test-token";
-            }
-
-            @Override
-            public ProxyServer proxy() {
-                return new ProxyServer() {
-                    @Override
-                    public String host() {
-                        return "127.0.0.1";
-                    }
-
-                    @Override
-                    public int port() {
-                        return mockServerPort;
-                    }
-                };
-            }
-        };
+        Agent testAgent = new MockAgent(ProxyType.http, "web-test-agent", frpTunnelAgentPort, mockServerPort, "test-token");
 
         AgentLinkerVerticle agentLinkerVerticle = new AgentLinkerVerticle(testAgent);
 
@@ -121,6 +78,11 @@ class WebFrpTest {
 
     }
 
+    @AfterAll
+    void afterAll() {
+        authenticator.close();
+    }
+
     @Test
     void testMockServer() {
         testWithPort(mockServerPort);
@@ -0,0 +1,175 @@
+package net.ximatai.frp.bench;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.MessageUtil;
+import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.StreamWindow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agent 数据通路吞吐：对比旧实现每帧获取 shared-data 锁的分发开销，与当前 event loop 内直接分发的端到端帧率。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class AgentDataPathBenchmark {
+    private static final int STREAMS = 16;
+    private static final int FRAMES = 200_000;
+    private static final int LOCK_FRAMES = 50_000;
+    private static final int FRAME_PAYLOAD = 1024;
+
+    @Test
+    void sharedDataLockDispatchBaseline(Vertx vertx) throws Exception {
+        LongObjectHashMap<Object> table = streamTable();
+        CompletableFuture<Long> finished = new CompletableFuture<>();
+
+        vertx.runOnContext(v -> {
+            long start = System.nanoTime();
+            int[] remaining = {LOCK_FRAMES};
+            for (int i = 0; i < LOCK_FRAMES; i++) {
+                long requestId = i % STREAMS + 1;
+                vertx.sharedData().getLock(String.valueOf(requestId)).onComplete(ar -> {
+                    if (ar.succeeded()) {
+                        table.get(requestId);
+                        ar.result().release();
+                    }
+                    if (--remaining[0] == 0) {
+                        finished.complete(System.nanoTime() - start);
+                    }
+                });
+            }
+        });
+
+        long elapsed = finished.get(60, TimeUnit.SECONDS);
+        BenchmarkSupport.report("agent dispatch (shared-data lock per frame, before)", "%.0f frames/s",
+                BenchmarkSupport.perSecond(LOCK_FRAMES, elapsed));
+    }
+
+    @Test
+    void eventLoopDispatch(Vertx vertx) throws Exception {
+        LongObjectHashMap<Object> table = streamTable();
+        CompletableFuture<Long> finished = new CompletableFuture<>();
+
+        AtomicLong hits = new AtomicLong();
+
+        vertx.runOnContext(v -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < FRAMES; i++) {
+                if (table.get(i % STREAMS + 1) != null) {
+                    hits.incrementAndGet();
+                }
+            }
+            finished.complete(System.nanoTime() - start);
+        });
+
+        long elapsed = finished.get(60, TimeUnit.SECONDS);
+        Assertions.assertEquals(FRAMES, hits.get());
+        BenchmarkSupport.report("agent dispatch (event loop confined, after)", "%.0f frames/s",
+                BenchmarkSupport.perSecond(FRAMES, elapsed));
+    }
+
+    @Test
+    void agentEndToEndFramesPerSecond(Vertx vertx) throws Exception {
+        int serverPort = 29083;
+        int upstreamPort = 29084;
+        long totalBytes = (long) FRAMES * FRAME_PAYLOAD;
+        AtomicLong startedAt = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+        CompletableFuture<Long> finished = new CompletableFuture<>();
+
+        vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(buffer -> {
+                    if (received.addAndGet(buffer.length()) >= totalBytes) {
+                        finished.complete(System.nanoTime() - startedAt.get());
+                    }
+                }))
+                .listen(upstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        vertx.createHttpServer(new HttpServerOptions().setMaxWebSocketFrameSize(65536))
+                .webSocketHandler(ws -> new FakeServerSession(ws, startedAt).start())
+                .listen(serverPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        vertx.deployVerticle(new AgentLinkerVerticle(BenchmarkSupport.agent("bench-agent", serverPort, upstreamPort, "token")))
+                .toCompletionStage().toCompletableFuture().join();
+
+        long elapsed = finished.get(120, TimeUnit.SECONDS);
+        BenchmarkSupport.report("agent end-to-end DATA", "%.0f frames/s, %.1f MB/s (%d streams, %d B payload)",
+                BenchmarkSupport.perSecond(FRAMES, elapsed),
+                BenchmarkSupport.perSecond(totalBytes, elapsed) / (1024 * 1024),
+                STREAMS, FRAME_PAYLOAD);
+    }
+
+    private LongObjectHashMap<Object> streamTable() {
+        LongObjectHashMap<Object> table = new LongObjectHashMap<>();
+        for (long requestId = 1; requestId <= STREAMS; requestId++) {
+            table.put(requestId, new Object());
+        }
+        return table;
+    }
+
+    /**
+     * 模拟 server：鉴权后打开 STREAMS 个 stream，并在流控窗口内持续发送 DATA
+     */
+    private static class FakeServerSession {
+        private final ServerWebSocket ws;
+        private final AtomicLong startedAt;
+        private final long[] credits = new long[STREAMS + 1];
+        private final int[] sent = new int[STREAMS + 1];
+        private final Buffer chunk = Buffer.buffer(new byte[FRAME_PAYLOAD]);
+
+        FakeServerSession(ServerWebSocket ws, AtomicLong startedAt) {
+            this.ws = ws;
+            this.startedAt = startedAt;
+        }
+
+        void start() {
+            ws.frameHandler(frame -> {
+                if (!frame.isBinary()) {
+                    return;
+                }
+                Buffer data = frame.binaryData();
+                OperationType operationType = MessageUtil.getOperationType(data);
+                if (operationType == OperationType.AUTH) {
+                    ws.writeBinaryMessage(MessageUtil.buildControlMessage(OperationType.AUTH_OK, new JsonObject()
+                            .put("version", 1)
+                            .put("sessionId", "bench")
+                            .put("window", StreamWindow.DEFAULT_WINDOW)));
+                    startedAt.set(System.nanoTime());
+                    for (int requestId = 1; requestId <= STREAMS; requestId++) {
+                        ws.writeBinaryMessage(MessageUtil.buildOperationMessage(requestId, OperationType.CONNECT));
+                        credits[requestId] = StreamWindow.DEFAULT_WINDOW;
+                        pump(requestId);
+                    }
+                } else if (operationType == OperationType.WINDOW_UPDATE) {
+                    int requestId = (int) MessageUtil.getRequestId(data);
+                    credits[requestId] += MessageUtil.getWindowIncrement(data);
+                    pump(requestId);
+                }
+            });
+        }
+
+        private void pump(int requestId) {
+            int framesPerStream = FRAMES / STREAMS;
+            while (credits[requestId] > 0 && sent[requestId] < framesPerStream) {
+                ws.writeBinaryMessage(MessageUtil.buildDataMessage(requestId, chunk));
+                credits[requestId] -= FRAME_PAYLOAD;
+                sent[requestId]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.LinkSocket;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket 与原始 TCP 两种 agent 链路传输的对比：大块上传的吞吐，以及大量 stream 收发小消息的消息速率，
+ * 两者都统计每 MB 消耗的进程 CPU 时间。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class AgentTransportBenchmark {
+    private static final int BULK_STREAMS = 4;
+    private static final int BYTES_PER_STREAM = 64 * 1024 * 1024;
+    private static final int CHUNK = 16 * 1024;
+    private static final int SMALL_STREAMS = 256;
+    private static final int MESSAGES_PER_STREAM = 2_000;
+    private static final int MESSAGE_SIZE = 64;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    // 两种传输交替运行两轮，第一轮包含 JIT 预热，以第二轮的结果对比
+    @Test
+    void bulkThroughputByTransport(Vertx vertx) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            bulk(vertx, LinkSocket.TRANSPORT_WEBSOCKET, 29800 + round * 40);
+            bulk(vertx, LinkSocket.TRANSPORT_TCP, 29810 + round * 40);
+        }
+    }
+
+    @Test
+    void smallMessagesByTransport(Vertx vertx) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            smallMessages(vertx, LinkSocket.TRANSPORT_WEBSOCKET, 29820 + round * 40);
+            smallMessages(vertx, LinkSocket.TRANSPORT_TCP, 29830 + round * 40);
+        }
+    }
+
+    private void bulk(Vertx vertx, String transport, int basePort) throws Exception {
+        long totalBytes = (long) BULK_STREAMS * BYTES_PER_STREAM;
+        AtomicLong received = new AtomicLong();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(buffer -> {
+                    if (received.addAndGet(buffer.length()) >= totalBytes) {
+                        finished.complete(null);
+                    }
+                }))
+                .listen(basePort)
+                .toCompletionStage().toCompletableFuture().join();
+        List<String> deployments = deploy(vertx, transport, basePort);
+
+        Buffer chunk = Buffer.buffer(new byte[CHUNK]);
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        List<Future<Void>> uploads = new ArrayList<>();
+        for (int i = 0; i < BULK_STREAMS; i++) {
+            uploads.add(vertx.createNetClient().connect(basePort + 2, "127.0.0.1")
+                    .map(socket -> {
+                        int[] written = {0};
+                        Runnable[] pump = new Runnable[1];
+                        pump[0] = () -> {
+                            while (written[0] < BYTES_PER_STREAM && !socket.writeQueueFull()) {
+                                socket.write(chunk);
+                                written[0] += CHUNK;
+                            }
+                            if (written[0] < BYTES_PER_STREAM) {
+                                socket.drainHandler(v -> pump[0].run());
+                            }
+                        };
+                        pump[0].run();
+                        return null;
+                    }));
+        }
+        Future.all(uploads).toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        finished.get(300, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        long cpu = processCpuNanos() - cpuStart;
+
+        BenchmarkSupport.report("agent transport", "%s bulk, %d streams x %d MB: %.1f MB/s, %.1f ms CPU/MB",
+                transport, BULK_STREAMS, BYTES_PER_STREAM / (1024 * 1024),
+                BenchmarkSupport.perSecond(totalBytes, elapsed) / (1024 * 1024),
+                cpu / 1_000_000.0 / (totalBytes / (1024.0 * 1024)));
+
+        undeploy(vertx, deployments);
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private void smallMessages(Vertx vertx, String transport, int basePort) throws Exception {
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(socket::write))
+                .listen(basePort)
+                .toCompletionStage().toCompletableFuture().join();
+        List<String> deployments = deploy(vertx, transport, basePort);
+
+        Buffer message = Buffer.buffer(new byte[MESSAGE_SIZE]);
+        long totalBytes = (long) SMALL_STREAMS * MESSAGES_PER_STREAM * MESSAGE_SIZE;
+        AtomicInteger remainingStreams = new AtomicInteger(SMALL_STREAMS);
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        List<Future<Void>> connects = new ArrayList<>();
+        for (int i = 0; i < SMALL_STREAMS; i++) {
+            connects.add(vertx.createNetClient().connect(basePort + 2, "127.0.0.1")
+                    .map(socket -> {
+                        int[] received = {0};
+                        int[] sent = {1};
+                        socket.handler(buffer -> {
+                            received[0] += buffer.length();
+                            // 上游可能合并回显，按累计字节判断对端已收完当前消息
+                            while (received[0] >= sent[0] * MESSAGE_SIZE && sent[0] < MESSAGES_PER_STREAM) {
+                                socket.write(message);
+                                sent[0]++;
+                            }
+                            if (received[0] >= MESSAGES_PER_STREAM * MESSAGE_SIZE) {
+                                socket.close();
+                                if (remainingStreams.decrementAndGet() == 0) {
+                                    finished.complete(null);
+                                }
+                            }
+                        });
+                        socket.write(message);
+                        return null;
+                    }));
+        }
+        Future.all(connects).toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        finished.get(300, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        long cpu = processCpuNanos() - cpuStart;
+
+        BenchmarkSupport.report("agent transport", "%s small messages, %d streams x %d x %d B: %.0f messages/s, %.1f ms CPU/MB",
+                transport, SMALL_STREAMS, MESSAGES_PER_STREAM, MESSAGE_SIZE,
+                BenchmarkSupport.perSecond(totalBytes / MESSAGE_SIZE * 2, elapsed),
+                cpu / 1_000_000.0 / (totalBytes * 2.0 / (1024 * 1024)));
+
+        undeploy(vertx, deployments);
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    /**
+     * 上游端口为 basePort，agent 端口为 basePort + 1，开放端口为 basePort + 2
+     */
+    private List<String> deploy(Vertx vertx, String transport, int basePort) throws Exception {
+        Tunnel tunnel = Tunnel.createRecord("transport-bench-" + basePort, ProxyType.tcp, basePort + 2, basePort + 1,
+                "token", Tunnel.TunnelOptions.DEFAULT.withAgentTransport(transport));
+        String tunnelDeployment = vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        MockAgent agent = new MockAgent(ProxyType.tcp, "transport-bench-agent", basePort + 1, basePort, "token",
+                MockAgent.Options.DEFAULT.withTransport(transport));
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(agent);
+        String agentDeployment = vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        BenchmarkSupport.awaitConnected(List.of(linker));
+        return List.of(agentDeployment, tunnelDeployment);
+    }
+
+    private static void undeploy(Vertx vertx, List<String> deployments) {
+        for (String deployment : deployments) {
+            vertx.undeploy(deployment).toCompletionStage().toCompletableFuture().join();
+        }
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,138 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketClient;
+import io.vertx.core.http.WebSocketClientOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.common.MessageUtil;
+import net.ximatai.frp.common.OperationType;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * server 重启后的重连风暴：大量 agent 同时建连并发送 AUTH，记录每个 agent 从建连到收到 AUTH_OK 的耗时。
+ * 第一轮缓存为空，所有 agent 共用一个 token，首个 PBKDF2 完成后排队中的请求命中缓存；第二轮断开后立即重连，全部命中校验缓存。
+ * <p>
+ * agent 数可用 {@code -Dmuyun.frp.benchmark.auth-agents} 调整。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class AuthStormBenchmark {
+    private static final int AGENTS = Integer.getInteger("muyun.frp.benchmark.auth-agents", 500);
+    private static final int AUTH_THREADS = 2;
+
+    @Test
+    void reconnectStorm(Vertx vertx) throws Exception {
+        int openPort = 29600;
+        int agentPort = 29601;
+        // 多 agent 模式，各 agent 互不替换
+        Tunnel tunnel = Tunnel.createRecord("auth-storm-bench", ProxyType.tcp, openPort, agentPort, "token",
+                Tunnel.TunnelOptions.DEFAULT.withBalance(Tunnel.TunnelOptions.BALANCE_ROUND_ROBIN));
+        // 所有 agent 来自本机，基准中不做来源地址限速
+        AgentAuthenticator authenticator = new AgentAuthenticator(AUTH_THREADS, AGENTS, 0, 1, 300);
+        String tunnelDeployment = TunnelLinkerVerticle.deploy(vertx, tunnel, new TunnelRuntimeRegistry(),
+                        SocketTuning.DEFAULT, authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+        WebSocketClient client = vertx.createWebSocketClient(new WebSocketClientOptions()
+                .setDefaultHost("127.0.0.1")
+                .setDefaultPort(agentPort)
+                .setMaxConnections(AGENTS));
+
+        storm(vertx, client, "cold (empty cache)");
+        storm(vertx, client, "warm (cached)");
+
+        // 超时被关闭的链路仍有校验排在队列中，先停止校验线程，避免在 Vert.x 关闭后回调
+        authenticator.close();
+        client.close().toCompletionStage().toCompletableFuture().join();
+        vertx.undeploy(tunnelDeployment).toCompletionStage().toCompletableFuture().join();
+    }
+
+    private void storm(Vertx vertx, WebSocketClient client, String label) throws Exception {
+        long[] latencies = new long[AGENTS];
+        List<WebSocket> sockets = new ArrayList<>();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(AGENTS);
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < AGENTS; i++) {
+            int index = i;
+            long connectStart = System.nanoTime();
+            client.connect("/").onComplete(ar -> {
+                if (ar.failed()) {
+                    finished.completeExceptionally(ar.cause());
+                    return;
+                }
+                WebSocket ws = ar.result();
+                synchronized (sockets) {
+                    sockets.add(ws);
+                }
+                boolean[] done = {false};
+                Runnable complete = () -> {
+                    if (!done[0]) {
+                        done[0] = true;
+                        latencies[index] = System.nanoTime() - connectStart;
+                        if (remaining.decrementAndGet() == 0) {
+                            finished.complete(null);
+                        }
+                    }
+                };
+                ws.frameHandler(frame -> {
+                    if (!frame.isBinary()) {
+                        return;
+                    }
+                    OperationType type = MessageUtil.getOperationType(frame.binaryData());
+                    if (type == OperationType.AUTH_FAIL) {
+                        rejected.incrementAndGet();
+                    }
+                    complete.run();
+                });
+                ws.closeHandler(v -> {
+                    if (!done[0]) {
+                        rejected.incrementAndGet();
+                    }
+                    complete.run();
+                });
+                ws.writeBinaryMessage(MessageUtil.buildControlMessage(OperationType.AUTH, new JsonObject()
+                        .put("version", 1)
+                        .put("token", "token")
+                        .put("agentName", "storm-agent-" + index)));
+            });
+        }
+        finished.get(600, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        BenchmarkSupport.report("auth storm", "%s: %d agents in %.1f ms (%.0f auths/s), rejected %d, "
+                        + "p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                label, AGENTS, elapsed / 1_000_000.0, BenchmarkSupport.perSecond(AGENTS, elapsed), rejected.get(),
+                latencies[AGENTS / 2] / 1_000_000.0,
+                latencies[(int) (AGENTS * 0.99)] / 1_000_000.0,
+                latencies[AGENTS - 1] / 1_000_000.0);
+
+        List<Future<Void>> closes = new ArrayList<>();
+        synchronized (sockets) {
+            sockets.forEach(ws -> closes.add(ws.close()));
+        }
+        Future.join(closes).toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+        // 等待 server 处理完链路断开
+        Thread.sleep(500);
+    }
+}
@@ -0,0 +1,49 @@
+package net.ximatai.frp.bench;
+
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试公共工具。基准测试默认不运行，使用 {@code ./gradlew :frp-test:test -Dmuyun.frp.benchmark=true} 开启。
+ */
+final class BenchmarkSupport {
+    static final String ENABLED_PROPERTY = "muyun.frp.benchmark";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkSupport.class);
+
+    private BenchmarkSupport() {
+    }
+
+    static Agent agent(String agentName, int serverPort, int upstreamPort, String token) {
+        return new MockAgent(ProxyType.tcp, agentName, serverPort, upstreamPort, token);
+    }
+
+    /**
+     * 等待 agent 链路全部完成鉴权，避免压测开始时连接因没有可用 agent 被关闭
+     */
+    static void awaitConnected(Collection<AgentLinkerVerticle> linkers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (!linkers.stream().allMatch(linker -> linker.state() == AgentLinkerVerticle.LinkState.CONNECTED)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("agent links did not connect");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    static double perSecond(long count, long elapsedNanos) {
+        return count * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+    }
+
+    static void report(String name, String format, Object... args) {
+        LOGGER.info("[benchmark] {}: {}", name, String.format(Locale.ROOT, format, args));
+    }
+}
@@ -0,0 +1,140 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同一 tunnel 上有大流量下载时交互式 stream 的往返时延：交互连接每次发送 1 字节，等上游回显后再发下一次，
+ * 另有若干连接持续从上游下载。对比空闲链路与 1、4 个并发下载时的 p50 / p99。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class InteractiveLatencyBenchmark {
+    private static final int ROUND_TRIPS = 500;
+    private static final Buffer BULK_REQUEST = Buffer.buffer("B");
+    private static final Buffer BULK_CHUNK = Buffer.buffer(new byte[64 * 1024]);
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    @Test
+    void interactiveLatencyUnderBulkTransfer(Vertx vertx) throws Exception {
+        int upstreamPort = 29700;
+        int agentPort = 29701;
+        int openPort = 29702;
+
+        // 首字节为 B 的连接持续下发数据直到连接关闭，其他连接原样回显
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> {
+                    boolean[] closed = {false};
+                    socket.closeHandler(v -> closed[0] = true);
+                    socket.handler(buffer -> {
+                        if (buffer.length() == 1 && buffer.getByte(0) == 'B') {
+                            socket.handler(null);
+                            pump(socket, closed);
+                        } else {
+                            socket.write(buffer);
+                        }
+                    });
+                })
+                .listen(upstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        Tunnel tunnel = Tunnel.createRecord("latency-bench", ProxyType.tcp, openPort, agentPort);
+        String tunnelDeployment = vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(
+                BenchmarkSupport.agent("latency-bench-agent", agentPort, upstreamPort, "test-token"));
+        String agentDeployment = vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        BenchmarkSupport.awaitConnected(List.of(linker));
+
+        // 先在空闲链路上往返一轮完成 JIT 预热，否则第一个场景的时延偏高
+        NetSocket warmup = connect(vertx, openPort);
+        roundTrips(warmup);
+        warmup.close();
+
+        for (int bulkStreams : new int[]{0, 1, 4}) {
+            AtomicLong downloaded = new AtomicLong();
+            List<NetSocket> bulk = new ArrayList<>();
+            for (int i = 0; i < bulkStreams; i++) {
+                NetSocket socket = connect(vertx, openPort);
+                socket.handler(buffer -> downloaded.addAndGet(buffer.length()));
+                socket.write(BULK_REQUEST);
+                bulk.add(socket);
+            }
+            // 等下载达到稳定速率
+            Thread.sleep(bulkStreams == 0 ? 0 : 1000);
+
+            NetSocket interactive = connect(vertx, openPort);
+            long bytesBefore = downloaded.get();
+            long start = System.nanoTime();
+            long[] rtts = roundTrips(interactive);
+            long elapsed = System.nanoTime() - start;
+            long bulkBytes = downloaded.get() - bytesBefore;
+            interactive.close();
+            bulk.forEach(NetSocket::close);
+
+            Arrays.sort(rtts);
+            BenchmarkSupport.report("interactive latency", "%d bulk streams: p50 %.2f ms, p99 %.2f ms, max %.2f ms, bulk %.1f MB/s",
+                    bulkStreams, rtts[ROUND_TRIPS / 2] / 1_000_000.0, rtts[ROUND_TRIPS * 99 / 100] / 1_000_000.0,
+                    rtts[ROUND_TRIPS - 1] / 1_000_000.0,
+                    BenchmarkSupport.perSecond(bulkBytes, elapsed) / (1024 * 1024));
+            Thread.sleep(500);
+        }
+
+        vertx.undeploy(agentDeployment).toCompletionStage().toCompletableFuture().join();
+        vertx.undeploy(tunnelDeployment).toCompletionStage().toCompletableFuture().join();
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static NetSocket connect(Vertx vertx, int port) throws Exception {
+        return vertx.createNetClient().connect(port, "127.0.0.1")
+                .toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private static long[] roundTrips(NetSocket socket) throws Exception {
+        long[] rtts = new long[ROUND_TRIPS];
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            CompletableFuture<Void> echoed = new CompletableFuture<>();
+            socket.handler(buffer -> echoed.complete(null));
+            long sentAt = System.nanoTime();
+            socket.write(Buffer.buffer(new byte[]{(byte) i}));
+            echoed.get(30, TimeUnit.SECONDS);
+            rtts[i] = System.nanoTime() - sentAt;
+        }
+        return rtts;
+    }
+
+    /**
+     * 按写队列背压持续写出，直到连接关闭
+     */
+    private static void pump(NetSocket socket, boolean[] closed) {
+        while (!closed[0] && !socket.writeQueueFull()) {
+            socket.write(BULK_CHUNK);
+        }
+        socket.drainHandler(v -> pump(socket, closed));
+    }
+}
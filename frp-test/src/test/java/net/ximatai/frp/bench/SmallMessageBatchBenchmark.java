@@ -0,0 +1,125 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大量 stream 并发收发小消息：每个 stream 发送一条小消息，等上游回显后再发下一条。
+ * 对比开启与关闭批量帧时的消息速率和每 MB 消耗的进程 CPU 时间。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class SmallMessageBatchBenchmark {
+    private static final int STREAMS = 256;
+    private static final int MESSAGES_PER_STREAM = 2_000;
+    private static final int MESSAGE_SIZE = 64;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    @Test
+    void smallMessagesWithAndWithoutBatch(Vertx vertx) throws Exception {
+        run(vertx, false, 29300);
+        run(vertx, true, 29310);
+    }
+
+    private void run(Vertx vertx, boolean batch, int basePort) throws Exception {
+        int upstreamPort = basePort;
+        int agentPort = basePort + 1;
+        int openPort = basePort + 2;
+
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(socket::write))
+                .listen(upstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        Tunnel tunnel = Tunnel.createRecord("batch-bench-" + basePort, ProxyType.tcp, openPort, agentPort, "token");
+        String tunnelDeployment = vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        MockAgent agent = new MockAgent(ProxyType.tcp, "batch-bench-agent", agentPort, upstreamPort, "token",
+                MockAgent.Options.DEFAULT.withBatchFrames(batch));
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(agent);
+        String agentDeployment = vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        BenchmarkSupport.awaitConnected(List.of(linker));
+
+        Buffer message = Buffer.buffer(new byte[MESSAGE_SIZE]);
+        long totalBytes = (long) STREAMS * MESSAGES_PER_STREAM * MESSAGE_SIZE;
+        AtomicInteger remainingStreams = new AtomicInteger(STREAMS);
+        AtomicLong echoed = new AtomicLong();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        List<Future<Void>> connects = new ArrayList<>();
+        for (int i = 0; i < STREAMS; i++) {
+            connects.add(vertx.createNetClient().connect(openPort, "127.0.0.1")
+                    .map(socket -> {
+                        int[] received = {0};
+                        int[] sent = {1};
+                        socket.handler(buffer -> {
+                            echoed.addAndGet(buffer.length());
+                            received[0] += buffer.length();
+                            // 上游可能合并回显，按累计字节判断对端已收完当前消息
+                            while (received[0] >= sent[0] * MESSAGE_SIZE && sent[0] < MESSAGES_PER_STREAM) {
+                                socket.write(message);
+                                sent[0]++;
+                            }
+                            if (received[0] >= MESSAGES_PER_STREAM * MESSAGE_SIZE) {
+                                socket.close();
+                                if (remainingStreams.decrementAndGet() == 0) {
+                                    finished.complete(null);
+                                }
+                            }
+                        });
+                        socket.write(message);
+                        return null;
+                    }));
+        }
+        Future.all(connects).toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        finished.get(300, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        long cpu = processCpuNanos() - cpuStart;
+
+        double megabytes = echoed.get() * 2.0 / (1024 * 1024);
+        BenchmarkSupport.report("small message batch", "batch=%s, %d streams x %d x %d B: %.0f messages/s, %.1f ms CPU/MB",
+                batch, STREAMS, MESSAGES_PER_STREAM, MESSAGE_SIZE,
+                BenchmarkSupport.perSecond(totalBytes / MESSAGE_SIZE * 2, elapsed),
+                cpu / 1_000_000.0 / megabytes);
+
+        vertx.undeploy(agentDeployment).toCompletionStage().toCompletableFuture().join();
+        vertx.undeploy(tunnelDeployment).toCompletionStage().toCompletableFuture().join();
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,140 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 持续保持大量用户连接时的接入延迟：逐步打开 stream 且不关闭，记录每个连接从发起到收到首个回显的耗时，
+ * 比较最早与最晚 10% 连接的延迟分布；最后断开 agent，记录会话内全部 stream 的清理耗时。
+ * <p>
+ * 每个 stream 占用 4 个 socket，10 万 stream 需要 {@code ulimit -n} 不小于 500000。
+ * 连接数可用 {@code -Dmuyun.frp.benchmark.streams} 调整。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class StreamScaleBenchmark {
+    private static final int STREAMS = Integer.getInteger("muyun.frp.benchmark.streams", 100_000);
+    // 同时发起的连接不超过常见的 tcp_max_syn_backlog，否则 SYN 重传会给最早一批连接带来约 1 秒的延迟
+    private static final int IN_FLIGHT = 64;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    @Test
+    void acceptLatencyWithManyOpenStreams(Vertx vertx) throws Exception {
+        int upstreamPort = 29500;
+        int agentPort = 29501;
+        int openPort = 29502;
+
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(socket::write))
+                .listen(upstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+        Tunnel tunnel = Tunnel.createRecord("stream-scale-bench", ProxyType.tcp, openPort, agentPort, "token");
+        String tunnelDeployment = vertx.deployVerticle(new TunnelLinkerVerticle(vertx, tunnel, authenticator))
+                .toCompletionStage().toCompletableFuture().join();
+        AgentLinkerVerticle linker = new AgentLinkerVerticle(
+                BenchmarkSupport.agent("stream-scale-agent", agentPort, upstreamPort, "token"));
+        String agentDeployment = vertx.deployVerticle(linker).toCompletionStage().toCompletableFuture().join();
+        BenchmarkSupport.awaitConnected(List.of(linker));
+
+        NetClient client = vertx.createNetClient();
+        Buffer probe = Buffer.buffer("p");
+        long[] latencies = new long[STREAMS];
+        ConcurrentLinkedQueue<NetSocket> sockets = new ConcurrentLinkedQueue<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        CompletableFuture<Void> opened = new CompletableFuture<>();
+        CompletableFuture<Void> allClosed = new CompletableFuture<>();
+
+        Runnable[] openNext = new Runnable[1];
+        openNext[0] = () -> {
+            int index = next.getAndIncrement();
+            if (index >= STREAMS) {
+                return;
+            }
+            long start = System.nanoTime();
+            client.connect(openPort, "127.0.0.1").onComplete(ar -> {
+                if (ar.failed()) {
+                    opened.completeExceptionally(ar.cause());
+                    return;
+                }
+                NetSocket socket = ar.result();
+                sockets.add(socket);
+                socket.closeHandler(v -> {
+                    if (closed.incrementAndGet() == STREAMS) {
+                        allClosed.complete(null);
+                    }
+                });
+                socket.handler(buffer -> {
+                    socket.handler(null);
+                    latencies[index] = System.nanoTime() - start;
+                    if (done.incrementAndGet() == STREAMS) {
+                        opened.complete(null);
+                    } else {
+                        openNext[0].run();
+                    }
+                });
+                socket.write(probe);
+            });
+        };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < Math.min(IN_FLIGHT, STREAMS); i++) {
+            vertx.runOnContext(v -> openNext[0].run());
+        }
+        opened.get(600, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        int slice = Math.max(1, STREAMS / 10);
+        BenchmarkSupport.report("stream scale", "%d open streams in %.1f s (%.0f accepts/s)",
+                STREAMS, elapsed / 1_000_000_000.0, BenchmarkSupport.perSecond(STREAMS, elapsed));
+        reportSlice("first 10%", Arrays.copyOfRange(latencies, 0, slice));
+        reportSlice("last 10%", Arrays.copyOfRange(latencies, STREAMS - slice, STREAMS));
+
+        long teardownStart = System.nanoTime();
+        vertx.undeploy(agentDeployment).toCompletionStage().toCompletableFuture().join();
+        allClosed.get(300, TimeUnit.SECONDS);
+        BenchmarkSupport.report("stream scale", "session teardown of %d streams: %.1f ms",
+                STREAMS, (System.nanoTime() - teardownStart) / 1_000_000.0);
+
+        List.copyOf(sockets).forEach(NetSocket::close);
+        client.close().toCompletionStage().toCompletableFuture().join();
+        vertx.undeploy(tunnelDeployment).toCompletionStage().toCompletableFuture().join();
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static void reportSlice(String label, long[] latencies) {
+        Arrays.sort(latencies);
+        BenchmarkSupport.report("stream scale", "%s accept latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                label,
+                latencies[latencies.length / 2] / 1_000_000.0,
+                latencies[(int) (latencies.length * 0.99)] / 1_000_000.0,
+                latencies[latencies.length - 1] / 1_000_000.0);
+    }
+}
@@ -0,0 +1,89 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.common.SocketTuning;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.AgentEndpoint;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 大量 tunnel 的启动耗时与堆内存：每个 tunnel 监听自己的 agent 端口，对比所有 tunnel 共用一个 agent 端口。
+ * <p>
+ * tunnel 数可用 {@code -Dmuyun.frp.benchmark.startup-tunnels} 调整。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class TunnelStartupBenchmark {
+    private static final int TUNNELS = Integer.getInteger("muyun.frp.benchmark.startup-tunnels", 500);
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    @Test
+    void perTunnelAgentPorts(Vertx vertx) throws Exception {
+        run(vertx, "per-tunnel agent ports", null, 30000);
+    }
+
+    @Test
+    void sharedAgentEndpoint(Vertx vertx) throws Exception {
+        AgentEndpoint endpoint = AgentEndpoint.deploy(vertx, 31999, 1, SocketTuning.DEFAULT,
+                AgentEndpoint.Heartbeat.DEFAULT)
+                .toCompletionStage().toCompletableFuture().join();
+        run(vertx, "shared agent endpoint", endpoint, 32000);
+        endpoint.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private void run(Vertx vertx, String label, AgentEndpoint endpoint, int basePort) throws Exception {
+        TunnelRuntimeRegistry registry = new TunnelRuntimeRegistry();
+        // 创建记录时要对 token 执行 PBKDF2，放在计时之外
+        List<Tunnel> tunnels = new ArrayList<>();
+        for (int i = 0; i < TUNNELS; i++) {
+            tunnels.add(endpoint == null
+                    ? Tunnel.createRecord("startup-bench-" + i, ProxyType.tcp, basePort + i * 2, basePort + i * 2 + 1)
+                    : Tunnel.createRecord("startup-bench-" + i, ProxyType.tcp, basePort + i, 0));
+        }
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        List<String> deployments = new ArrayList<>();
+        for (Tunnel tunnel : tunnels) {
+            deployments.add(TunnelLinkerVerticle.deploy(vertx, tunnel, registry, SocketTuning.DEFAULT,
+                            authenticator, endpoint)
+                    .toCompletionStage().toCompletableFuture().join());
+        }
+        long elapsed = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+
+        BenchmarkSupport.report("tunnel startup", "%s: %d tunnels in %.1f ms (%.3f ms/tunnel), heap +%.1f KB/tunnel",
+                label, TUNNELS, elapsed / 1_000_000.0, elapsed / 1_000_000.0 / TUNNELS,
+                (heapAfter - heapBefore) / 1024.0 / TUNNELS);
+
+        List<Future<Void>> undeploys = new ArrayList<>();
+        deployments.forEach(id -> undeploys.add(vertx.undeploy(id)));
+        Future.join(undeploys).toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
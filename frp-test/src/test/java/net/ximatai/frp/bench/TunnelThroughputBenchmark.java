@@ -0,0 +1,139 @@
+package net.ximatai.frp.bench;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.junit5.VertxExtension;
+import net.ximatai.frp.agent.verticle.AgentLinkerVerticle;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.ProxyType;
+import net.ximatai.frp.mock.MockAgent;
+import net.ximatai.frp.server.config.Tunnel;
+import net.ximatai.frp.server.service.AgentAuthenticator;
+import net.ximatai.frp.server.service.TunnelLinkerVerticle;
+import net.ximatai.frp.server.service.TunnelRuntimeRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * tunnel 端到端聚合吞吐：多个用户连接并发上传，统计上游收到的总字节速率。
+ * 分别考察 agent 链路数（server 单实例）、server 实例数（链路数与实例数相同）和协商帧长度对吞吐的影响。
+ */
+@ExtendWith(VertxExtension.class)
+@EnabledIfSystemProperty(named = BenchmarkSupport.ENABLED_PROPERTY, matches = "true")
+class TunnelThroughputBenchmark {
+    private static final int[] SCALES = {1, 2, 4};
+    private static final int[] FRAME_SIZES = {64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+    private static final int STREAMS_PER_LINK = 4;
+    private static final int BYTES_PER_STREAM = 32 * 1024 * 1024;
+    private static final int CHUNK = 16 * 1024;
+
+    private final AgentAuthenticator authenticator = new AgentAuthenticator(2, 256, 0, 1, 300);
+
+    @AfterEach
+    void afterEach() {
+        authenticator.close();
+    }
+
+    @Test
+    void aggregateThroughputByLinkCount(Vertx vertx) throws Exception {
+        for (int links : SCALES) {
+            run(vertx, links, 1, FrameChunker.DEFAULT_MAX_FRAME_SIZE, 29100 + links * 10);
+        }
+    }
+
+    @Test
+    void aggregateThroughputByServerInstances(Vertx vertx) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int instances : SCALES) {
+            run(vertx, instances, instances, FrameChunker.DEFAULT_MAX_FRAME_SIZE, 29200 + instances * 10);
+        }
+        BenchmarkSupport.report("server instances", "%d available processors", cores);
+    }
+
+    @Test
+    void bulkThroughputByFrameSize(Vertx vertx) throws Exception {
+        for (int i = 0; i < FRAME_SIZES.length; i++) {
+            run(vertx, 1, 1, FRAME_SIZES[i], 29400 + i * 10);
+        }
+    }
+
+    private void run(Vertx vertx, int links, int instances, int maxFrameSize, int basePort) throws Exception {
+        int upstreamPort = basePort;
+        int agentPort = basePort + 1;
+        int openPort = basePort + 2;
+        int streams = links * STREAMS_PER_LINK;
+        long totalBytes = (long) streams * BYTES_PER_STREAM;
+
+        AtomicLong received = new AtomicLong();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        NetServer upstream = vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(buffer -> {
+                    if (received.addAndGet(buffer.length()) >= totalBytes) {
+                        finished.complete(null);
+                    }
+                }))
+                .listen(upstreamPort)
+                .toCompletionStage().toCompletableFuture().join();
+
+        Tunnel tunnel = Tunnel.createRecord("bench-" + basePort, ProxyType.tcp, openPort, agentPort, "token",
+                Tunnel.TunnelOptions.DEFAULT.withInstances(instances).withMaxFrameSize(maxFrameSize));
+        String tunnelDeployment = TunnelLinkerVerticle.deploy(vertx, tunnel, new TunnelRuntimeRegistry(), authenticator)
+                .toCompletionStage().toCompletableFuture().join();
+
+        MockAgent agent = new MockAgent(ProxyType.tcp, "bench-agent", agentPort, upstreamPort, "token",
+                MockAgent.Options.DEFAULT.withLinks(links).withMaxFrameSize(maxFrameSize));
+        List<AgentLinkerVerticle> linkers = new CopyOnWriteArrayList<>();
+        String agentDeployment = vertx.deployVerticle(() -> {
+                    AgentLinkerVerticle linker = new AgentLinkerVerticle(agent, "bench-group-" + links);
+                    linkers.add(linker);
+                    return linker;
+                }, new DeploymentOptions().setInstances(links))
+                .toCompletionStage().toCompletableFuture().join();
+        BenchmarkSupport.awaitConnected(linkers);
+
+        Buffer chunk = Buffer.buffer(new byte[CHUNK]);
+        long start = System.nanoTime();
+        List<Future<Void>> uploads = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            uploads.add(vertx.createNetClient().connect(openPort, "127.0.0.1")
+                    .compose(socket -> {
+                        int[] written = {0};
+                        Runnable[] pump = new Runnable[1];
+                        pump[0] = () -> {
+                            while (written[0] < BYTES_PER_STREAM && !socket.writeQueueFull()) {
+                                socket.write(chunk);
+                                written[0] += CHUNK;
+                            }
+                            if (written[0] < BYTES_PER_STREAM) {
+                                socket.drainHandler(v -> pump[0].run());
+                            }
+                        };
+                        pump[0].run();
+                        return Future.<Void>succeededFuture();
+                    }));
+        }
+        Future.all(uploads).toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        finished.get(300, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        BenchmarkSupport.report("tunnel throughput", "%d server instances, %d links, %d streams, %d KB frames: %.1f MB/s",
+                instances, links, streams, maxFrameSize / 1024,
+                BenchmarkSupport.perSecond(totalBytes, elapsed) / (1024 * 1024));
+
+        vertx.undeploy(agentDeployment).toCompletionStage().toCompletableFuture().join();
+        vertx.undeploy(tunnelDeployment).toCompletionStage().toCompletableFuture().join();
+        upstream.close().toCompletionStage().toCompletableFuture().join();
+    }
+}
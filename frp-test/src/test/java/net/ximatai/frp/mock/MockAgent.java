@@ -0,0 +1,315 @@
+package net.ximatai.frp.mock;
+
+import net.ximatai.frp.agent.config.Agent;
+import net.ximatai.frp.agent.config.Auth;
+import net.ximatai.frp.agent.config.DataPlane;
+import net.ximatai.frp.agent.config.FrpTunnel;
+import net.ximatai.frp.agent.config.MultiplexedTunnel;
+import net.ximatai.frp.agent.config.ProxyServer;
+import net.ximatai.frp.common.FrameChunker;
+import net.ximatai.frp.common.LinkSocket;
+import net.ximatai.frp.common.ProxyType;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 测试用 Agent 配置，未显式设置的项与配置文件缺省值保持一致
+ */
+public class MockAgent implements Agent {
+    private final ProxyType type;
+    private final String agentName;
+    private final int serverPort;
+    private final int upstreamPort;
+    private final String token;
+    private final Options options;
+
+    public MockAgent(ProxyType type, String agentName, int serverPort, int upstreamPort, String token) {
+        this(type, agentName, serverPort, upstreamPort, token, Options.DEFAULT);
+    }
+
+    public MockAgent(ProxyType type, String agentName, int serverPort, int upstreamPort, String token, Options options) {
+        this.type = type;
+        this.agentName = agentName;
+        this.serverPort = serverPort;
+        this.upstreamPort = upstreamPort;
+        this.token = token;
+        this.options = options;
+    }
+
+    /**
+     * 可选项，从 {@link #DEFAULT} 出发用 with 方法逐项修改
+     */
+    public record Options(int warmPoolSize, int links, boolean batchFrames, int maxFrameSize, boolean compression,
+                          int weight, boolean standby, int heartbeatInterval, int heartbeatMisses,
+                          long reconnectBaseDelay, long reconnectMaxDelay, String tunnelName, String transport,
+                          Map<String, ExtraTunnel> tunnels) {
+        public static final Options DEFAULT = new Options(0, 1, true, FrameChunker.DEFAULT_MAX_FRAME_SIZE, true, 1, false,
+                30, 3, 500, 30000, null, LinkSocket.TRANSPORT_WEBSOCKET, Map.of());
+
+        public Options {
+            tunnels = Collections.unmodifiableMap(new LinkedHashMap<>(tunnels));
+        }
+
+        public Options withWarmPoolSize(int warmPoolSize) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withLinks(int links) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withBatchFrames(boolean batchFrames) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withMaxFrameSize(int maxFrameSize) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withCompression(boolean compression) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withWeight(int weight) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withStandby(boolean standby) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withHeartbeat(int heartbeatInterval, int heartbeatMisses) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withReconnectDelay(long reconnectBaseDelay, long reconnectMaxDelay) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withTunnelName(String tunnelName) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        public Options withTransport(String transport) {
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+
+        /**
+         * 在同一链路上额外接入一个 tunnel
+         */
+        public Options withTunnel(String name, int upstreamPort, String token) {
+            Map<String, ExtraTunnel> tunnels = new LinkedHashMap<>(this.tunnels);
+            tunnels.put(name, new ExtraTunnel(upstreamPort, token));
+            return new Options(warmPoolSize, links, batchFrames, maxFrameSize, compression, weight, standby,
+                    heartbeatInterval, heartbeatMisses, reconnectBaseDelay, reconnectMaxDelay, tunnelName, transport,
+                    tunnels);
+        }
+    }
+
+    public record ExtraTunnel(int upstreamPort, String token) {
+    }
+
+    @Override
+    public Map<String, MultiplexedTunnel> tunnels() {
+        Map<String, MultiplexedTunnel> tunnels = new LinkedHashMap<>();
+        options.tunnels().forEach((name, tunnel) -> {
+            ProxyServer proxy = proxy(tunnel.upstreamPort());
+            tunnels.put(name, new MultiplexedTunnel() {
+                @Override
+                public String token() {
+                    return tunnel.token();
+                }
+
+                @Override
+                public ProxyServer proxy() {
+                    return proxy;
+                }
+            });
+        });
+        return tunnels;
+    }
+
+    @Override
+    public int links() {
+        return options.links();
+    }
+
+    @Override
+    public boolean batchFrames() {
+        return options.batchFrames();
+    }
+
+    @Override
+    public int maxFrameSize() {
+        return options.maxFrameSize();
+    }
+
+    @Override
+    public boolean compression() {
+        return options.compression();
+    }
+
+    @Override
+    public int weight() {
+        return options.weight();
+    }
+
+    @Override
+    public boolean standby() {
+        return options.standby();
+    }
+
+    @Override
+    public int heartbeatInterval() {
+        return options.heartbeatInterval();
+    }
+
+    @Override
+    public int heartbeatMisses() {
+        return options.heartbeatMisses();
+    }
+
+    @Override
+    public long reconnectBaseDelay() {
+        return options.reconnectBaseDelay();
+    }
+
+    @Override
+    public long reconnectMaxDelay() {
+        return options.reconnectMaxDelay();
+    }
+
+    @Override
+    public ProxyType type() {
+        return type;
+    }
+
+    @Override
+    public String agentName() {
+        return agentName;
+    }
+
+    @Override
+    public FrpTunnel frpTunnel() {
+        return new FrpTunnel() {
+            @Override
+            public String host() {
+                return "127.0.0.1";
+            }
+
+            @Override
+            public int port() {
+                return serverPort;
+            }
+
+            @Override
+            public Optional<String> name() {
+                return Optional.ofNullable(options.tunnelName());
+            }
+
+            @Override
+            public String transport() {
+                return options.transport();
+            }
+        };
+    }
+
+    @Override
+    public Auth auth() {
+        return () -> token;
+    }
+
+    @Override
+    public ProxyServer proxy() {
+        return proxy(upstreamPort);
+    }
+
+    private ProxyServer proxy(int port) {
+        return new ProxyServer() {
+            @Override
+            public String host() {
+                return "127.0.0.1";
+            }
+
+            @Override
+            public int port() {
+                return port;
+            }
+
+            @Override
+            public int connectTimeout() {
+                return 5000;
+            }
+
+            @Override
+            public boolean tcpKeepAlive() {
+                return true;
+            }
+
+            @Override
+            public int warmPoolSize() {
+                return options.warmPoolSize();
+            }
+        };
+    }
+
+    @Override
+    public DataPlane dataPlane() {
+        return new DataPlane() {
+            @Override
+            public boolean nativeTransport() {
+                return false;
+            }
+
+            @Override
+            public boolean tcpNoDelay() {
+                return true;
+            }
+
+            @Override
+            public boolean tcpQuickAck() {
+                return false;
+            }
+
+            @Override
+            public boolean tcpKeepAlive() {
+                return true;
+            }
+
+            @Override
+            public int sendBufferSize() {
+                return -1;
+            }
+
+            @Override
+            public int receiveBufferSize() {
+                return -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package net.ximatai.frp.mock;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.net.NetSocket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 在 agent 和 server 之间转发 TCP 的故障注入代理。
+ * <p>
+ * {@link #blackhole()} 使已建立的连接静默丢弃双向数据但不关闭 socket，模拟 NAT 超时、网线拔出等半开连接；
+ * {@link #sever()} 直接断开已建立的连接。之后新建的连接都正常转发，除非调用了 {@link #refuse()}。
+ */
+public class MockFaultProxyVerticle extends AbstractVerticle {
+
+    private final int port;
+    private final int targetPort;
+    private final List<Pipe> pipes = new CopyOnWriteArrayList<>();
+    private volatile boolean refusing;
+
+    public MockFaultProxyVerticle(int port, int targetPort) {
+        this.port = port;
+        this.targetPort = targetPort;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        vertx.createNetServer()
+                .connectHandler(inbound -> {
+                    if (refusing) {
+                        inbound.close();
+                        return;
+                    }
+                    inbound.pause();
+                    vertx.createNetClient().connect(targetPort, "127.0.0.1")
+                            .onSuccess(outbound -> {
+                                Pipe pipe = new Pipe(inbound, outbound);
+                                pipes.add(pipe);
+                                forward(pipe, inbound, outbound);
+                                forward(pipe, outbound, inbound);
+                                inbound.resume();
+                            })
+                            .onFailure(t -> inbound.close());
+                })
+                .listen(port)
+                .compose(server -> Future.<Void>succeededFuture())
+                .onComplete(startPromise);
+    }
+
+    /**
+     * 已建立的连接从此不再转发任何数据
+     */
+    public void blackhole() {
+        pipes.forEach(pipe -> pipe.blackholed = true);
+    }
+
+    /**
+     * 新连接接入后立即关闭，已建立的连接照常转发
+     */
+    public void refuse() {
+        refusing = true;
+    }
+
+    /**
+     * 关闭已建立的连接的两端
+     */
+    public void sever() {
+        for (Pipe pipe : pipes) {
+            pipes.remove(pipe);
+            pipe.inbound.close();
+            pipe.outbound.close();
+        }
+    }
+
+    private void forward(Pipe pipe, NetSocket from, NetSocket to) {
+        from.handler(buffer -> {
+            if (!pipe.blackholed) {
+                to.write(buffer);
+            }
+        });
+        from.closeHandler(v -> {
+            if (!pipe.blackholed) {
+                to.close();
+            }
+        });
+    }
+
+    private static class Pipe {
+        private final NetSocket inbound;
+        private final NetSocket outbound;
+        private volatile boolean blackholed;
+
+        Pipe(NetSocket inbound, NetSocket outbound) {
+            this.inbound = inbound;
+            this.outbound = outbound;
+        }
+    }
+}